@@ -1,38 +1,44 @@
 package com.pokenator;
 
 import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.QuestionFamily;
 import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
 import com.pokenator.akinator.service.QuestionSelector;
 import com.pokenator.akinator.session.SessionManager;
 import com.pokenator.config.PokemonKgConfig;
-import com.pokenator.rdf.DatasetProvider;
-import com.pokenator.rdf.InMemoryDatasetProvider;
-import com.pokenator.rdf.RdfLoader;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.index.SpeciesIndexBuilder;
+import com.pokenator.rdf.SnapshotDatasetProvider;
 import com.pokenator.repository.SpeciesRepository;
 import com.pokenator.sparql.JenaSparqlClient;
 import com.pokenator.sparql.SparqlClient;
 import org.apache.jena.query.Dataset;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Scanner;
 
 public class App {
 
     public static void main(String[] args) {
 
-        // Load dataset once
-        DatasetProvider provider = new InMemoryDatasetProvider();
+        // Load dataset once (from the binary snapshot when it matches the RDF sources)
+        SnapshotDatasetProvider provider = new SnapshotDatasetProvider(
+                PokemonKgConfig.ONTOLOGY_PATH,
+                PokemonKgConfig.DATASET_PATH,
+                Path.of(PokemonKgConfig.SNAPSHOT_PATH));
         Dataset dataset = provider.getDataset();
 
-        RdfLoader loader = new RdfLoader();
-        loader.loadOntology(dataset, PokemonKgConfig.ONTOLOGY_PATH);
-        loader.loadDataset(dataset, PokemonKgConfig.DATASET_PATH);
-
         // Infra + repos + services
         SparqlClient sparql = new JenaSparqlClient(20000);
-        SpeciesRepository speciesRepo = new SpeciesRepository(sparql);
+        SpeciesIndex index = new SpeciesIndexBuilder(sparql)
+                .openOrBuildQuietly(dataset, provider.sourceChecksum(), Path.of(PokemonKgConfig.INDEX_PATH));
+        SpeciesRepository speciesRepo = new SpeciesRepository(sparql, index);
 
         SessionManager sessions = new SessionManager();
-        QuestionSelector selector = new QuestionSelector(speciesRepo);
+        QuestionCatalog catalog = QuestionCatalog.build(dataset, sparql, index, QuestionFamily.DEFAULTS, List.of("en"));
+        QuestionSelector selector = new QuestionSelector(speciesRepo, catalog);
         GameService game = new GameService(dataset, sessions, speciesRepo, selector);
 
         // Start game
@@ -62,7 +68,7 @@ public class App {
                 System.out.println("No candidates left (constraints too strict).");
                 break;
             } else if (step instanceof GameService.NextStepResult.NextQuestion(
-                    com.pokenator.akinator.model.Question question, long remainingCandidates
+                    com.pokenator.akinator.model.Question question, long remainingCandidates, int nextStep
             )) {
                 System.out.println("Remaining candidates: " + remainingCandidates);
                 System.out.println(question.text());
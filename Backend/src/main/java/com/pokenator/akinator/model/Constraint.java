@@ -1,3 +1,16 @@
 package com.pokenator.akinator.model;
 
-public record Constraint(String predicateUri, String objectUri, Answer answer) {}
+/**
+ * An answered question. For {@link QuestionKind#NUMERIC_ABOVE} the object is the threshold and YES means
+ * "value &gt; threshold".
+ */
+public record Constraint(String predicateUri, String objectUri, Answer answer, QuestionKind kind) {
+
+    public Constraint(String predicateUri, String objectUri, Answer answer) {
+        this(predicateUri, objectUri, answer, QuestionKind.HAS_VALUE);
+    }
+
+    public boolean numeric() {
+        return kind == QuestionKind.NUMERIC_ABOVE;
+    }
+}
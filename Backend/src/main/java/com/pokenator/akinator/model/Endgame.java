@@ -0,0 +1,207 @@
+package com.pokenator.akinator.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
+
+/**
+ * The few species left at the end of a game with every IRI attribute they have, held in memory so the
+ * remaining steps need no dataset queries. Candidate {@code i} is bit {@code i} of every mask, hence at most
+ * {@link #MAX_SPECIES} species.
+ *
+ * <p>Immutable: {@link #answer} returns a new instance sharing the attribute rows, so undo snapshots can
+ * keep a reference.
+ */
+public final class Endgame {
+
+    public static final int MAX_SPECIES = 64;
+
+    /** Candidate counts at or below this are guessed instead of asked about (same rule as the main game). */
+    public static final int GUESS_AT = 2;
+
+    /**
+     * Candidate subsets the exact search may evaluate for one question. The search is exponential in the number
+     * of distinct splits, so past this it settles for the most balanced split.
+     */
+    public static final int MAX_NODES = 20_000;
+
+    private final String[] species;
+    private final String[] speciesLabels;
+    private final String[] predicates;   // per attribute
+    private final String[] values;       // per attribute
+    private final String[] valueLabels;  // per attribute
+    private final long[] members;        // per attribute: candidates having it
+    private final long mask;             // candidates consistent with the answers so far
+
+    public Endgame(String[] species, String[] speciesLabels,
+                   String[] predicates, String[] values, String[] valueLabels, long[] members) {
+        this(species, speciesLabels, predicates, values, valueLabels, members,
+                species.length == MAX_SPECIES ? -1L : (1L << species.length) - 1);
+    }
+
+    private Endgame(String[] species, String[] speciesLabels,
+                    String[] predicates, String[] values, String[] valueLabels, long[] members, long mask) {
+        if (species.length > MAX_SPECIES) {
+            throw new IllegalArgumentException("Endgame supports at most " + MAX_SPECIES + " species");
+        }
+        this.species = species;
+        this.speciesLabels = speciesLabels;
+        this.predicates = predicates;
+        this.values = values;
+        this.valueLabels = valueLabels;
+        this.members = members;
+        this.mask = mask;
+    }
+
+    public int remaining() { return Long.bitCount(mask); }
+
+    public int attributeCount() { return members.length; }
+    public String predicate(int attribute) { return predicates[attribute]; }
+    public String value(int attribute) { return values[attribute]; }
+    public String valueLabel(int attribute) { return valueLabels[attribute]; }
+
+    /** The first {@code limit} remaining species URIs. */
+    public List<String> remainingSpecies(int limit) {
+        List<String> out = new ArrayList<>();
+        for (long m = mask; m != 0 && out.size() < limit; m &= m - 1) {
+            out.add(species[Long.numberOfTrailingZeros(m)]);
+        }
+        return out;
+    }
+
+    public String speciesLabel(String uri) {
+        for (int i = 0; i < species.length; i++) {
+            if (species[i].equals(uri)) return speciesLabels[i];
+        }
+        return uri;
+    }
+
+    /** State after answering "does it have (predicate, value)?". UNKNOWN changes nothing. */
+    public Endgame answer(String predicateUri, String valueUri, Answer answer) {
+        if (answer == Answer.UNKNOWN) return this;
+
+        long have = 0L; // no candidate has a value missing from the rows
+        for (int a = 0; a < members.length; a++) {
+            if (values[a].equals(valueUri) && predicates[a].equals(predicateUri)) {
+                have = members[a];
+                break;
+            }
+        }
+
+        long next = answer == Answer.YES ? mask & have : mask & ~have;
+        return new Endgame(species, speciesLabels, predicates, values, valueLabels, members, next);
+    }
+
+    // =========================================================
+    // SOLVER
+    // =========================================================
+
+    /**
+     * Attribute to ask now so that, answering every later question optimally too, the remaining candidates
+     * get down to {@link #GUESS_AT} in the fewest questions (worst case over the answers). Ties go to the most
+     * balanced split, then to the lowest attribute. Returns -1 when no usable attribute splits the candidates.
+     *
+     * <p>When the search runs past {@link #MAX_NODES} subsets, or {@code stop} turns true (polled now and then),
+     * the most balanced split is returned instead.
+     */
+    public int bestAttribute(IntPredicate usable, BooleanSupplier stop) {
+        if (remaining() <= GUESS_AT) return -1;
+
+        // Attributes with the same membership among the remaining candidates are interchangeable
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (int a = 0; a < members.length; a++) {
+            long yes = members[a] & mask;
+            if (yes != 0 && yes != mask && usable.test(a)) distinct.add(yes);
+        }
+        long[] splits = new long[distinct.size()];
+        int n = 0;
+        for (long s : distinct) splits[n++] = s;
+
+        Search search = new Search(splits, stop);
+        int best = -1;
+        int bestDepth = Integer.MAX_VALUE;
+        int bestImbalance = Integer.MAX_VALUE;
+        int balanced = -1;
+        int balancedImbalance = Integer.MAX_VALUE;
+
+        for (int a = 0; a < members.length; a++) {
+            long yes = members[a] & mask;
+            if (yes == 0 || yes == mask || !usable.test(a)) continue;
+
+            long no = mask & ~yes;
+            int imbalance = Math.abs(Long.bitCount(yes) - Long.bitCount(no));
+            if (imbalance < balancedImbalance) {
+                balanced = a;
+                balancedImbalance = imbalance;
+            }
+            if (search.aborted) continue;
+
+            int depth = 1 + Math.max(depth(yes, search), depth(no, search));
+            if (depth < bestDepth || depth == bestDepth && imbalance < bestImbalance) {
+                best = a;
+                bestDepth = depth;
+                bestImbalance = imbalance;
+            }
+        }
+        return search.aborted ? balanced : best;
+    }
+
+    /**
+     * Minimal worst-case number of questions to get {@code m} down to a guess; exact, memoized by mask.
+     * Meaningless once {@code search.aborted} is set.
+     */
+    private static int depth(long m, Search search) {
+        int size = Long.bitCount(m);
+        if (size <= GUESS_AT) return 0;
+
+        Integer cached = search.memo.get(m);
+        if (cached != null) return cached;
+        if (!search.visit()) return 0;
+
+        // No question can do better than halving
+        int lowerBound = 0;
+        while ((GUESS_AT << lowerBound) < size) lowerBound++;
+
+        int best = Integer.MAX_VALUE;
+        for (long s : search.splits) {
+            long yes = m & s;
+            if (yes == 0 || yes == m) continue;
+
+            int d = 1 + Math.max(depth(yes, search), depth(m & ~s, search));
+            if (search.aborted) return 0;
+            if (d < best) {
+                best = d;
+                if (best == lowerBound) break;
+            }
+        }
+        if (best == Integer.MAX_VALUE) best = 0; // indistinguishable: guessing is all that is left
+
+        search.memo.put(m, best);
+        return best;
+    }
+
+    /** State of one {@link #bestAttribute} search. */
+    private static final class Search {
+        final long[] splits;
+        final BooleanSupplier stop;
+        final Map<Long, Integer> memo = new HashMap<>();
+        int nodes;
+        boolean aborted;
+
+        Search(long[] splits, BooleanSupplier stop) {
+            this.splits = splits;
+            this.stop = stop;
+        }
+
+        /** Counts one more subset; false (and aborted from then on) once over budget or stopped. */
+        boolean visit() {
+            if (++nodes > MAX_NODES || (nodes & 255) == 0 && stop.getAsBoolean()) aborted = true;
+            return !aborted;
+        }
+    }
+}
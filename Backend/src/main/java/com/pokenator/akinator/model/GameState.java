@@ -1,18 +1,56 @@
 package com.pokenator.akinator.model;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Per-session game state. Mutations happen under the session lock ({@code SessionManager.withLock});
+ * the collections and fields below are also safe to read concurrently (e.g. by the candidates endpoint).
+ *
+ * <p>Before each answer changes the state, a {@link Snapshot} of the pending question is pushed on a bounded
+ * undo stack. Constraints (and rejected guesses) are append-only between undos, so a snapshot only records
+ * their counts: the candidate set it stands for is the shared prefix of {@link #getConstraints()}, and each
+ * snapshot has a fixed size ({@link #SNAPSHOT_BYTES}) whatever the game length.
+ */
 public class GameState {
 
+    /** Undo depth per session; older snapshots are dropped first. */
+    public static final int MAX_UNDO = 64;
+
+    /**
+     * Estimated retained size of one snapshot: its deque slot and the {@link Snapshot} object, laid out from the
+     * record's components (see {@link #estimateSnapshotBytes}); the shared question and lists are excluded.
+     */
+    public static final int SNAPSHOT_BYTES = estimateSnapshotBytes();
+
     private final String sessionId;
-    private final List<Constraint> constraints = new ArrayList<>();
-    private final Set<String> askedKeys = new HashSet<>();
+    private final List<Constraint> constraints = new CopyOnWriteArrayList<>();
+    private final Set<String> askedKeys = ConcurrentHashMap.newKeySet();
+    private final BitSet askedValueIds = new BitSet(); // same as askedKeys, by species-index value id; lock-guarded
+
+    private volatile Question lastQuestion;
+    private volatile List<String> guessCandidates; // candidates the current GUESS was chosen from
+    private volatile long remainingCandidates = -1; // as reported with lastQuestion; -1 when not counted
+    private volatile int lastAskedValueId = -1;       // index value id of lastQuestion, -1 without index
+    private volatile int step;
+    private volatile Speculation speculation; // next questions precomputed for YES/NO, see GameService.speculate
+    private volatile Outcome outcome; // how the game ended; null while it goes on
+    private volatile boolean synthetic; // warm-up and load-test games: kept out of gameplay analytics
+    private volatile long lastAccessNanos = System.nanoTime(); // session tiering: idle sessions are spilled
+
+    private final List<String> rejectedGuesses = new CopyOnWriteArrayList<>(); // scoring engine only
+    private volatile Endgame endgame; // in-memory rows of the last few candidates, once loaded
+    private float[] scores; // scoring engine: per-species log-likelihood, rebuilt when null; lock-guarded
 
-    private Question lastQuestion;
-    private int step;
+    private final Deque<Snapshot> undoStack = new ArrayDeque<>(); // lock-guarded
+    private volatile int undoDepth;                               // undoStack.size(), readable without the lock
 
     public GameState(String sessionId) {
         this.sessionId = sessionId;
@@ -38,9 +76,211 @@ public class GameState {
         return askedKeys.contains(predicateUri + "|" + objectUri);
     }
 
+    /** Index-backed variant of {@link #markAsked(String, String)}; avoids building string keys. */
+    public boolean markAsked(int valueId) {
+        lastAskedValueId = valueId;
+        if (askedValueIds.get(valueId)) return false;
+        askedValueIds.set(valueId);
+        return true;
+    }
+
+    public boolean wasAsked(int valueId) {
+        return askedValueIds.get(valueId);
+    }
+
     public Question getLastQuestion() { return lastQuestion; }
     public void setLastQuestion(Question lastQuestion) { this.lastQuestion = lastQuestion; }
 
+    public List<String> getGuessCandidates() { return guessCandidates; }
+    public void setGuessCandidates(List<String> guessCandidates) { this.guessCandidates = guessCandidates; }
+
+    public List<String> getRejectedGuesses() { return rejectedGuesses; }
+    public void rejectGuess(String speciesUri) { rejectedGuesses.add(speciesUri); }
+
+    public Endgame getEndgame() { return endgame; }
+    public void setEndgame(Endgame endgame) { this.endgame = endgame; }
+
+    public float[] getScores() { return scores; }
+    public void setScores(float[] scores) { this.scores = scores; }
+
+    public long getRemainingCandidates() { return remainingCandidates; }
+    public void setRemainingCandidates(long remainingCandidates) { this.remainingCandidates = remainingCandidates; }
+
+    public Speculation getSpeculation() { return speculation; }
+    public void setSpeculation(Speculation speculation) { this.speculation = speculation; }
+
+    public Outcome getOutcome() { return outcome; }
+    public void setOutcome(Outcome outcome) { this.outcome = outcome; }
+
+    /**
+     * Independent copy of the answer history and asked questions, for trying an answer without touching this
+     * session. Undo history, endgame rows and scores are not copied.
+     */
+    public GameState fork() {
+        GameState copy = new GameState(sessionId);
+        copy.constraints.addAll(constraints);
+        copy.askedKeys.addAll(askedKeys);
+        copy.askedValueIds.or(askedValueIds);
+        copy.rejectedGuesses.addAll(rejectedGuesses);
+        copy.lastQuestion = lastQuestion;
+        copy.remainingCandidates = remainingCandidates;
+        copy.step = step;
+        return copy;
+    }
+
+    public boolean isSynthetic() { return synthetic; }
+    public void markSynthetic() { synthetic = true; }
+
+    public long lastAccessNanos() { return lastAccessNanos; }
+    public void touch() { lastAccessNanos = System.nanoTime(); }
+
     public int getStep() { return step; }
-    public void incrementStep() { step++; }
+    public void incrementStep() { step++; } // only written under the session lock
+
+    // =========================================================
+    // UNDO (session lock held)
+    // =========================================================
+
+    /** Records the current pending question so the next answer can be undone. */
+    public void pushSnapshot() {
+        if (undoStack.size() == MAX_UNDO) undoStack.removeFirst();
+        undoStack.addLast(new Snapshot(
+                constraints.size(),
+                rejectedGuesses.size(),
+                lastQuestion,
+                remainingCandidates,
+                guessCandidates,
+                lastAskedValueId,
+                endgame
+        ));
+        undoDepth = undoStack.size();
+    }
+
+    public int undoDepth() { return undoDepth; }
+
+    /**
+     * Reverts up to {@code steps} answers by popping snapshots; returns how many were reverted (0 when there is
+     * nothing to undo). Questions asked after the restored one become askable again. The step still advances,
+     * so answers sent for the undone questions are rejected as stale.
+     */
+    public int undo(int steps) {
+        int n = Math.min(steps, undoStack.size());
+        if (n <= 0) return 0;
+
+        unmarkAsked(lastQuestion, lastAskedValueId);
+        Snapshot s = null;
+        for (int i = 0; i < n; i++) {
+            s = undoStack.removeLast();
+            if (i < n - 1) unmarkAsked(s.question(), s.askedValueId());
+        }
+        undoDepth = undoStack.size();
+
+        constraints.subList(s.constraintCount(), constraints.size()).clear();
+        rejectedGuesses.subList(s.rejectedCount(), rejectedGuesses.size()).clear();
+        scores = null; // derived from the two lists above
+        lastQuestion = s.question();
+        remainingCandidates = s.remainingCandidates();
+        guessCandidates = s.guessCandidates();
+        lastAskedValueId = s.askedValueId();
+        endgame = s.endgame();
+        outcome = null;
+        step++;
+        return n;
+    }
+
+    /**
+     * Reverts an answer that failed before its next question was issued: pops the snapshot pushed for it, if the
+     * pending question is still the one recorded there. Unlike {@link #undo} the step does not advance and the
+     * pending question stays marked as asked, so the client can simply retry the answer.
+     */
+    public boolean rollback() {
+        Snapshot s = undoStack.peekLast();
+        if (s == null || s.question() != lastQuestion) return false;
+
+        undoStack.removeLast();
+        undoDepth = undoStack.size();
+        constraints.subList(s.constraintCount(), constraints.size()).clear();
+        rejectedGuesses.subList(s.rejectedCount(), rejectedGuesses.size()).clear();
+        scores = null;
+        remainingCandidates = s.remainingCandidates();
+        guessCandidates = s.guessCandidates();
+        lastAskedValueId = s.askedValueId();
+        endgame = s.endgame();
+        return true;
+    }
+
+    private void unmarkAsked(Question q, int valueId) {
+        if (q == null || q.kind() == QuestionKind.GUESS) return;
+        askedKeys.remove(q.predicateUri() + "|" + q.objectUri());
+        if (valueId >= 0 && q.kind() == QuestionKind.HAS_VALUE) askedValueIds.clear(valueId);
+    }
+
+    // =========================================================
+    // JOURNAL (compaction under the session lock; replay before the session is published)
+    // =========================================================
+
+    /** "predicate|object" keys of every question asked and not undone. */
+    public Set<String> askedKeys() { return Collections.unmodifiableSet(askedKeys); }
+
+    public void unmarkAsked(String predicateUri, String objectUri) {
+        askedKeys.remove(predicateUri + "|" + objectUri);
+    }
+
+    public void unmarkAsked(int valueId) {
+        askedValueIds.clear(valueId);
+    }
+
+    /** Drops constraints and rejected guesses past the given counts, as an undo does. */
+    public void truncate(int constraintCount, int rejectedCount) {
+        constraints.subList(Math.min(constraintCount, constraints.size()), constraints.size()).clear();
+        rejectedGuesses.subList(Math.min(rejectedCount, rejectedGuesses.size()), rejectedGuesses.size()).clear();
+        scores = null;
+    }
+
+    public void restoreStep(int step) { this.step = step; }
+
+    /** Index value id of the pending question (-1 when it has none), which an undo unmarks. */
+    public void restoreLastAskedValueId(int valueId) { this.lastAskedValueId = valueId; }
+
+    /** How a game ended: the final guess, or no candidates left ({@code speciesUri} null). */
+    public record Outcome(String speciesUri) {
+        public boolean noCandidates() { return speciesUri == null; }
+    }
+
+    /** Next question after a YES or NO to the question pending at {@code step}; null where none was computed. */
+    public record Speculation(int step, Question yes, Question no) {
+        public Question forAnswer(Answer answer) {
+            return answer == Answer.YES ? yes : answer == Answer.NO ? no : null;
+        }
+    }
+
+    /**
+     * Object header and fields of {@link Snapshot} rounded to 8 bytes, plus one reference for its deque slot,
+     * assuming a 64-bit JVM with compressed class pointers and oops (the default below 32 GB of heap).
+     */
+    private static int estimateSnapshotBytes() {
+        final int header = 12;
+        final int reference = 4;
+        int fields = 0;
+        for (RecordComponent c : Snapshot.class.getRecordComponents()) {
+            Class<?> t = c.getType();
+            if (t == long.class || t == double.class) fields += 8;
+            else if (t == int.class || t == float.class) fields += 4;
+            else if (t == short.class || t == char.class) fields += 2;
+            else if (t == byte.class || t == boolean.class) fields += 1;
+            else fields += reference;
+        }
+        return ((header + fields + 7) & ~7) + reference;
+    }
+
+    /** State before one answer; the constraint list is shared, only its length at that point is kept. */
+    private record Snapshot(
+            int constraintCount,
+            int rejectedCount,
+            Question question,
+            long remainingCandidates,
+            List<String> guessCandidates,
+            int askedValueId,
+            Endgame endgame // immutable, shared
+    ) {}
 }
@@ -1,9 +1,19 @@
 package com.pokenator.akinator.model;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public record Question(
         String id,
         String text,
         QuestionKind kind,
         String predicateUri,
         String objectUri
-) {}
+) {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /** Process-unique question id; much cheaper than a random UUID (no SecureRandom on the step path). */
+    public static String nextId() {
+        return Long.toString(SEQUENCE.incrementAndGet(), 36);
+    }
+}
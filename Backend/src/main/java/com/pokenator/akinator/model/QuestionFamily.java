@@ -0,0 +1,51 @@
+package com.pokenator.akinator.model;
+
+import com.pokenator.config.PokemonKgConfig;
+
+import java.util.List;
+
+/**
+ * A predicate whose values become HAS_VALUE questions ("Is it Fire type?").
+ * {@code inverse} families are stored as {@code <value> predicate ?species} (e.g. Generation featuresSpecies).
+ */
+public record QuestionFamily(String predicateUri, String questionNoun, boolean inverse) {
+
+    public static final List<QuestionFamily> DEFAULTS = List.of(
+            new QuestionFamily(PokemonKgConfig.POKEMON_NS + "hasType",         "type",       false),
+            new QuestionFamily(PokemonKgConfig.POKEMON_NS + "hasColour",       "color",      false),
+            new QuestionFamily(PokemonKgConfig.POKEMON_NS + "hasShape",        "shape",      false),
+            new QuestionFamily(PokemonKgConfig.POKEMON_NS + "foundIn",         "habitat",    false),
+            // Generation via inverse predicate: ?gen featuresSpecies ?s . ?gen a Generation .
+            new QuestionFamily(PokemonKgConfig.POKEMON_NS + "featuresSpecies", "generation", true)
+    );
+
+    /** The default family for the predicate, or one named after its local name ("inEggGroup" -> "egg group"). */
+    public static QuestionFamily forPredicate(String predicateUri, boolean inverse) {
+        for (QuestionFamily f : DEFAULTS) {
+            if (f.predicateUri().equals(predicateUri) && f.inverse() == inverse) return f;
+        }
+        return new QuestionFamily(predicateUri, nounOf(predicateUri), inverse);
+    }
+
+    private static String nounOf(String predicateUri) {
+        int idx = Math.max(predicateUri.lastIndexOf('#'), predicateUri.lastIndexOf('/'));
+        String name = predicateUri.substring(idx + 1);
+
+        // Drop a leading "has"/"in" verb: hasAbility, inEggGroup
+        for (String verb : new String[]{"has", "in"}) {
+            if (name.length() > verb.length() && name.startsWith(verb)
+                    && Character.isUpperCase(name.charAt(verb.length()))) {
+                name = name.substring(verb.length());
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (Character.isUpperCase(ch) && i > 0) sb.append(' ');
+            sb.append(Character.toLowerCase(ch));
+        }
+        return sb.toString();
+    }
+}
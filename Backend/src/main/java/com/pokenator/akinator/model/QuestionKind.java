@@ -2,5 +2,6 @@ package com.pokenator.akinator.model;
 
 public enum QuestionKind {
     HAS_VALUE,
+    NUMERIC_ABOVE, // e.g. "Is its weight greater than 50?"; objectUri holds the threshold
     GUESS// e.g. "Is it Fire type?"
 }
@@ -0,0 +1,130 @@
+package com.pokenator.akinator.service;
+
+import com.pokenator.akinator.model.Constraint;
+import com.pokenator.akinator.model.Endgame;
+import com.pokenator.akinator.model.GameState;
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.Deadline;
+import org.apache.jena.query.Dataset;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes over once few candidates remain: loads their full attribute rows once ({@link Endgame}) and then asks
+ * the question of an optimal (minimal worst-case depth) sequence over every distinguishing (predicate, value)
+ * pair, not only the generic question families. Later steps of the game run on the in-memory rows.
+ *
+ * <p>The exact search is bounded ({@link Endgame#MAX_NODES}) and gives up when the step's {@link Deadline}
+ * runs out; either way the most balanced split is asked instead.
+ */
+public class EndgameSolver {
+
+    private final SpeciesRepository speciesRepo;
+    private final QuestionCatalog catalog;
+    private final int threshold;
+
+    /** {@code threshold}: largest candidate count handled by the endgame (0 disables it; capped at 64). */
+    public EndgameSolver(SpeciesRepository speciesRepo, QuestionCatalog catalog, int threshold) {
+        this.speciesRepo = speciesRepo;
+        this.catalog = catalog;
+        this.threshold = Math.min(threshold, Endgame.MAX_SPECIES);
+    }
+
+    public static EndgameSolver disabled() {
+        return new EndgameSolver(null, null, 0);
+    }
+
+    public int threshold() { return threshold; }
+
+    /** Whether a game with this many candidates should switch to the endgame. */
+    public boolean applies(long remaining) {
+        return remaining > Endgame.GUESS_AT && remaining <= threshold;
+    }
+
+    /** Two queries: the candidates with their labels, then all their attribute rows. */
+    public Endgame load(Dataset dataset, List<Constraint> constraints) {
+        List<String> species = new ArrayList<>();
+        List<String> speciesLabels = new ArrayList<>();
+        speciesRepo.forEachCandidateWithLabel(dataset, constraints, null, threshold, s -> {
+            species.add(s.uri());
+            speciesLabels.add(s.label());
+        });
+
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < species.size(); i++) {
+            ordinals.put(species.get(i), i);
+        }
+
+        Map<String, Integer> attributeIds = new HashMap<>();
+        List<String> predicates = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<String> valueLabels = new ArrayList<>();
+        List<Long> members = new ArrayList<>();
+
+        speciesRepo.forEachAttribute(dataset, species, row -> {
+            Integer ordinal = ordinals.get(row.speciesUri());
+            if (ordinal == null) return;
+
+            Integer id = attributeIds.get(row.predicateUri() + "|" + row.valueUri());
+            if (id == null) {
+                id = members.size();
+                attributeIds.put(row.predicateUri() + "|" + row.valueUri(), id);
+                predicates.add(row.predicateUri());
+                values.add(row.valueUri());
+                valueLabels.add(row.valueLabel());
+                members.add(0L);
+            }
+            members.set(id, members.get(id) | (1L << ordinal));
+        });
+
+        long[] memberBits = new long[members.size()];
+        for (int i = 0; i < memberBits.length; i++) {
+            memberBits[i] = members.get(i);
+        }
+
+        return new Endgame(
+                species.toArray(new String[0]),
+                speciesLabels.toArray(new String[0]),
+                predicates.toArray(new String[0]),
+                values.toArray(new String[0]),
+                valueLabels.toArray(new String[0]),
+                memberBits
+        );
+    }
+
+    /** Next question of the optimal sequence, or null when only guessing is left. Marks it as asked. */
+    public Question nextQuestion(GameState state, Endgame endgame) {
+        Deadline deadline = Deadline.current();
+        int a = endgame.bestAttribute(i -> !state.wasAsked(endgame.predicate(i), endgame.value(i)), deadline::expired);
+        if (a < 0) return null;
+
+        String predicateUri = endgame.predicate(a);
+        String valueUri = endgame.value(a);
+
+        state.markAsked(predicateUri, valueUri);
+        SpeciesIndex index = speciesRepo.index();
+        if (index != null) {
+            int valueId = index.valueId(predicateUri, valueUri);
+            if (valueId >= 0) state.markAsked(valueId);
+        }
+
+        String text = catalog.text(catalog.id(predicateUri, valueUri));
+        if (text == null) {
+            text = catalog.adHocText(predicateUri, valueUri, endgame.valueLabel(a));
+        }
+
+        return new Question(
+                Question.nextId(),
+                text,
+                QuestionKind.HAS_VALUE,
+                predicateUri,
+                valueUri
+        );
+    }
+}
@@ -2,14 +2,21 @@ package com.pokenator.akinator.service;
 
 import com.pokenator.akinator.model.Answer;
 import com.pokenator.akinator.model.Constraint;
+import com.pokenator.akinator.model.Endgame;
 import com.pokenator.akinator.model.GameState;
 import com.pokenator.akinator.model.Question;
 import com.pokenator.akinator.model.QuestionKind;
 import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.analytics.GameAnalytics;
+import com.pokenator.index.SpeciesIndex;
 import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.repository.StepContext;
+import com.pokenator.sparql.Deadline;
+import com.pokenator.sparql.DeadlineExceededException;
 import org.apache.jena.query.Dataset;
 
 import java.util.List;
+import java.util.Set;
 
 public class GameService {
 
@@ -17,19 +24,151 @@ public class GameService {
     private final SessionManager sessions;
     private final SpeciesRepository speciesRepo;
     private final QuestionSelector selector;
+    private final ScoringEngine scoring;
+    private final EndgameSolver endgame;
+    private final GameAnalytics analytics;
+
+    // Candidates considered when ordering a guess by popularity without the index
+    private static final int GUESS_POOL = 16;
 
     public GameService(Dataset dataset,
                        SessionManager sessions,
                        SpeciesRepository speciesRepo,
                        QuestionSelector selector) {
+        this(dataset, sessions, speciesRepo, selector, ScoringEngine.disabled(), EndgameSolver.disabled());
+    }
+
+    /**
+     * With an enabled {@link ScoringEngine}, answers are soft evidence and the top-scored species is guessed.
+     * Otherwise answers are hard constraints and, once few candidates remain, the {@link EndgameSolver} plays
+     * the rest of the game from memory.
+     */
+    public GameService(Dataset dataset,
+                       SessionManager sessions,
+                       SpeciesRepository speciesRepo,
+                       QuestionSelector selector,
+                       ScoringEngine scoring,
+                       EndgameSolver endgame) {
+        this(dataset, sessions, speciesRepo, selector, scoring, endgame, GameAnalytics.inMemory());
+    }
+
+    /** {@code analytics} records every answer and confirmed guess, and orders guesses by popularity. */
+    public GameService(Dataset dataset,
+                       SessionManager sessions,
+                       SpeciesRepository speciesRepo,
+                       QuestionSelector selector,
+                       ScoringEngine scoring,
+                       EndgameSolver endgame,
+                       GameAnalytics analytics) {
         this.dataset = dataset;
         this.sessions = sessions;
         this.speciesRepo = speciesRepo;
         this.selector = selector;
+        this.scoring = scoring;
+        this.endgame = endgame;
+        this.analytics = analytics;
     }
 
     public StartGameResult start() {
+        return start(Deadline.none());
+    }
+
+    /** Starts a game; its first question is chosen within {@code deadline} (see {@link #answer}). */
+    public StartGameResult start(Deadline deadline) {
+        try (Deadline.Scope d = deadline.bind(); StepContext ignored = StepContext.open(dataset)) {
+            StartGameResult start = doStart();
+            sessions.journal().stepped(sessions.get(start.sessionId()));
+            return start;
+        }
+    }
+
+    public NextStepResult answer(String sessionId, Answer answer) {
+        return answer(sessionId, answer, null);
+    }
+
+    public NextStepResult answer(String sessionId, Answer answer, Integer expectedStep) {
+        return answer(sessionId, answer, expectedStep, Deadline.none());
+    }
+
+    /**
+     * Applies an answer to the session. When {@code expectedStep} is given it must equal the session's current
+     * step (the one returned with the question being answered); duplicate or stale answers are rejected with
+     * {@link StaleAnswerException} before any work is done. Answers to one session are serialized; different
+     * sessions never wait on each other except on a lock-stripe collision.
+     *
+     * <p>Every query of the step runs within {@code deadline}. When it runs out the selector settles for a
+     * partial ranking if it has one; otherwise {@link DeadlineExceededException} is thrown and the session is
+     * left as it was before the answer, so the same answer can be sent again.
+     */
+    public NextStepResult answer(String sessionId, Answer answer, Integer expectedStep, Deadline deadline) {
+        // Cheap pre-check without the lock: a stale version can only get staler
+        checkStep(sessions.get(sessionId), expectedStep);
+
+        return sessions.withLock(sessionId, () -> {
+            // Looked up again under the lock: an idle session may have been spilled off-heap meanwhile
+            GameState state = sessions.get(sessionId);
+            checkStep(state, expectedStep);
+            Question pending = state.getLastQuestion();
+            try (Deadline.Scope d = deadline.bind(); StepContext ignored = StepContext.open(dataset)) {
+                NextStepResult next = scoring.enabled() ? doAnswerScored(state, answer) : doAnswer(state, answer);
+                state.setOutcome(outcomeOf(next));
+                record(state, pending, answer);
+                sessions.journal().stepped(state);
+                return next;
+            } catch (DeadlineExceededException e) {
+                state.rollback();
+                Deadline.recordFailed();
+                throw e;
+            }
+        });
+    }
+
+    /** How the game ended with this result, kept for {@code GET /api/game/{id}}; null while questions continue. */
+    private static GameState.Outcome outcomeOf(NextStepResult next) {
+        return switch (next) {
+            case NextStepResult.Guess(String speciesUri) -> new GameState.Outcome(speciesUri);
+            case NextStepResult.NoCandidates none -> new GameState.Outcome(null);
+            case NextStepResult.NextQuestion question -> null;
+        };
+    }
+
+    /** Counts the answer to the pending question; synthetic (warm-up, load test) sessions are not counted. */
+    private void record(GameState state, Question last, Answer answer) {
+        if (last == null || state.isSynthetic() || last.objectUri() == null || last.objectUri().isBlank()) return;
+
+        if (last.kind() != QuestionKind.GUESS) {
+            analytics.answered(last.predicateUri(), last.objectUri(), answer);
+        } else if (answer == Answer.YES) {
+            analytics.confirmed(last.objectUri());
+        }
+    }
+
+    private void checkStep(GameState state, Integer expectedStep) {
+        if (expectedStep != null && expectedStep != state.getStep()) {
+            throw new StaleAnswerException(state.getSessionId(), expectedStep, state.getStep());
+        }
+    }
+
+    private StartGameResult doStart() {
         GameState state = sessions.create();
+        try {
+            return doStart(state);
+        } catch (DeadlineExceededException e) {
+            sessions.remove(state.getSessionId());
+            Deadline.recordFailed();
+            throw e;
+        }
+    }
+
+    private StartGameResult doStart(GameState state) {
+
+        if (scoring.enabled()) {
+            if (!(nextScored(state) instanceof NextStepResult.NextQuestion)) {
+                issue(state, noCandidatesQuestion(), 0);
+            }
+            return new StartGameResult(state.getSessionId(), state.getLastQuestion(), state.getStep());
+        }
+
         Question q = selector.nextQuestion(dataset, state);
 
         // If selector couldn't build anything, fallback to guess
@@ -38,12 +177,45 @@ public class GameService {
         }
 
         state.setLastQuestion(q);
+        // Memoized within the step (the selector counted the same empty constraint set); kept for undo
+        state.setRemainingCandidates(speciesRepo.countCandidates(dataset, state.getConstraints()));
         state.incrementStep();
-        return new StartGameResult(state.getSessionId(), q);
+        return new StartGameResult(state.getSessionId(), q, state.getStep());
     }
 
-    public NextStepResult answer(String sessionId, Answer answer) {
-        GameState state = sessions.get(sessionId);
+    /**
+     * Scoring engine: the session's plausible species, the error-tolerant counterpart of the candidates its
+     * constraints leave (which may exclude the right species after a wrong answer). Null with hard constraints.
+     */
+    public long[] plausibleCandidates(String sessionId) {
+        if (!scoring.enabled()) return null;
+        return sessions.withLock(sessionId, () -> {
+            float[] scores = scoring.scores(sessions.get(sessionId));
+            return scoring.plausibleSet(scores, scoring.best(scores));
+        });
+    }
+
+    /**
+     * Reverts the last {@code steps} answers of the session and returns the question that was pending then,
+     * restored from the session's undo stack without querying the dataset. {@code expectedStep} works as in
+     * {@link #answer(String, Answer, Integer)}. Throws {@link IllegalStateException} when there is nothing to undo.
+     */
+    public NextStepResult.NextQuestion undo(String sessionId, int steps, Integer expectedStep) {
+        checkStep(sessions.get(sessionId), expectedStep);
+
+        return sessions.withLock(sessionId, () -> {
+            GameState state = sessions.get(sessionId);
+            checkStep(state, expectedStep);
+            Set<String> askedBefore = sessions.journal().enabled() ? Set.copyOf(state.askedKeys()) : Set.of();
+            if (state.undo(Math.max(1, steps)) == 0) {
+                throw new IllegalStateException("Nothing to undo for session: " + sessionId);
+            }
+            sessions.journal().undone(state, askedBefore);
+            return NextStepResult.nextQuestion(state.getLastQuestion(), state.getRemainingCandidates(), state.getStep());
+        });
+    }
+
+    private NextStepResult doAnswer(GameState state, Answer answer) {
         Question last = state.getLastQuestion();
 
         // 1) If last was a GUESS, handle differently
@@ -54,8 +226,11 @@ public class GameService {
                 return NextStepResult.guess(last.objectUri()); // objectUri holds species URI
             }
 
-            // User said NO -> guess the other one if we have 2
-            List<String> candidates = speciesRepo.listCandidates(dataset, state.getConstraints(), 2);
+            // User said NO -> guess the other one if we have 2 (reuse the list the guess was built from)
+            List<String> candidates = state.getGuessCandidates();
+            if (candidates == null) {
+                candidates = speciesRepo.listCandidates(dataset, state.getConstraints(), 2);
+            }
 
             if (candidates.size() == 2) {
                 String other = candidates.get(0).equals(last.objectUri()) ? candidates.get(1) : candidates.get(0);
@@ -66,63 +241,224 @@ public class GameService {
             return NextStepResult.noCandidates();
         }
 
+        // From here on the state changes: keep the pending question for undo
+        state.pushSnapshot();
+
         // 2) If there is no actionable question, generate next or guess
         if (last == null || last.objectUri() == null || last.objectUri().isBlank()) {
-            return nextOrGuess(state);
+            return nextOrGuess(state, answer);
         }
 
         // 3) Normal HAS_VALUE flow: add constraint from last question
         if (answer != Answer.UNKNOWN) {
-            state.addConstraint(new Constraint(last.predicateUri(), last.objectUri(), answer));
+            state.addConstraint(new Constraint(last.predicateUri(), last.objectUri(), answer, last.kind()));
+        }
+
+        // Endgame already loaded: no dataset access from here on
+        Endgame eg = state.getEndgame();
+        if (eg != null) {
+            eg = eg.answer(last.predicateUri(), last.objectUri(), answer);
+            state.setEndgame(eg);
+            return endgameStep(state, eg);
         }
 
+        return nextOrGuess(state, answer);
+    }
+
+    /** Guess, switch to the endgame or ask the next question for the session's current constraints. */
+    private NextStepResult nextOrGuess(GameState state, Answer answer) {
+        // Endgame already loaded (the pending question was not actionable): keep playing it
+        Endgame eg = state.getEndgame();
+        if (eg != null) return endgameStep(state, eg);
+
         long remaining = speciesRepo.countCandidates(dataset, state.getConstraints());
 
         // 4) If small set, switch to GUESS mode immediately
         if (remaining <= 2) {
             Question gq = buildGuessQuestion(state);
-            state.setLastQuestion(gq);
-            state.incrementStep();
-            return NextStepResult.nextQuestion(gq, remaining);
+            return issue(state, gq, remaining);
         }
 
-        // 5) Otherwise keep asking questions
-        Question next = selector.nextQuestion(dataset, state);
+        // 4b) Few candidates: load their rows once and solve the rest exactly
+        if (endgame.applies(remaining)) {
+            eg = endgame.load(dataset, state.getConstraints());
+            state.setEndgame(eg);
+            return endgameStep(state, eg);
+        }
+
+        // 5) Otherwise keep asking questions (precomputed by speculate() when available)
+        Question next = adoptSpeculation(state, answer);
+        if (next == null) next = selector.nextQuestion(dataset, state);
 
         // If selector got stuck, fallback to guess
         if (isNoQuestion(next)) {
             Question gq = buildGuessQuestion(state);
-            state.setLastQuestion(gq);
-            state.incrementStep();
-            return NextStepResult.nextQuestion(gq, remaining);
+            return issue(state, gq, remaining);
         }
 
-        state.setLastQuestion(next);
-        state.incrementStep();
-        return NextStepResult.nextQuestion(next, remaining);
+        return issue(state, next, remaining);
     }
 
-    private NextStepResult nextOrGuess(GameState state) {
-        long remaining = speciesRepo.countCandidates(dataset, state.getConstraints());
+    /** The speculated question for this answer, marked as asked, if it was computed for the pending question. */
+    private Question adoptSpeculation(GameState state, Answer answer) {
+        GameState.Speculation spec = state.getSpeculation();
+        state.setSpeculation(null);
+        if (spec == null || spec.step() != state.getStep()) return null;
 
-        if (remaining <= 2) {
-            Question gq = buildGuessQuestion(state);
-            state.setLastQuestion(gq);
-            state.incrementStep();
-            return NextStepResult.nextQuestion(gq, remaining);
+        Question q = spec.forAnswer(answer);
+        if (q == null || state.wasAsked(q.predicateUri(), q.objectUri())) return null;
+
+        state.markAsked(q.predicateUri(), q.objectUri());
+        SpeciesIndex index = speciesRepo.index();
+        if (index != null && q.kind() == QuestionKind.HAS_VALUE) {
+            int valueId = index.valueId(q.predicateUri(), q.objectUri());
+            if (valueId >= 0) state.markAsked(valueId);
+        }
+        return q;
+    }
+
+    // =========================================================
+    // SPECULATION
+    // =========================================================
+
+    /**
+     * Computes, on forks of the session, the questions that would follow a YES and a NO to the pending question,
+     * and keeps them so the real answer adopts the matching one instead of running the selector. Runs outside
+     * the session lock except for the fork and the store. Returns null when nothing can be precomputed (scoring
+     * engine, endgame, guesses); a branch is null when it would end in a guess or the endgame, or was not
+     * computed within {@code deadline}.
+     */
+    public GameState.Speculation speculate(String sessionId, Deadline deadline) {
+        if (scoring.enabled()) return null;
+
+        GameState base = sessions.withLock(sessionId, () -> {
+            GameState state = sessions.get(sessionId);
+            Question q = state.getLastQuestion();
+            if (q == null || q.kind() == QuestionKind.GUESS || q.objectUri() == null || q.objectUri().isBlank()
+                    || state.getEndgame() != null) {
+                return null;
+            }
+            return state.fork();
+        });
+        if (base == null) return null;
+
+        GameState.Speculation spec;
+        try (Deadline.Scope d = deadline.bind(); StepContext ignored = StepContext.open(dataset)) {
+            spec = new GameState.Speculation(base.getStep(),
+                    speculate(base, Answer.YES),
+                    speculate(base, Answer.NO));
+        }
+
+        sessions.withLock(sessionId, () -> {
+            GameState state = sessions.get(sessionId);
+            if (state.getStep() == spec.step()) state.setSpeculation(spec);
+            return null;
+        });
+        return spec;
+    }
+
+    private Question speculate(GameState base, Answer answer) {
+        Question last = base.getLastQuestion();
+        GameState fork = base.fork();
+        fork.addConstraint(new Constraint(last.predicateUri(), last.objectUri(), answer, last.kind()));
+
+        try {
+            long remaining = speciesRepo.countCandidates(dataset, fork.getConstraints());
+            if (remaining <= 2 || endgame.applies(remaining)) return null;
+
+            Question q = selector.nextQuestion(dataset, fork);
+            return isNoQuestion(q) ? null : q;
+        } catch (DeadlineExceededException e) {
+            return null; // the real answer computes it
+        }
+    }
+
+    private NextStepResult endgameStep(GameState state, Endgame eg) {
+        long remaining = eg.remaining();
+        if (remaining == 0) {
+            state.setGuessCandidates(List.of());
+            return issue(state, noCandidatesQuestion(), 0);
+        }
+
+        if (remaining > Endgame.GUESS_AT) {
+            Question q = endgame.nextQuestion(state, eg);
+            if (q != null) return issue(state, q, remaining);
+        }
+
+        List<String> candidates = analytics.mostPopular(eg.remainingSpecies(Endgame.MAX_SPECIES), 2);
+        state.setGuessCandidates(candidates);
+        String guessUri = candidates.getFirst();
+        return issue(state, guessQuestion(guessUri, eg.speciesLabel(guessUri)), remaining);
+    }
+
+    // =========================================================
+    // SCORING ENGINE
+    // =========================================================
+
+    /** Like {@link #doAnswer}, but a NO to a guess only rules that species out and the game goes on. */
+    private NextStepResult doAnswerScored(GameState state, Answer answer) {
+        Question last = state.getLastQuestion();
+        float[] scores = scoring.scores(state); // before any change, so a rebuild does not count this answer twice
+
+        if (last != null && last.kind() == QuestionKind.GUESS) {
+            if (answer == Answer.YES) {
+                return NextStepResult.guess(last.objectUri());
+            }
+            if (last.objectUri() == null || last.objectUri().isBlank()) {
+                return NextStepResult.noCandidates();
+            }
+
+            state.pushSnapshot();
+            state.rejectGuess(last.objectUri());
+            scoring.reject(scores, last.objectUri());
+            return nextScored(state);
+        }
+
+        state.pushSnapshot();
+
+        if (last != null && last.objectUri() != null && !last.objectUri().isBlank() && answer != Answer.UNKNOWN) {
+            Constraint c = new Constraint(last.predicateUri(), last.objectUri(), answer, last.kind());
+            if (state.addConstraint(c)) {
+                scoring.apply(scores, c);
+            }
+        }
+
+        return nextScored(state);
+    }
+
+    private NextStepResult nextScored(GameState state) {
+        float[] scores = scoring.scores(state);
+        int best = scoring.best(scores);
+        if (best < 0) return NextStepResult.noCandidates();
+
+        long plausible = scoring.plausible(scores, best);
+
+        if (plausible <= 1 || scoring.probability(scores, best) >= scoring.guessProbability()) {
+            return issue(state, scoredGuessQuestion(state, best), plausible);
         }
 
         Question q = selector.nextQuestion(dataset, state);
         if (isNoQuestion(q)) {
-            Question gq = buildGuessQuestion(state);
-            state.setLastQuestion(gq);
-            state.incrementStep();
-            return NextStepResult.nextQuestion(gq, remaining);
+            return issue(state, scoredGuessQuestion(state, best), plausible);
         }
+        return issue(state, q, plausible);
+    }
 
+    private Question scoredGuessQuestion(GameState state, int ordinal) {
+        String guessUri = scoring.speciesUri(ordinal);
+        state.setGuessCandidates(List.of(guessUri));
+        return guessQuestion(guessUri);
+    }
+
+    // =========================================================
+    // HELPERS
+    // =========================================================
+
+    private NextStepResult issue(GameState state, Question q, long remaining) {
         state.setLastQuestion(q);
+        state.setRemainingCandidates(remaining);
         state.incrementStep();
-        return NextStepResult.nextQuestion(q, remaining);
+        return NextStepResult.nextQuestion(q, remaining, state.getStep());
     }
 
     private boolean isNoQuestion(Question q) {
@@ -136,23 +472,42 @@ public class GameService {
     }
 
     private Question buildGuessQuestion(GameState state) {
-        List<String> candidates = speciesRepo.listCandidates(dataset, state.getConstraints(), 2);
+        List<String> candidates = guessCandidates(state.getConstraints());
+        state.setGuessCandidates(candidates);
 
         if (candidates.isEmpty()) {
-            return new Question(
-                    java.util.UUID.randomUUID().toString(),
-                    "No candidates left.",
-                    QuestionKind.GUESS,
-                    "",
-                    ""
-            );
+            return noCandidatesQuestion();
         }
+        return guessQuestion(candidates.getFirst());
+    }
 
-        String guessUri = candidates.getFirst();
-        String label = speciesRepo.getEnglishLabel(dataset, guessUri);
+    /**
+     * The two species a guess uses, most confirmed first: over the whole candidate set with the index, otherwise
+     * over the first {@link #GUESS_POOL} candidates the endpoint lists.
+     */
+    private List<String> guessCandidates(List<Constraint> constraints) {
+        SpeciesIndex index = speciesRepo.index();
+        if (index != null) return analytics.mostPopular(index, speciesRepo.candidateSet(constraints), 2);
+        return analytics.mostPopular(speciesRepo.listCandidates(dataset, constraints, GUESS_POOL), 2);
+    }
+
+    private Question noCandidatesQuestion() {
+        return new Question(
+                Question.nextId(),
+                "No candidates left.",
+                QuestionKind.GUESS,
+                "",
+                ""
+        );
+    }
+
+    private Question guessQuestion(String guessUri) {
+        return guessQuestion(guessUri, speciesRepo.getEnglishLabel(dataset, guessUri));
+    }
 
+    private Question guessQuestion(String guessUri, String label) {
         return new Question(
-                java.util.UUID.randomUUID().toString(),
+                Question.nextId(),
                 "Is it " + label + "?",
                 QuestionKind.GUESS,
                 "",
@@ -165,16 +520,17 @@ public class GameService {
         return sessions.get(sessionId);
     }
 
-    public record StartGameResult(String sessionId, Question question) {}
+    public record StartGameResult(String sessionId, Question question, int step) {}
 
     public sealed interface NextStepResult
             permits NextStepResult.NextQuestion, NextStepResult.Guess, NextStepResult.NoCandidates {
 
-        static NextQuestion nextQuestion(Question q, long remaining) { return new NextQuestion(q, remaining); }
+        static NextQuestion nextQuestion(Question q, long remaining, int step) { return new NextQuestion(q, remaining, step); }
         static Guess guess(String speciesUri) { return new Guess(speciesUri); }
         static NoCandidates noCandidates() { return new NoCandidates(); }
 
-        record NextQuestion(Question question, long remainingCandidates) implements NextStepResult {}
+        /** {@code step} is the session version the answer to this question must carry. */
+        record NextQuestion(Question question, long remainingCandidates, int step) implements NextStepResult {}
         record Guess(String speciesUri) implements NextStepResult {}
         record NoCandidates() implements NextStepResult {}
     }
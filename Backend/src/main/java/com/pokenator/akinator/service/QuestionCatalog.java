@@ -0,0 +1,334 @@
+package com.pokenator.akinator.service;
+
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionFamily;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.sparql.Prefixes;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Literal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every askable (family predicate, value) pair with its normalized label and final question text, built once
+ * after the dataset loads. Entries are keyed by an integer id: the {@link SpeciesIndex} value id when an index
+ * is available, otherwise a catalog-local sequence.
+ *
+ * <p>Texts exist for each configured language; the first language is the default. Labels fall back to the
+ * untagged/English label and then to the URI local name.
+ */
+public class QuestionCatalog {
+
+    private static final String CLASS_GENERATION = PokemonKgConfig.POKEMON_NS + "Generation";
+
+    /**
+     * Question templates per language and family noun; {@code %s} is the value label. {@code "#numeric"} is
+     * the numeric threshold question, {@code %s} being the threshold.
+     */
+    private static final Map<String, Map<String, String>> TEMPLATES = Map.of(
+            "en", Map.of(
+                    "#numeric", "Is its %n greater than %s?",
+                    "egg group", "Is it in the %s egg group?",
+                    "habitat", "Is it found in %s?",
+                    "generation", "Is it from %s?",
+                    "*", "Is it %s %n?"
+            ),
+            "pt", Map.of(
+                    "#numeric", "O valor de %n é maior que %s?",
+                    "type", "É do tipo %s?",
+                    "color", "É da cor %s?",
+                    "shape", "Tem a forma %s?",
+                    "egg group", "É do grupo de ovos %s?",
+                    "habitat", "É encontrado em %s?",
+                    "generation", "É da %s?",
+                    "*", "É %s (%n)?"
+            )
+    );
+
+    /**
+     * Family and numeric attribute nouns (English, as in {@link QuestionFamily}) in the other languages. A
+     * template that needs a noun missing here is replaced by the English one.
+     */
+    private static final Map<String, Map<String, String>> NOUNS = Map.of(
+            "pt", Map.ofEntries(
+                    Map.entry("type", "tipo"),
+                    Map.entry("color", "cor"),
+                    Map.entry("colour", "cor"),
+                    Map.entry("shape", "forma"),
+                    Map.entry("habitat", "habitat"),
+                    Map.entry("generation", "geração"),
+                    Map.entry("egg group", "grupo de ovos"),
+                    Map.entry("ability", "habilidade"),
+                    Map.entry("weight", "peso"),
+                    Map.entry("height", "altura"),
+                    Map.entry("base experience", "experiência base"),
+                    Map.entry("capture rate", "taxa de captura"),
+                    Map.entry("base happiness", "felicidade base")
+            )
+    );
+
+    private final List<String> languages;
+    private final List<QuestionFamily> families;
+    private final Entry[] entries;                 // by id; null for ids outside the question families
+    private final Map<String, Integer> idsByKey;   // "predicate|value" -> id
+    private final SpeciesIndex index;              // nullable
+    private final Map<String, Entry> adHoc = new ConcurrentHashMap<>(); // "predicate|value" outside the families
+
+    private QuestionCatalog(List<String> languages, List<QuestionFamily> families,
+                            Entry[] entries, Map<String, Integer> idsByKey, SpeciesIndex index) {
+        this.languages = languages;
+        this.families = families;
+        this.entries = entries;
+        this.idsByKey = idsByKey;
+        this.index = index;
+    }
+
+    public static QuestionCatalog build(
+            Dataset dataset,
+            SparqlClient sparql,
+            SpeciesIndex index,
+            List<QuestionFamily> families,
+            List<String> languages
+    ) {
+        List<String> langs = languages.stream()
+                .filter(TEMPLATES::containsKey)
+                .toList();
+        if (langs.isEmpty()) langs = List.of("en");
+
+        List<Entry> built = new ArrayList<>();
+        for (QuestionFamily family : families) {
+            Map<String, Map<String, String>> labels = fetchLabels(dataset, sparql, family);
+            for (var e : labels.entrySet()) {
+                built.add(newEntry(family, e.getKey(), e.getValue(), langs));
+            }
+        }
+
+        Map<String, Integer> idsByKey = new HashMap<>();
+        Entry[] entries;
+
+        if (index != null) {
+            // Align ids with index value ids so the selector can look up by the id it already has
+            entries = new Entry[index.valueCount()];
+            for (Entry entry : built) {
+                int id = index.valueId(entry.predicateUri(), entry.valueUri());
+                if (id < 0) continue;
+                entries[id] = entry;
+                idsByKey.put(key(entry.predicateUri(), entry.valueUri()), id);
+            }
+        } else {
+            entries = built.toArray(new Entry[0]);
+            for (int id = 0; id < entries.length; id++) {
+                idsByKey.put(key(entries[id].predicateUri(), entries[id].valueUri()), id);
+            }
+        }
+
+        return new QuestionCatalog(langs, List.copyOf(families), entries, idsByKey, index);
+    }
+
+    // =========================================================
+    // LOOKUP
+    // =========================================================
+
+    public List<String> languages() { return languages; }
+
+    /** Families the catalog was built for; the selector asks about these. */
+    public List<QuestionFamily> families() { return families; }
+
+    public int size() { return idsByKey.size(); }
+
+    /** Catalog id of the pair, or -1. */
+    public int id(String predicateUri, String valueUri) {
+        if (index != null) {
+            int id = index.valueId(predicateUri, valueUri);
+            return id >= 0 && entries[id] != null ? id : -1;
+        }
+        Integer id = idsByKey.get(key(predicateUri, valueUri));
+        return id == null ? -1 : id;
+    }
+
+    public Entry entry(int id) {
+        return id >= 0 && id < entries.length ? entries[id] : null;
+    }
+
+    /** Question text in the default language, or null when the id is not in the catalog. */
+    public String text(int id) {
+        Entry e = entry(id);
+        return e == null ? null : e.texts()[0];
+    }
+
+    /**
+     * Text of a question about a value outside the families (the endgame asks any distinguishing attribute) in
+     * the default language, from the generic template and the predicate's noun. The entry is kept, so
+     * {@link #localize} finds the other languages later.
+     */
+    public String adHocText(String predicateUri, String valueUri, String valueLabel) {
+        Map<String, String> labels = valueLabel == null ? Map.of() : Map.of("", valueLabel);
+        Entry e = adHoc.computeIfAbsent(key(predicateUri, valueUri), k -> newEntry(
+                QuestionFamily.forPredicate(predicateUri, false), valueUri, labels, languages));
+        return e.texts()[0];
+    }
+
+    /** Question text in {@code language} (default language when unsupported), or null when unknown. */
+    public String text(String predicateUri, String valueUri, String language) {
+        Entry e = entry(id(predicateUri, valueUri));
+        if (e == null) e = adHoc.get(key(predicateUri, valueUri));
+        if (e == null) return null;
+
+        int lang = language == null ? -1 : languages.indexOf(language.toLowerCase());
+        return e.texts()[Math.max(0, lang)];
+    }
+
+    /** The question's text in {@code language} for HAS_VALUE and NUMERIC_ABOVE questions; guesses keep theirs. */
+    public String localize(Question q, String language) {
+        if (language == null) return q.text();
+        if (q.kind() == QuestionKind.HAS_VALUE) {
+            String localized = text(q.predicateUri(), q.objectUri(), language);
+            return localized != null ? localized : q.text();
+        }
+        if (q.kind() == QuestionKind.NUMERIC_ABOVE) {
+            return numericText(q.predicateUri(), q.objectUri(), language);
+        }
+        return q.text();
+    }
+
+    /** Text of a numeric threshold question in {@code language} (default language when null/unsupported). */
+    public String numericText(String predicateUri, String threshold, String language) {
+        int lang = language == null ? -1 : languages.indexOf(language.toLowerCase());
+        String noun = QuestionFamily.forPredicate(predicateUri, false).questionNoun();
+        return fill(languages.get(Math.max(0, lang)), "#numeric", noun, threshold);
+    }
+
+    // =========================================================
+    // BUILD
+    // =========================================================
+
+    /** value URI -> (language -> label), all values of the family reachable from a species. */
+    private static Map<String, Map<String, String>> fetchLabels(Dataset dataset, SparqlClient sparql, QuestionFamily family) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS));
+        sb.append(Prefixes.prefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#"));
+        sb.append("SELECT DISTINCT ?o ?l\n");
+        sb.append("WHERE {\n");
+        sb.append("  GRAPH ?g {\n");
+        sb.append("    ?s a pokemon:Species .\n");
+        if (family.inverse()) {
+            sb.append("    ?o <").append(family.predicateUri()).append("> ?s .\n");
+            sb.append("    ?o a <").append(CLASS_GENERATION).append("> .\n");
+        } else {
+            sb.append("    ?s <").append(family.predicateUri()).append("> ?o .\n");
+        }
+        sb.append("    FILTER(isIRI(?o))\n");
+        sb.append("  }\n");
+        sb.append("  OPTIONAL { GRAPH ?lg { ?o rdfs:label ?l . } }\n");
+        sb.append("}");
+
+        Map<String, Map<String, String>> out = new LinkedHashMap<>();
+        sparql.selectEach(dataset, sb.toString(), r -> {
+            Map<String, String> byLang = out.computeIfAbsent(r.getResource("o").getURI(), k -> new HashMap<>());
+            if (r.contains("l")) {
+                Literal l = r.getLiteral("l");
+                byLang.putIfAbsent(primaryLanguage(l.getLanguage()), l.getString());
+            }
+        });
+        return out;
+    }
+
+    private static Entry newEntry(QuestionFamily family, String valueUri, Map<String, String> labels, List<String> langs) {
+        String fallback = labels.getOrDefault("", labels.getOrDefault("en", localName(valueUri)));
+
+        String[] normalized = new String[langs.size()];
+        String[] texts = new String[langs.size()];
+        for (int i = 0; i < langs.size(); i++) {
+            String lang = langs.get(i);
+            normalized[i] = normalizeLabel(labels.getOrDefault(lang, fallback));
+            texts[i] = fill(lang, family.questionNoun(), family.questionNoun(), normalized[i]);
+        }
+        return new Entry(family.predicateUri(), valueUri, normalized, texts);
+    }
+
+    /** The {@code key} template of {@code lang} filled in; the English text when it needs an untranslated noun. */
+    private static String fill(String lang, String key, String noun, String value) {
+        String localNoun = "en".equals(lang) ? noun : NOUNS.getOrDefault(lang, Map.of()).get(noun);
+        String template = template(lang, key);
+        if (localNoun == null && template.contains("%n")) {
+            localNoun = noun;
+            template = template("en", key);
+        }
+        return template.replace("%s", value).replace("%n", localNoun);
+    }
+
+    private static String template(String lang, String key) {
+        Map<String, String> templates = TEMPLATES.get(lang);
+        return templates.getOrDefault(key, templates.get("*"));
+    }
+
+    private static String normalizeLabel(String label) {
+        if (label == null) return "";
+        String cleaned = label.trim();
+
+        cleaned = cleaned.replace("PokéType:", "")
+                .replace("PokeType:", "")
+                .replace("Type:", "")
+                .replace("EggGroup:", "")
+                .replace("Egg group:", "")
+                .replace("Shape:", "")
+                .replace("Colour:", "")
+                .replace("Color:", "")
+                .replace("Habitat:", "")
+                .replace("Location:", "")
+                .replace("Generation:", "")
+                .trim();
+
+        cleaned = cleaned.replace("Pokédex:", "").trim();
+        return collapseWhitespace(cleaned);
+    }
+
+    /** Equivalent of {@code s.replaceAll("\\s+", " ")} without the regex engine. */
+    private static String collapseWhitespace(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean inSpace = false;
+
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r') {
+                if (!inSpace) sb.append(' ');
+                inSpace = true;
+            } else {
+                sb.append(ch);
+                inSpace = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** "pt-BR" -> "pt"; untagged stays "". */
+    private static String primaryLanguage(String tag) {
+        int dash = tag.indexOf('-');
+        return (dash < 0 ? tag : tag.substring(0, dash)).toLowerCase();
+    }
+
+    private static String key(String predicateUri, String valueUri) {
+        return predicateUri + "|" + valueUri;
+    }
+
+    private static String localName(String uri) {
+        int hash = uri.lastIndexOf('#');
+        int slash = uri.lastIndexOf('/');
+        int idx = Math.max(hash, slash);
+        if (idx >= 0 && idx + 1 < uri.length()) {
+            return uri.substring(idx + 1);
+        }
+        return uri;
+    }
+
+    /** Labels and texts are parallel to {@link #languages()}. */
+    public record Entry(String predicateUri, String valueUri, String[] labels, String[] texts) {}
+}
@@ -3,86 +3,399 @@ package com.pokenator.akinator.service;
 import com.pokenator.akinator.model.Constraint;
 import com.pokenator.akinator.model.GameState;
 import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionFamily;
 import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.analytics.GameAnalytics;
 import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.index.CooccurrenceMatrix;
+import com.pokenator.index.NumericColumns;
+import com.pokenator.index.SpeciesIndex;
 import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.Deadline;
+import com.pokenator.sparql.DeadlineExceededException;
 import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
 
 public class QuestionSelector {
 
+    private static final Logger log = LoggerFactory.getLogger(QuestionSelector.class);
+
     private final SpeciesRepository speciesRepo;
+    private final SpeciesIndex index; // nullable: SPARQL-only mode
+    private final NumericColumns numeric;
+    private final QuestionCatalog catalog;
+    private final ScoringEngine scoring;
+    private final GameAnalytics analytics;
+    private final CooccurrenceMatrix cooccurrence; // nullable: greedy (one-question) ranking
 
-    // Direct predicates (Species -> value)
-    private static final String HAS_TYPE     = PokemonKgConfig.POKEMON_NS + "hasType";
-    private static final String HAS_COLOUR   = PokemonKgConfig.POKEMON_NS + "hasColour";
-    private static final String HAS_SHAPE    = PokemonKgConfig.POKEMON_NS + "hasShape";
-    private static final String IN_EGG_GROUP = PokemonKgConfig.POKEMON_NS + "inEggGroup";
-    private static final String FOUND_IN     = PokemonKgConfig.POKEMON_NS + "foundIn";
+    // Direct predicate (Species -> value), used by the placeholder questions
+    private static final String HAS_TYPE = PokemonKgConfig.POKEMON_NS + "hasType";
 
-    // Inverse predicate (Generation -> Species)
-    private static final String FEATURES_SPECIES = PokemonKgConfig.POKEMON_NS + "featuresSpecies";
+    // Subject class of the inverse families (the profiler finds them through ?gen a Generation)
     private static final String CLASS_GENERATION = PokemonKgConfig.POKEMON_NS + "Generation";
 
     private static final int LIMIT_VALUES = 40;
     private static final int TOP_K_RANDOM = 4;
 
-    public QuestionSelector(SpeciesRepository speciesRepo) {
+    // Lookahead: best first questions by greedy split that are re-ranked by their best follow-ups
+    private static final int LOOKAHEAD_WIDTH = 24;
+
+    // Scoring mode: values whose yes-probability is outside [MIN_SPLIT, 1 - MIN_SPLIT] tell nothing new
+    private static final double MIN_SPLIT = 0.01;
+    private static final double SPLIT_SCALE = 1e9;
+
+    private final List<QuestionFamily> families; // from the startup profile, see KgProfiler
+
+    // SPARQL mode: what the per-family queries count, for batching them
+    private final List<String> directPredicates = new ArrayList<>();
+    private final boolean hasInverseFamily;
+
+    // Index mode: value id ranges resolved once
+    private final SpeciesIndex.ValueRange[] familyRanges;
+
+    private final ThreadLocal<Scratch> scratch;
+
+    public QuestionSelector(SpeciesRepository speciesRepo, QuestionCatalog catalog) {
+        this(speciesRepo, catalog, ScoringEngine.disabled());
+    }
+
+    public QuestionSelector(SpeciesRepository speciesRepo, QuestionCatalog catalog, ScoringEngine scoring) {
+        this(speciesRepo, catalog, scoring, GameAnalytics.inMemory());
+    }
+
+    /**
+     * {@code analytics}: questions players often answer "unknown" are ranked as if their split were worse, in
+     * proportion to how often that happens.
+     */
+    public QuestionSelector(SpeciesRepository speciesRepo, QuestionCatalog catalog, ScoringEngine scoring,
+                            GameAnalytics analytics) {
+        this(speciesRepo, catalog, scoring, analytics, null);
+    }
+
+    /**
+     * {@code cooccurrence}: looks two questions ahead instead of taking the best single split, see
+     * {@link #lookahead}. Only the index mode with hard constraints uses it; null keeps the greedy ranking.
+     */
+    public QuestionSelector(SpeciesRepository speciesRepo, QuestionCatalog catalog, ScoringEngine scoring,
+                            GameAnalytics analytics, CooccurrenceMatrix cooccurrence) {
         this.speciesRepo = speciesRepo;
+        this.index = speciesRepo.index();
+        this.numeric = speciesRepo.numeric();
+        this.catalog = catalog;
+        this.scoring = scoring;
+        this.analytics = analytics;
+        this.cooccurrence = index != null && !scoring.enabled() ? cooccurrence : null;
+        this.families = catalog.families();
+        for (QuestionFamily f : families) {
+            if (!f.inverse()) directPredicates.add(f.predicateUri());
+        }
+        this.hasInverseFamily = directPredicates.size() < families.size();
+
+        if (index != null) {
+            this.familyRanges = new SpeciesIndex.ValueRange[families.size()];
+            for (int i = 0; i < familyRanges.length; i++) {
+                familyRanges[i] = index.valuesOf(families.get(i).predicateUri());
+            }
+            int weights = scoring.enabled() ? index.speciesCount() : 0;
+            int ranked = this.cooccurrence != null ? LOOKAHEAD_WIDTH : TOP_K_RANDOM;
+            this.scratch = ThreadLocal.withInitial(() -> new Scratch(
+                    index.wordsPerSet(), weights, index.speciesCount(), index.valueCount(), numeric.attributeCount(),
+                    ranked));
+        } else {
+            this.familyRanges = null;
+            this.scratch = ThreadLocal.withInitial(() -> new Scratch(0, 0, 0, 0, 0, TOP_K_RANDOM));
+        }
     }
 
+    /**
+     * In SPARQL mode, when the thread's {@link Deadline} runs out midway, the question is chosen among the
+     * families whose counts were completed; {@link DeadlineExceededException} only when none was.
+     */
     public Question nextQuestion(Dataset dataset, GameState state) {
+        if (scoring.enabled()) return nextQuestionScored(state);
+        return index != null
+                ? nextQuestionIndexed(dataset, state)
+                : nextQuestionSparql(dataset, state);
+    }
 
-        long total = speciesRepo.countCandidates(dataset, state.getConstraints());
-        if (total <= 1) {
-            return new Question(UUID.randomUUID().toString(),
-                    "I think I already know which Pokémon it is.",
-                    QuestionKind.HAS_VALUE,
-                    HAS_TYPE,
-                    "");
-        }
-
-        // Families (direct)
-        List<Family> families = List.of(
-                new Family(HAS_TYPE,     "type"),
-                new Family(HAS_COLOUR,   "color"),
-                new Family(HAS_SHAPE,    "shape"),
-                new Family(FOUND_IN,     "habitat")
+    // =========================================================
+    // INDEX MODE (no SPARQL, no per-value allocation)
+    // =========================================================
+
+    private Question nextQuestionIndexed(Dataset dataset, GameState state) {
+        Scratch sc = scratch.get();
+
+        long[] set = speciesRepo.candidateSet(state.getConstraints(), sc.candidates);
+        long total = SpeciesIndex.count(set);
+        if (total <= 1) return alreadyKnown();
+
+        // Do not ask values already constrained (YES or NO)
+        markConstrained(state, sc);
+
+        sc.top.reset();
+        sc.follows = 0;
+        for (int f = 0; f < families.size(); f++) {
+            boolean anyFresh = offerIndexedFamily(f, state, set, total, sc, true);
+            if (!anyFresh && !families.get(f).inverse()) {
+                // Every value was asked already: allow re-asking the unconstrained ones
+                offerIndexedFamily(f, state, set, total, sc, false);
+            }
+        }
+        if (numeric.indexed()) {
+            offerNumeric(state, set, total, sc);
+        }
+
+        if (sc.top.size == 0) return noGoodQuestion();
+
+        // Numeric attributes are offered with handles after the value ids
+        int handle = cooccurrence != null ? lookahead(set, total, sc) : sc.top.pick();
+        if (handle >= index.valueCount()) {
+            return askNumeric(state, handle - index.valueCount(), sc.thresholds[handle - index.valueCount()]);
+        }
+        return askIndexed(state, handle);
+    }
+
+    /** Offers "value > median of the candidates" for every numeric attribute: a near-even split by design. */
+    private void offerNumeric(GameState state, long[] set, long total, Scratch sc) {
+        for (int a = 0; a < numeric.attributeCount(); a++) {
+            double threshold = numeric.median(set, a, sc.values);
+            if (Double.isNaN(threshold)) continue;
+            if (state.wasAsked(numeric.predicateUri(a), NumericColumns.format(threshold))) continue;
+
+            int yes = numeric.countAbove(set, a, threshold);
+            if (yes <= 0 || yes >= total) continue;
+
+            sc.thresholds[a] = threshold;
+            if (cooccurrence != null) sc.yes[index.valueCount() + a] = yes;
+            sc.top.offer(index.valueCount() + a, Math.abs((total / 2) - yes));
+        }
+    }
+
+    private Question askNumeric(GameState state, int attribute, double threshold) {
+        String predicateUri = numeric.predicateUri(attribute);
+        String value = NumericColumns.format(threshold);
+
+        state.markAsked(predicateUri, value);
+
+        return new Question(
+                Question.nextId(),
+                catalog.numericText(predicateUri, value, null),
+                QuestionKind.NUMERIC_ABOVE,
+                predicateUri,
+                value
+        );
+    }
+
+    private Question askIndexed(GameState state, int valueId) {
+        String predicateUri = index.predicateUri(valueId);
+        String objectUri = index.valueUri(valueId);
+
+        state.markAsked(valueId);
+        state.markAsked(predicateUri, objectUri);
+
+        return new Question(
+                Question.nextId(),
+                catalog.text(valueId),
+                QuestionKind.HAS_VALUE,
+                predicateUri,
+                objectUri
         );
+    }
 
-        List<CandidateQuestion> candidates = new ArrayList<>();
+    private void markConstrained(GameState state, Scratch sc) {
+        sc.constrained.clear();
+        for (Constraint c : state.getConstraints()) {
+            int v = index.valueId(c.predicateUri(), c.objectUri());
+            if (v >= 0) sc.constrained.set(v);
+        }
+    }
+
+    /** Offers the family's eligible values to the top-K; returns whether any eligible value existed. */
+    private boolean offerIndexedFamily(int family, GameState state, long[] set, long total, Scratch sc, boolean skipAsked) {
+        SpeciesIndex.ValueRange range = familyRanges[family];
+        boolean anyEligible = false;
+
+        for (int v = range.from(); v < range.to(); v++) {
+            if (sc.constrained.get(v)) continue;
+            if (skipAsked && state.wasAsked(v)) continue;
+
+            int yes = index.countAnd(set, v);
+            if (yes <= 0) continue;
+            anyEligible = true;
+
+            if (yes >= total) continue;
+            if (catalog.entry(v) == null) continue; // no question text for it
+            if (cooccurrence != null) {
+                sc.yes[v] = yes;
+                sc.followIds[sc.follows++] = v;
+            }
+            sc.top.offer(v, Math.abs((total / 2) - yes) + Math.round(analytics.unknownRate(v) * (total / 2.0)));
+        }
+        return anyEligible;
+    }
+
+    // =========================================================
+    // LOOKAHEAD (index mode with a co-occurrence matrix)
+    // =========================================================
+
+    /**
+     * Re-ranks the greedy shortlist in {@code sc.top} by the expected number of candidates left after two
+     * questions: the first one, then the best follow-up for each of its answers. Picks among the best few as
+     * the greedy ranking does.
+     */
+    private int lookahead(long[] set, long total, Scratch sc) {
+        TopK shortlist = sc.top;
+        sc.chosen.reset();
+        for (int i = 0; i < shortlist.size; i++) {
+            int handle = shortlist.handles[i];
+            double unknown = handle < index.valueCount() ? analytics.unknownRate(handle) * (total / 2.0) : 0.0;
+            sc.chosen.offer(handle, Math.round((expectedAfterTwo(handle, set, total, sc) + unknown) * SPLIT_SCALE));
+        }
+        return sc.chosen.pick();
+    }
 
-        // 1) Direct families
-        for (Family f : families) {
-            candidates.addAll(buildCandidatesForFamily(dataset, state, f, total));
+    /**
+     * Expected candidates left after asking {@code first} and then the best value question on each side.
+     *
+     * <p>The candidates having both the first answer A and a follow-up B are counted exactly, on the candidate
+     * set narrowed to A. The co-occurrence matrix only settles the pairs it can without a bitset pass: values no
+     * species has together, and a value only species with the other have.
+     */
+    private double expectedAfterTwo(int first, long[] set, long total, Scratch sc) {
+        double c = total;
+        int a = sc.yes[first];
+        double no = c - a;
+        boolean isValue = first < index.valueCount();
+        int cardA = isValue ? cooccurrence.count(first, first) : 0;
+
+        // C ∩ A, built on the first follow-up that needs it
+        long[] branch = sc.branch;
+        boolean branchReady = false;
+
+        // Without a useful follow-up the side stays whole
+        double bestYes = (double) a * a;
+        double bestNo = no * no;
+        for (int i = 0; i < sc.follows; i++) {
+            int b = sc.followIds[i];
+            if (b == first) continue;
+
+            int nb = sc.yes[b];
+            double both;
+            int co = isValue ? cooccurrence.count(first, b) : -1;
+            if (co == 0) {
+                both = 0;                              // no species has both
+            } else if (co > 0 && co == cooccurrence.count(b, b)) {
+                both = nb;                             // every species with B has A
+            } else if (co > 0 && co == cardA) {
+                both = a;                              // every species with A has B
+            } else {
+                if (!branchReady) {
+                    System.arraycopy(set, 0, branch, 0, set.length);
+                    if (isValue) index.and(branch, first);
+                    else numeric.and(branch, first - index.valueCount(), sc.thresholds[first - index.valueCount()]);
+                    branchReady = true;
+                }
+                both = index.countAnd(branch, b);
+            }
+
+            double yesSplit = both * both + (a - both) * (a - both);
+            double noYes = nb - both;
+            double noSplit = noYes * noYes + (no - noYes) * (no - noYes);
+            if (yesSplit < bestYes) bestYes = yesSplit;
+            if (noSplit < bestNo) bestNo = noSplit;
         }
+        return (bestYes + bestNo) / c;
+    }
+
+    // =========================================================
+    // SCORING MODE (soft evidence, see ScoringEngine)
+    // =========================================================
+
+    /** Ranks values by how close the probability mass of the species having them is to one half. */
+    private Question nextQuestionScored(GameState state) {
+        Scratch sc = scratch.get();
 
-        // 2) Generation via inverse predicate: ?gen featuresSpecies ?s . ?gen a Generation .
-        candidates.addAll(buildGenerationCandidates(dataset, state, total));
+        float[] scores = scoring.scores(state);
+        int best = scoring.best(scores);
+        if (best < 0) return noGoodQuestion();
+        scoring.probabilities(scores, best, sc.weights);
 
-        if (candidates.isEmpty()) {
-            return new Question(UUID.randomUUID().toString(),
-                    "I couldn't find a good next question.",
-                    QuestionKind.HAS_VALUE,
-                    HAS_TYPE,
-                    "");
+        markConstrained(state, sc);
+
+        sc.top.reset();
+        for (SpeciesIndex.ValueRange range : familyRanges) {
+            for (int v = range.from(); v < range.to(); v++) {
+                if (sc.constrained.get(v) || state.wasAsked(v)) continue;
+                if (catalog.entry(v) == null) continue;
+
+                double yes = scoring.mass(sc.weights, v);
+                if (yes < MIN_SPLIT || yes > 1.0 - MIN_SPLIT) continue;
+                double unknown = analytics.unknownRate(v) * 0.5;
+                sc.top.offer(v, Math.round((Math.abs(0.5 - yes) + unknown) * SPLIT_SCALE));
+            }
         }
 
+        if (sc.top.size == 0) return noGoodQuestion();
+        return askIndexed(state, sc.top.pick());
+    }
+
+    // =========================================================
+    // SPARQL MODE
+    // =========================================================
+
+    private Question nextQuestionSparql(Dataset dataset, GameState state) {
+
+        long total = speciesRepo.countCandidates(dataset, state.getConstraints());
+        if (total <= 1) return alreadyKnown();
+
+        try {
+            // Remote endpoint: every family's counts in one round trip (a no-op on a local dataset)
+            speciesRepo.prefetchValueCounts(dataset, directPredicates, hasInverseFamily, state.getConstraints(),
+                    LIMIT_VALUES);
+        } catch (DeadlineExceededException e) {
+            // Out of budget already: the family loop below fails the same way and reports it
+        }
+
+        List<CandidateQuestion> candidates = new ArrayList<>();
+
+        int completed = 0;
+        try {
+            for (QuestionFamily f : families) {
+                if (f.inverse()) {
+                    buildInverseCandidates(dataset, state, f, total, candidates);
+                } else {
+                    buildCandidatesForFamily(dataset, state, f, total, candidates);
+                }
+                completed++;
+            }
+        } catch (DeadlineExceededException e) {
+            // Out of budget: settle for the families completed so far (a family adds nothing until its query ends)
+            if (candidates.isEmpty()) throw e;
+            Deadline.recordDegraded();
+            log.debug("Deadline exceeded: choosing among {} of {} families", completed, families.size());
+        }
+
+        if (candidates.isEmpty()) return noGoodQuestion();
+
         // Rank by best split, then pick randomly among top K to reduce linearity
-        List<CandidateQuestion> ranked = candidates.stream()
-                .sorted(Comparator.comparingLong(c -> Math.abs((total / 2) - c.yesCount)))
-                .toList();
+        TopK top = scratch.get().top;
+        top.reset();
+        for (int i = 0; i < candidates.size(); i++) {
+            CandidateQuestion c = candidates.get(i);
+            long unknown = Math.round(analytics.unknownRate(c.predicateUri, c.objectUri) * (total / 2.0));
+            top.offer(i, Math.abs((total / 2) - c.yesCount) + unknown);
+        }
 
-        int k = Math.min(TOP_K_RANDOM, ranked.size());
-        CandidateQuestion chosen = ranked.get(ThreadLocalRandom.current().nextInt(k));
+        CandidateQuestion chosen = candidates.get(top.pick());
 
         state.markAsked(chosen.predicateUri, chosen.objectUri);
 
         return new Question(
-                UUID.randomUUID().toString(),
+                Question.nextId(),
                 chosen.text,
                 QuestionKind.HAS_VALUE,
                 chosen.predicateUri,
@@ -90,116 +403,167 @@ public class QuestionSelector {
         );
     }
 
-    private List<CandidateQuestion> buildCandidatesForFamily(
+    private void buildCandidatesForFamily(
             Dataset dataset,
             GameState state,
-            Family family,
-            long totalCandidates
+            QuestionFamily family,
+            long totalCandidates,
+            List<CandidateQuestion> out
     ) {
         // Do not ask values already constrained for that predicate (YES or NO)
-        Set<String> constrainedValues = state.getConstraints().stream()
-                .filter(c -> family.predicateUri.equals(c.predicateUri()))
-                .map(Constraint::objectUri)
-                .collect(Collectors.toSet());
+        Set<String> constrainedValues = constrainedValues(state, family.predicateUri());
 
         List<SpeciesRepository.ValueCount> counts =
-                speciesRepo.countByPredicateValue(dataset, family.predicateUri, state.getConstraints(), LIMIT_VALUES);
-
-        List<SpeciesRepository.ValueCount> filtered = counts.stream()
-                .filter(vc -> !constrainedValues.contains(vc.valueUri()))
-                .filter(vc -> !state.wasAsked(family.predicateUri, vc.valueUri()))
-                .toList();
-
-        if (filtered.isEmpty()) {
-            filtered = counts.stream()
-                    .filter(vc -> !constrainedValues.contains(vc.valueUri()))
-                    .toList();
+                speciesRepo.countByPredicateValue(dataset, family.predicateUri(), state.getConstraints(), LIMIT_VALUES);
+
+        boolean anyFresh = false;
+        for (SpeciesRepository.ValueCount vc : counts) {
+            if (!constrainedValues.contains(vc.valueUri()) && !state.wasAsked(family.predicateUri(), vc.valueUri())) {
+                anyFresh = true;
+                break;
+            }
         }
 
-        if (filtered.isEmpty()) return List.of();
-
-        List<CandidateQuestion> out = new ArrayList<>();
+        for (SpeciesRepository.ValueCount vc : counts) {
+            if (constrainedValues.contains(vc.valueUri())) continue;
+            if (anyFresh && state.wasAsked(family.predicateUri(), vc.valueUri())) continue;
 
-        for (SpeciesRepository.ValueCount vc : filtered) {
             long yes = vc.count();
             if (yes <= 0 || yes >= totalCandidates) continue;
 
-            String label = normalizeLabel(speciesRepo.getEnglishLabel(dataset, vc.valueUri()));
-            String questionText = buildQuestionText(family.questionNoun, label);
+            String questionText = catalog.text(catalog.id(family.predicateUri(), vc.valueUri()));
+            if (questionText == null) continue;
 
-            out.add(new CandidateQuestion(family.predicateUri, vc.valueUri(), yes, questionText));
+            out.add(new CandidateQuestion(family.predicateUri(), vc.valueUri(), yes, questionText));
         }
-
-        return out;
     }
 
-    private List<CandidateQuestion> buildGenerationCandidates(Dataset dataset, GameState state, long totalCandidates) {
-
-        // do not repeat generations already constrained/asked
-        Set<String> constrained = state.getConstraints().stream()
-                .filter(c -> FEATURES_SPECIES.equals(c.predicateUri()))
-                .map(Constraint::objectUri)
-                .collect(Collectors.toSet());
+    private void buildInverseCandidates(
+            Dataset dataset,
+            GameState state,
+            QuestionFamily family,
+            long totalCandidates,
+            List<CandidateQuestion> out
+    ) {
+        // do not repeat values (generations) already constrained/asked
+        String predicateUri = family.predicateUri();
+        Set<String> constrained = constrainedValues(state, predicateUri);
 
-        List<SpeciesRepository.ValueCount> genCounts =
+        List<SpeciesRepository.ValueCount> counts =
                 speciesRepo.countByInversePredicate(
                         dataset,
-                        FEATURES_SPECIES,      // inverse predicate
+                        predicateUri,          // inverse predicate, as profiled
                         CLASS_GENERATION,      // ?gen a Generation
                         state.getConstraints(),
                         LIMIT_VALUES
                 );
 
-        List<CandidateQuestion> out = new ArrayList<>();
-
-        for (SpeciesRepository.ValueCount vc : genCounts) {
+        for (SpeciesRepository.ValueCount vc : counts) {
             if (constrained.contains(vc.valueUri())) continue;
-            if (state.wasAsked(FEATURES_SPECIES, vc.valueUri())) continue;
+            if (state.wasAsked(predicateUri, vc.valueUri())) continue;
 
             long yes = vc.count();
             if (yes <= 0 || yes >= totalCandidates) continue;
 
-            String label = normalizeLabel(speciesRepo.getEnglishLabel(dataset, vc.valueUri()));
-            String text = "Is it from " + label + "?";
+            String questionText = catalog.text(catalog.id(predicateUri, vc.valueUri()));
+            if (questionText == null) continue;
 
-            out.add(new CandidateQuestion(FEATURES_SPECIES, vc.valueUri(), yes, text));
+            out.add(new CandidateQuestion(predicateUri, vc.valueUri(), yes, questionText));
         }
+    }
 
+    private Set<String> constrainedValues(GameState state, String predicateUri) {
+        Set<String> out = new HashSet<>();
+        for (Constraint c : state.getConstraints()) {
+            if (predicateUri.equals(c.predicateUri())) out.add(c.objectUri());
+        }
         return out;
     }
 
-    private String buildQuestionText(String noun, String valueLabel) {
-        if ("egg group".equals(noun)) {
-            return "Is it in the " + valueLabel + " egg group?";
-        }
-        if ("habitat".equals(noun)) {
-            return "Is it found in " + valueLabel + "?";
+    // =========================================================
+    // TEXT
+    // =========================================================
+
+    private Question alreadyKnown() {
+        return new Question(Question.nextId(),
+                "I think I already know which Pokémon it is.",
+                QuestionKind.HAS_VALUE,
+                HAS_TYPE,
+                "");
+    }
+
+    private Question noGoodQuestion() {
+        return new Question(Question.nextId(),
+                "I couldn't find a good next question.",
+                QuestionKind.HAS_VALUE,
+                HAS_TYPE,
+                "");
+    }
+
+    // =========================================================
+    // SCRATCH
+    // =========================================================
+
+    /** Per-thread buffers reused across steps. */
+    private static final class Scratch {
+        final long[] candidates;
+        final double[] weights; // scoring mode: per-species probability
+        final double[] values;  // numeric attribute values of the candidates (quickselect)
+        final double[] thresholds;
+        final BitSet constrained = new BitSet();
+        final TopK top;
+
+        // Lookahead: candidates answering yes per handle, the values usable as follow-ups, the final ranking
+        final int[] yes;
+        final int[] followIds;
+        final long[] branch; // candidates answering yes to the first question being scored
+        int follows;
+        final TopK chosen = new TopK(TOP_K_RANDOM);
+
+        Scratch(int words, int weights, int species, int values, int numericAttributes, int ranked) {
+            this.candidates = new long[words];
+            this.weights = new double[weights];
+            this.values = new double[species];
+            this.thresholds = new double[numericAttributes];
+            this.top = new TopK(ranked);
+            boolean lookahead = ranked > TOP_K_RANDOM;
+            this.yes = new int[lookahead ? values + numericAttributes : 0];
+            this.followIds = new int[lookahead ? values : 0];
+            this.branch = new long[lookahead ? words : 0];
         }
-        return "Is it " + valueLabel + " " + noun + "?";
     }
 
-    private String normalizeLabel(String label) {
-        if (label == null) return "";
-        String cleaned = label.trim();
+    /** Keeps the K lowest scores seen, stable for ties (earlier offers win), without sorting everything. */
+    private static final class TopK {
+        final int[] handles;
+        final long[] scores;
+        int size;
 
-        cleaned = cleaned.replace("PokéType:", "")
-                .replace("PokeType:", "")
-                .replace("Type:", "")
-                .replace("EggGroup:", "")
-                .replace("Egg group:", "")
-                .replace("Shape:", "")
-                .replace("Colour:", "")
-                .replace("Color:", "")
-                .replace("Habitat:", "")
-                .replace("Location:", "")
-                .replace("Generation:", "")
-                .trim();
+        TopK(int k) {
+            this.handles = new int[k];
+            this.scores = new long[k];
+        }
+
+        void reset() { size = 0; }
+
+        void offer(int handle, long score) {
+            int cap = handles.length;
+            if (size == cap && score >= scores[cap - 1]) return;
 
-        cleaned = cleaned.replace("Pokédex:", "").trim();
-        cleaned = cleaned.replaceAll("\\s+", " ");
-        return cleaned;
+            int i = size < cap ? size++ : cap - 1;
+            while (i > 0 && scores[i - 1] > score) {
+                handles[i] = handles[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            handles[i] = handle;
+            scores[i] = score;
+        }
+
+        int pick() {
+            return handles[ThreadLocalRandom.current().nextInt(size)];
+        }
     }
 
-    private record Family(String predicateUri, String questionNoun) {}
     private record CandidateQuestion(String predicateUri, String objectUri, long yesCount, String text) {}
 }
@@ -0,0 +1,189 @@
+package com.pokenator.akinator.service;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.Constraint;
+import com.pokenator.akinator.model.GameState;
+import com.pokenator.index.SpeciesIndex;
+
+/**
+ * Answer-error-tolerant alternative to hard constraints. Each species keeps a log-likelihood score; an answer
+ * lowers the score of every species contradicting it by {@code log(e / (1 - e))}, {@code e} being the
+ * probability that a player answers wrong. A wrong answer then costs the right species some probability
+ * instead of eliminating it.
+ *
+ * <p>Scores are a dense {@code float[speciesCount]} per session, parallel to {@link SpeciesIndex} ordinals,
+ * and membership comes from the index bitsets (the species × value matrix). Update loops are branch-free
+ * counted loops over primitive arrays, which C2 can vectorize.
+ *
+ * <p>Requires the species index; without it (or when not enabled) the game uses hard constraints.
+ */
+public class ScoringEngine {
+
+    /** Species at least this fraction as likely as the best one count as remaining candidates. */
+    private static final double PLAUSIBLE_RATIO = 0.01;
+
+    private final SpeciesIndex index; // null when disabled
+    private final double errorProbability;
+    private final double guessProbability;
+    private final float penalty;
+    private final float plausibleGap;
+
+    private final ThreadLocal<long[]> membership;
+
+    public ScoringEngine(SpeciesIndex index, double errorProbability, double guessProbability) {
+        if (errorProbability <= 0.0 || errorProbability >= 0.5) {
+            throw new IllegalArgumentException("errorProbability must be in (0, 0.5): " + errorProbability);
+        }
+        this.index = index;
+        this.errorProbability = errorProbability;
+        this.guessProbability = guessProbability;
+        this.penalty = (float) Math.log(errorProbability / (1.0 - errorProbability));
+        this.plausibleGap = (float) Math.log(PLAUSIBLE_RATIO);
+        this.membership = ThreadLocal.withInitial(() -> new long[index == null ? 0 : index.wordsPerSet()]);
+    }
+
+    /** An engine that is never used: the game keeps hard constraints. */
+    public static ScoringEngine disabled() {
+        return new ScoringEngine(null, 0.05, 1.0);
+    }
+
+    public boolean enabled() { return index != null; }
+
+    public double errorProbability() { return errorProbability; }
+
+    /** Guess as soon as the best species reaches this probability. */
+    public double guessProbability() { return guessProbability; }
+
+    // =========================================================
+    // SESSION SCORES (session lock held)
+    // =========================================================
+
+    /** The session's scores, rebuilt from its answers and rejected guesses when missing (new game, undo). */
+    public float[] scores(GameState state) {
+        float[] scores = state.getScores();
+        if (scores != null) return scores;
+
+        scores = new float[index.speciesCount()];
+        for (Constraint c : state.getConstraints()) {
+            apply(scores, c);
+        }
+        for (String uri : state.getRejectedGuesses()) {
+            reject(scores, uri);
+        }
+        state.setScores(scores);
+        return scores;
+    }
+
+    /** Penalizes every species contradicting the answer. */
+    public void apply(float[] scores, Constraint c) {
+        if (c.answer() == Answer.UNKNOWN) return;
+
+        // A value no species has contradicts everyone (YES) or no one (NO): no relative change
+        int valueId = index.valueId(c.predicateUri(), c.objectUri());
+        if (valueId < 0) return;
+
+        long[] m = index.copyBits(valueId, membership.get());
+        long flip = c.answer() == Answer.YES ? -1L : 0L; // YES: species lacking the value contradict it
+        float p = penalty;
+        int n = scores.length;
+
+        for (int w = 0; w < m.length; w++) {
+            long mismatch = m[w] ^ flip;
+            int base = w << 6;
+            int end = Math.min(64, n - base);
+            for (int j = 0; j < end; j++) {
+                scores[base + j] += p * (float) ((mismatch >>> j) & 1L);
+            }
+        }
+    }
+
+    /** A rejected guess is out for good, whatever the answers say. */
+    public void reject(float[] scores, String speciesUri) {
+        int ordinal = index.speciesOrdinal(speciesUri);
+        if (ordinal >= 0) scores[ordinal] = Float.NEGATIVE_INFINITY;
+    }
+
+    // =========================================================
+    // RANKING
+    // =========================================================
+
+    /** Ordinal of the top-scored species (lowest ordinal on ties), or -1 when every species was rejected. */
+    public int best(float[] scores) {
+        int best = -1;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > max) {
+                max = scores[i];
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public String speciesUri(int ordinal) {
+        return index.speciesUri(ordinal);
+    }
+
+    /** Species at least {@link #PLAUSIBLE_RATIO} as likely as the best one. */
+    public long plausible(float[] scores, int best) {
+        if (best < 0) return 0;
+        float floor = scores[best] + plausibleGap;
+        long n = 0;
+        for (float s : scores) {
+            n += s >= floor ? 1 : 0;
+        }
+        return n;
+    }
+
+    /** The species counted by {@link #plausible}, as a candidate set over index ordinals. */
+    public long[] plausibleSet(float[] scores, int best) {
+        long[] set = new long[index.wordsPerSet()];
+        if (best < 0) return set;
+        float floor = scores[best] + plausibleGap;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] >= floor) set[i >>> 6] |= 1L << i;
+        }
+        return set;
+    }
+
+    /** Probability of the top-scored species. */
+    public double probability(float[] scores, int best) {
+        float max = scores[best];
+        double sum = 0.0;
+        for (float s : scores) {
+            sum += Math.exp(s - max);
+        }
+        return 1.0 / sum;
+    }
+
+    /** Normalizes scores into probabilities in {@code into}; returns the probability of {@code best}. */
+    public double probabilities(float[] scores, int best, double[] into) {
+        float max = scores[best];
+        double sum = 0.0;
+        for (int i = 0; i < scores.length; i++) {
+            double w = Math.exp(scores[i] - max); // rejected: exp(-inf) = 0
+            into[i] = w;
+            sum += w;
+        }
+        double inv = 1.0 / sum;
+        for (int i = 0; i < scores.length; i++) {
+            into[i] *= inv;
+        }
+        return into[best];
+    }
+
+    /** Probability mass of the species having the value. */
+    public double mass(double[] probabilities, int valueId) {
+        long[] m = index.copyBits(valueId, membership.get());
+        double mass = 0.0;
+        for (int w = 0; w < m.length; w++) {
+            long word = m[w];
+            int base = w << 6;
+            while (word != 0) {
+                mass += probabilities[base + Long.numberOfTrailingZeros(word)];
+                word &= word - 1;
+            }
+        }
+        return mass;
+    }
+}
@@ -0,0 +1,14 @@
+package com.pokenator.akinator.service;
+
+/** An answer was sent for a step the session has already moved past (double submit or stale tab). */
+public class StaleAnswerException extends RuntimeException {
+
+    private final int currentStep;
+
+    public StaleAnswerException(String sessionId, int expectedStep, int currentStep) {
+        super("Stale answer for session " + sessionId + ": step " + expectedStep + ", current step " + currentStep);
+        this.currentStep = currentStep;
+    }
+
+    public int getCurrentStep() { return currentStep; }
+}
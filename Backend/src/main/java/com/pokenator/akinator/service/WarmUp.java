@@ -0,0 +1,170 @@
+package com.pokenator.akinator.service;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.repository.SpeciesRepository;
+import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+
+/**
+ * Plays synthetic games through {@link GameService} right after startup, so query compilation, class loading
+ * and JIT happen before real players arrive. Each game also fetches a candidate page and the guessed label and
+ * exercises undo, the other paths a real game hits.
+ *
+ * <p>Runs on one background thread; {@link #report()} tells whether it finished. Step latency of the first
+ * game (cold) is reported next to the mean over the last pass (warm).
+ */
+public class WarmUp {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+    private static final int MAX_STEPS = 40;
+    private static final int CANDIDATE_PAGE = 50;
+
+    public enum Status { PENDING, RUNNING, READY, FAILED }
+
+    private final Dataset dataset;
+    private final GameService game;
+    private final SessionManager sessions;
+    private final SpeciesRepository speciesRepo;
+    private final int games;
+    private final long seed;
+
+    private volatile Report report = new Report(Status.PENDING, 0, 0, 0, 0.0, 0.0, null);
+
+    /** {@code games}: synthetic games to play (0 skips the warm-up and reports ready at once). */
+    public WarmUp(Dataset dataset, GameService game, SessionManager sessions, SpeciesRepository speciesRepo,
+                  int games, long seed) {
+        this.dataset = dataset;
+        this.game = game;
+        this.sessions = sessions;
+        this.speciesRepo = speciesRepo;
+        this.games = games;
+        this.seed = seed;
+    }
+
+    /** Starts the warm-up on a daemon thread. */
+    public void start() {
+        if (games <= 0) {
+            report = new Report(Status.READY, 0, 0, 0, 0.0, 0.0, null);
+            return;
+        }
+        Thread t = new Thread(this::run, "warm-up");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public boolean ready() {
+        Status s = report.status();
+        return s == Status.READY || s == Status.FAILED;
+    }
+
+    public Report report() { return report; }
+
+    void run() {
+        report = new Report(Status.RUNNING, games, 0, 0, 0.0, 0.0, null);
+        long t0 = System.nanoTime();
+        Random random = new Random(seed);
+
+        // Cold: the first game alone. Warm: the last quarter of the games.
+        int warmFrom = games - Math.max(1, games / 4);
+        Latency cold = new Latency();
+        Latency warm = new Latency();
+        long steps = 0;
+
+        try {
+            for (int g = 0; g < games; g++) {
+                Latency latency = g == 0 ? cold : g >= warmFrom ? warm : null;
+                steps += play(random, latency);
+            }
+        } catch (RuntimeException e) {
+            // A failed warm-up only costs latency: serve anyway
+            log.warn("Warm-up failed after {} steps; declaring ready anyway", steps, e);
+            report = new Report(Status.FAILED, games, steps, elapsedMs(t0), cold.micros(), warm.micros(),
+                    e.toString());
+            return;
+        }
+
+        report = new Report(Status.READY, games, steps, elapsedMs(t0), cold.micros(), warm.micros(), null);
+        log.info("Warm-up: {} games, {} steps in {} ms; step latency {} us cold, {} us warm",
+                games, steps, report.durationMs(), Math.round(cold.micros()), Math.round(warm.micros()));
+    }
+
+    private int play(Random random, Latency latency) {
+        GameService.StartGameResult start = game.start();
+        String sessionId = start.sessionId();
+        game.getState(sessionId).markSynthetic();
+        int steps = 0;
+
+        try {
+            QuestionKind kind = start.question().kind();
+            for (; steps < MAX_STEPS; steps++) {
+                // Guesses are confirmed so the game ends like a real one; otherwise mostly yes/no
+                Answer answer = kind == QuestionKind.GUESS ? Answer.YES : randomAnswer(random);
+
+                long t0 = System.nanoTime();
+                GameService.NextStepResult next = game.answer(sessionId, answer);
+                if (latency != null) latency.add(System.nanoTime() - t0);
+
+                if (steps == 1) {
+                    speciesRepo.forEachCandidateWithLabel(dataset, game.getState(sessionId).getConstraints(),
+                            null, CANDIDATE_PAGE, c -> {});
+                }
+                if (steps == 2 && next instanceof GameService.NextStepResult.NextQuestion) {
+                    next = game.undo(sessionId, 1, null);
+                }
+
+                if (next instanceof GameService.NextStepResult.Guess guess) {
+                    speciesRepo.getEnglishLabel(dataset, guess.speciesUri());
+                    break;
+                }
+                if (!(next instanceof GameService.NextStepResult.NextQuestion q)) break;
+                kind = q.question().kind();
+            }
+        } finally {
+            sessions.remove(sessionId);
+        }
+        return steps;
+    }
+
+    private static Answer randomAnswer(Random random) {
+        int r = random.nextInt(10);
+        return r < 4 ? Answer.YES : r < 9 ? Answer.NO : Answer.UNKNOWN;
+    }
+
+    private static long elapsedMs(long t0) {
+        return (System.nanoTime() - t0) / 1_000_000;
+    }
+
+    /**
+     * {@code coldStepMicros}: mean answer latency of the first game; {@code warmStepMicros}: mean over the
+     * last quarter of the games. {@code error} is set when the warm-up failed.
+     */
+    public record Report(
+            Status status,
+            int games,
+            long steps,
+            long durationMs,
+            double coldStepMicros,
+            double warmStepMicros,
+            String error
+    ) {}
+
+    private static final class Latency {
+        long count;
+        long nanos;
+
+        void add(long n) {
+            count++;
+            nanos += n;
+        }
+
+        double micros() {
+            return count == 0 ? 0.0 : nanos / 1000.0 / count;
+        }
+    }
+}
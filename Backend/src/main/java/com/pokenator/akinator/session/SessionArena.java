@@ -0,0 +1,90 @@
+package com.pokenator.akinator.session;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap storage for encoded idle sessions: fixed-size direct chunks filled by bump allocation. A chunk is
+ * reused once every session stored in it has been freed; until then freed bytes are not reclaimed, which is
+ * cheap as long as idle sessions come and go at a similar pace.
+ */
+final class SessionArena {
+
+    /** Offsets and lengths are 24-bit in a handle. */
+    static final int MAX_CHUNK_BYTES = (1 << 24) - 1;
+
+    private final int chunkBytes;
+    private final int maxChunks;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final List<Integer> live = new ArrayList<>(); // bytes still referenced per chunk
+
+    private int current = -1;
+    private int top;
+
+    SessionArena(int chunkBytes, int maxChunks) {
+        this.chunkBytes = Math.min(chunkBytes, MAX_CHUNK_BYTES);
+        this.maxChunks = Math.min(maxChunks, 1 << 16);
+    }
+
+    /** Copies {@code src} into the arena; returns its handle, or -1 when the arena is full. */
+    synchronized long store(ByteBuffer src) {
+        int length = src.remaining();
+        if (length > chunkBytes) return -1;
+        if (current < 0 || top + length > chunkBytes) {
+            if (!nextChunk()) return -1;
+        }
+
+        int offset = top;
+        chunks.get(current).put(offset, src, src.position(), length);
+        top += length;
+        live.set(current, live.get(current) + length);
+        return handle(current, offset, length);
+    }
+
+    /** A read-only view of the stored bytes, valid until {@link #free}. */
+    synchronized ByteBuffer load(long handle) {
+        return chunks.get(chunk(handle)).slice(offset(handle), length(handle)).asReadOnlyBuffer();
+    }
+
+    synchronized void free(long handle) {
+        int c = chunk(handle);
+        live.set(c, live.get(c) - length(handle));
+    }
+
+    synchronized long capacityBytes() { return (long) chunks.size() * chunkBytes; }
+
+    synchronized long liveBytes() {
+        long n = 0;
+        for (int b : live) n += b;
+        return n;
+    }
+
+    /** Switches to an empty chunk: one whose sessions were all freed, else a new one if allowed. */
+    private boolean nextChunk() {
+        for (int c = 0; c < chunks.size(); c++) {
+            if (c != current && live.get(c) == 0) {
+                current = c;
+                top = 0;
+                return true;
+            }
+        }
+        if (chunks.size() >= maxChunks) return false;
+        chunks.add(ByteBuffer.allocateDirect(chunkBytes));
+        live.add(0);
+        current = chunks.size() - 1;
+        top = 0;
+        return true;
+    }
+
+    // Handle: chunk (16 bits) | offset (24 bits) | length (24 bits)
+    private static long handle(int chunk, int offset, int length) {
+        return ((long) chunk << 48) | ((long) offset << 24) | length;
+    }
+
+    static int length(long handle) { return (int) (handle & 0xFFFFFF); }
+
+    private static int offset(long handle) { return (int) ((handle >>> 24) & 0xFFFFFF); }
+
+    private static int chunk(long handle) { return (int) (handle >>> 48); }
+}
@@ -0,0 +1,156 @@
+package com.pokenator.akinator.session;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.Constraint;
+import com.pokenator.akinator.model.GameState;
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.index.SpeciesIndex;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Compact binary form of a {@link GameState}, shared by the {@link SessionJournal} and the off-heap tier of
+ * {@link SessionManager}: id, step, remaining count, synthetic flag, pending question, outcome, constraints,
+ * rejected guesses and asked question keys. Undo history, endgame rows and scores are not encoded; they start empty
+ * and are rebuilt on demand.
+ */
+final class SessionCodec {
+
+    private static final int NULL_STRING = 0xFFFF;
+
+    private SessionCodec() {}
+
+    /** Throws {@link java.nio.BufferOverflowException} when {@code out} is too small. */
+    static void writeSession(ByteBuffer out, GameState s) {
+        putString(out, s.getSessionId());
+        out.putInt(s.getStep());
+        out.putLong(s.getRemainingCandidates());
+        out.put((byte) (s.isSynthetic() ? 1 : 0));
+        putQuestion(out, s.getLastQuestion());
+        putOutcome(out, s.getOutcome());
+        out.putInt(s.getConstraints().size());
+        for (Constraint c : s.getConstraints()) putConstraint(out, c);
+        out.putInt(s.getRejectedGuesses().size());
+        for (String uri : s.getRejectedGuesses()) putString(out, uri);
+        Set<String> asked = s.askedKeys();
+        out.putInt(asked.size());
+        for (String key : asked) putString(out, key);
+    }
+
+    /** {@code index} (nullable) re-marks asked questions by value id as well. */
+    static GameState readSession(ByteBuffer in, SpeciesIndex index) {
+        GameState s = new GameState(getString(in));
+        int step = in.getInt();
+        long remaining = in.getLong();
+        if (in.get() != 0) s.markSynthetic();
+        Question question = getQuestion(in);
+        s.setOutcome(getOutcome(in));
+        int n = in.getInt();
+        for (int i = 0; i < n; i++) s.addConstraint(getConstraint(in));
+        n = in.getInt();
+        for (int i = 0; i < n; i++) s.rejectGuess(getString(in));
+        n = in.getInt();
+        for (int i = 0; i < n; i++) markAsked(s, getString(in), index);
+        restore(s, step, remaining, question, index);
+        return s;
+    }
+
+    static void markAsked(GameState s, String key, SpeciesIndex index) {
+        int bar = key.indexOf('|');
+        String predicateUri = key.substring(0, bar);
+        String objectUri = key.substring(bar + 1);
+        s.markAsked(predicateUri, objectUri);
+        int valueId = index == null ? -1 : index.valueId(predicateUri, objectUri);
+        if (valueId >= 0) s.markAsked(valueId);
+    }
+
+    static void unmarkAsked(GameState s, String key, SpeciesIndex index) {
+        int bar = key.indexOf('|');
+        String predicateUri = key.substring(0, bar);
+        String objectUri = key.substring(bar + 1);
+        s.unmarkAsked(predicateUri, objectUri);
+        int valueId = index == null ? -1 : index.valueId(predicateUri, objectUri);
+        if (valueId >= 0) s.unmarkAsked(valueId);
+    }
+
+    /**
+     * Pending question, count and step. Re-marking asked keys above moved the session's last asked value id to
+     * whichever key came last, so it is reset to the pending question's, which an undo unmarks.
+     */
+    static void restore(GameState s, int step, long remaining, Question question, SpeciesIndex index) {
+        s.setLastQuestion(question);
+        s.setRemainingCandidates(remaining);
+        s.restoreStep(step);
+        boolean indexed = index != null && question != null && question.kind() == QuestionKind.HAS_VALUE
+                && question.objectUri() != null;
+        s.restoreLastAskedValueId(indexed ? index.valueId(question.predicateUri(), question.objectUri()) : -1);
+    }
+
+    static void putQuestion(ByteBuffer out, Question q) {
+        if (q == null) {
+            out.put((byte) -1);
+            return;
+        }
+        out.put((byte) q.kind().ordinal());
+        putString(out, q.id());
+        putString(out, q.text());
+        putString(out, q.predicateUri());
+        putString(out, q.objectUri());
+    }
+
+    static Question getQuestion(ByteBuffer in) {
+        byte kind = in.get();
+        if (kind < 0) return null;
+        return new Question(getString(in), getString(in), QuestionKind.values()[kind], getString(in), getString(in));
+    }
+
+    /** Flag byte (0 = game goes on, 1 = ended) + guessed species URI, null when no candidates were left. */
+    static void putOutcome(ByteBuffer out, GameState.Outcome outcome) {
+        out.put((byte) (outcome == null ? 0 : 1));
+        if (outcome != null) putString(out, outcome.speciesUri());
+    }
+
+    static GameState.Outcome getOutcome(ByteBuffer in) {
+        return in.get() == 0 ? null : new GameState.Outcome(getString(in));
+    }
+
+    static void putConstraint(ByteBuffer out, Constraint c) {
+        putString(out, c.predicateUri());
+        putString(out, c.objectUri());
+        out.put((byte) c.answer().ordinal());
+        out.put((byte) c.kind().ordinal());
+    }
+
+    static Constraint getConstraint(ByteBuffer in) {
+        String predicateUri = getString(in);
+        String objectUri = getString(in);
+        Answer answer = Answer.values()[in.get()];
+        QuestionKind kind = QuestionKind.values()[in.get()];
+        return new Constraint(predicateUri, objectUri, answer, kind);
+    }
+
+    /** Unsigned 16-bit length (0xFFFF = null) + UTF-8 bytes. */
+    static void putString(ByteBuffer out, String s) {
+        if (s == null) {
+            out.putChar((char) NULL_STRING);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if (b.length >= NULL_STRING) throw new IllegalArgumentException("String too long to encode: " + b.length);
+        out.putChar((char) b.length);
+        out.put(b);
+    }
+
+    static String getString(ByteBuffer in) {
+        int n = in.getChar();
+        if (n == NULL_STRING) return null;
+        if (n > in.remaining()) throw new BufferUnderflowException();
+        byte[] b = new byte[n];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,609 @@
+package com.pokenator.akinator.session;
+
+import com.pokenator.akinator.model.Constraint;
+import com.pokenator.akinator.model.GameState;
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.index.SpeciesIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead journal of session changes, so in-progress games survive a restart.
+ *
+ * <p>Request threads only describe what changed (one record per answered step, undo or removal) and queue it;
+ * a single writer thread encodes the records into a memory-mapped segment file and forces each drained batch to
+ * disk at once (group commit). When the segment fills up, or every {@code compactEvery}, the writer compacts:
+ * it starts a new segment with one snapshot record per live session (taken under the session lock), seals it,
+ * and deletes the old one. Records queued before a snapshot are still written after it; replay skips them by
+ * step, which grows with every change of a session. A failed compaction stops the journal for good (logged and
+ * reported by {@link #stats}): the sealed segment on disk stays the last consistent one.
+ *
+ * <p>Record layout: {@code int length | byte type | payload | int crc32c(type + payload)}; a zero length ends
+ * the segment, a bad checksum (torn write) too. Replay restores constraints, rejected guesses, asked questions,
+ * the pending question, the outcome, the step and the synthetic flag (set once, so any record carrying it marks
+ * the session). Undo history, endgame rows and scores are not journaled: they start empty and are rebuilt on
+ * demand. Segments of an older format version are ignored.
+ */
+public class SessionJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionJournal.class);
+
+    private static final int MAGIC = 0x504B4A31; // "PKJ1"
+    private static final int FORMAT_VERSION = 3;  // 2: synthetic flag in STEP and SESSION records; 3: outcome
+    private static final int HEADER_BYTES = 32;
+    private static final int SEALED_OFFSET = 16;
+    private static final Pattern SEGMENT = Pattern.compile("journal-(\\d+)\\.seg");
+
+    private static final byte STEP = 1;
+    private static final byte UNDO = 2;
+    private static final byte REMOVE = 3;
+    private static final byte SESSION = 4;
+
+    private static final int MAX_BATCH = 1024;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final long flushMillis;
+    private final long compactEveryMillis;
+    private final BlockingQueue<Record> queue;
+
+    // Per-session position of the last journaled step; touched under the session lock
+    private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean stopped; // a compaction failed: nothing is recorded any more
+    private Thread writer;
+    private SessionManager sessions;
+
+    // Writer thread only
+    private Segment segment;
+    private long generation;
+    private long lastCompaction;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+    private final CRC32C crc = new CRC32C();
+
+    // Counters (written by the writer thread)
+    private volatile long records;
+    private volatile long batches;
+    private volatile long bytes;
+    private volatile long compactions;
+    private volatile int replayedSessions;
+    private volatile long replayMillis;
+
+    /**
+     * {@code segmentBytes}: capacity of each mapped segment; {@code flushMillis}: longest wait before a batch is
+     * forced; {@code compactEveryMillis}: periodic compaction (0 = only when a segment is full).
+     */
+    public SessionJournal(Path dir, long segmentBytes, long flushMillis, long compactEveryMillis, int queueCapacity) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.flushMillis = flushMillis;
+        this.compactEveryMillis = compactEveryMillis;
+        this.queue = queueCapacity > 0 ? new LinkedBlockingQueue<>(queueCapacity) : null;
+    }
+
+    /** A journal that records nothing and restores nothing. */
+    public static SessionJournal disabled() {
+        return new SessionJournal(null, 0, 0, 0, 0);
+    }
+
+    public boolean enabled() { return queue != null; }
+
+    // =========================================================
+    // RECORDING (request threads, session lock held)
+    // =========================================================
+
+    /** Records what changed in the session since its last journaled step (nothing if the step did not move). */
+    public void stepped(GameState state) {
+        if (!enabled()) return;
+        Cursor c = cursors.computeIfAbsent(state.getSessionId(), id -> new Cursor());
+        int step = state.getStep();
+        if (step == c.step) return;
+
+        List<Constraint> constraints = state.getConstraints();
+        List<String> rejected = state.getRejectedGuesses();
+        List<Constraint> newConstraints = c.constraints < constraints.size()
+                ? List.copyOf(constraints.subList(c.constraints, constraints.size()))
+                : List.of();
+        List<String> newRejected = c.rejected < rejected.size()
+                ? List.copyOf(rejected.subList(c.rejected, rejected.size()))
+                : List.of();
+
+        c.update(constraints.size(), rejected.size(), step);
+        offer(new Record(STEP, state.getSessionId(), step, state.getRemainingCandidates(), state.getLastQuestion(),
+                newConstraints, newRejected, 0, 0, List.of(), state.isSynthetic(), state.getOutcome()));
+    }
+
+    /** Records an undo; {@code askedBefore} are the session's asked keys before it. */
+    public void undone(GameState state, Set<String> askedBefore) {
+        if (!enabled()) return;
+        List<String> unmarked = new ArrayList<>();
+        for (String key : askedBefore) {
+            if (!state.askedKeys().contains(key)) unmarked.add(key);
+        }
+
+        int constraints = state.getConstraints().size();
+        int rejected = state.getRejectedGuesses().size();
+        cursors.computeIfAbsent(state.getSessionId(), id -> new Cursor()).update(constraints, rejected, state.getStep());
+        offer(new Record(UNDO, state.getSessionId(), state.getStep(), state.getRemainingCandidates(),
+                state.getLastQuestion(), List.of(), List.of(), constraints, rejected, unmarked, state.isSynthetic(),
+                null));
+    }
+
+    public void removed(String sessionId) {
+        if (!enabled()) return;
+        cursors.remove(sessionId);
+        offer(new Record(REMOVE, sessionId, 0, 0, null, List.of(), List.of(), 0, 0, List.of(), false, null));
+    }
+
+    /** Never blocks a request: when the queue is full the record is dropped and the next compaction repairs it. */
+    private void offer(Record r) {
+        if (stopped) return;
+        if (!queue.offer(r)) dropped.incrementAndGet();
+    }
+
+    // =========================================================
+    // REPLAY (startup, before the writer starts)
+    // =========================================================
+
+    /**
+     * Sessions restored from the newest sealed segment. {@code index} (nullable) re-marks asked questions by
+     * value id as well.
+     */
+    public List<GameState> replay(SpeciesIndex index) {
+        if (!enabled()) return List.of();
+        long t0 = System.nanoTime();
+
+        Path file = null;
+        try {
+            Files.createDirectories(dir);
+            List<Long> gens = generations();
+            // Compaction starts past every generation on disk, including unsealed ones left by a crash
+            if (!gens.isEmpty()) generation = gens.get(0);
+            for (long gen : gens) {
+                Path candidate = segmentPath(gen);
+                if (isSealed(candidate)) {
+                    file = candidate;
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Session journal unreadable in {}: {}", dir, e.toString());
+            return List.of();
+        }
+        if (file == null) return List.of();
+
+        Map<String, GameState> states = new LinkedHashMap<>();
+        Map<String, Integer> snapshotSteps = new HashMap<>();
+        long count = 0;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.position(HEADER_BYTES);
+            ByteBuffer payload;
+            while ((payload = nextRecord(buf)) != null) {
+                apply(payload, states, snapshotSteps, index);
+                count++;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Session journal replay stopped early in {}: {}", file, e.toString());
+        }
+
+        replayedSessions = states.size();
+        replayMillis = (System.nanoTime() - t0) / 1_000_000;
+        log.info("Session journal: {} sessions restored from {} records in {} ms",
+                states.size(), count, replayMillis);
+
+        for (GameState s : states.values()) {
+            cursors.put(s.getSessionId(), new Cursor(s.getConstraints().size(), s.getRejectedGuesses().size(), s.getStep()));
+        }
+        return new ArrayList<>(states.values());
+    }
+
+    private void apply(ByteBuffer in, Map<String, GameState> states, Map<String, Integer> snapshotSteps,
+                       SpeciesIndex index) {
+        byte type = in.get();
+        int idAt = in.position();
+        String id = SessionCodec.getString(in);
+
+        if (type == REMOVE) {
+            states.remove(id);
+            snapshotSteps.remove(id);
+            return;
+        }
+
+        if (type == SESSION) {
+            in.position(idAt);
+            GameState s = SessionCodec.readSession(in, index);
+            states.put(id, s);
+            snapshotSteps.put(id, s.getStep());
+            return;
+        }
+
+        int step = in.getInt();
+        long remaining = in.getLong();
+        Question question = SessionCodec.getQuestion(in);
+
+        // Queued before the snapshot this session was restored from
+        if (step <= snapshotSteps.getOrDefault(id, 0)) return;
+
+        if (type == STEP) {
+            GameState s = states.computeIfAbsent(id, GameState::new);
+            if (in.get() != 0) s.markSynthetic();
+            s.setOutcome(SessionCodec.getOutcome(in));
+            int n = in.getInt();
+            for (int i = 0; i < n; i++) s.addConstraint(SessionCodec.getConstraint(in));
+            n = in.getInt();
+            for (int i = 0; i < n; i++) s.rejectGuess(SessionCodec.getString(in));
+            if (question != null && question.kind() != QuestionKind.GUESS && question.objectUri() != null) {
+                SessionCodec.markAsked(s, question.predicateUri() + "|" + question.objectUri(), index);
+            }
+            SessionCodec.restore(s, step, remaining, question, index);
+        } else if (type == UNDO) {
+            GameState s = states.get(id);
+            if (s == null) return;
+            s.truncate(in.getInt(), in.getInt());
+            s.setOutcome(null); // an undo resumes the game
+            int n = in.getInt();
+            for (int i = 0; i < n; i++) SessionCodec.unmarkAsked(s, SessionCodec.getString(in), index);
+            SessionCodec.restore(s, step, remaining, question, index);
+        }
+    }
+
+    /** Payload of the next valid record (type + body), or null at the end or at a torn record. */
+    private ByteBuffer nextRecord(ByteBuffer buf) {
+        if (buf.remaining() < 4) return null;
+        int length = buf.getInt();
+        if (length <= 0 || length + 4 > buf.remaining()) return null;
+
+        ByteBuffer payload = buf.slice(buf.position(), length);
+        buf.position(buf.position() + length);
+        int expected = buf.getInt();
+
+        crc.reset();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue() == expected ? payload : null;
+    }
+
+    // =========================================================
+    // WRITER
+    // =========================================================
+
+    /** Starts the writer on a fresh segment holding a snapshot of the (restored) sessions. */
+    public void start(SessionManager sessions) {
+        if (!enabled()) return;
+        this.sessions = sessions;
+        if (!compactOrStop()) return;
+        running = true;
+        writer = new Thread(this::writeLoop, "session-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                Record first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    if (!writeBatch(batch)) return;
+                    batch.clear();
+                }
+
+                long now = System.currentTimeMillis();
+                if (dropped.get() > 0 || (compactEveryMillis > 0 && now - lastCompaction >= compactEveryMillis)) {
+                    if (!compactOrStop()) return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Session journal write failed: {}", e.toString());
+                // Lost deltas: counted as dropped so the next iteration compacts
+                dropped.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /** Appends and forces the batch; false when the segment was full and the journal stopped. */
+    private boolean writeBatch(List<Record> batch) {
+        int from = segment.buf.position();
+        for (Record r : batch) {
+            ByteBuffer encoded = encode(r);
+            if (segment.buf.remaining() < encoded.remaining() + 12) {
+                force(from);
+                if (!compactOrStop()) return false;
+                from = segment.buf.position();
+                encoded = encode(r); // the snapshot was encoded into the same scratch buffer
+            }
+            append(segment.buf, encoded);
+        }
+        force(from);
+        records += batch.size();
+        batches++;
+        return true;
+    }
+
+    /** The group commit: one force for everything appended since {@code from}. */
+    private void force(int from) {
+        int to = segment.buf.position();
+        if (to > from) {
+            segment.buf.force(from, to - from);
+            bytes += to - from;
+        }
+    }
+
+    /**
+     * Compacts, or stops the journal when that fails (the current segment is full or stale and cannot be
+     * replaced, so nothing written from now on could be replayed consistently).
+     */
+    private boolean compactOrStop() {
+        try {
+            compact();
+            return true;
+        } catch (RuntimeException e) {
+            stopped = true;
+            queue.clear();
+            log.error("Session journal stopped, sessions are no longer recorded: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * New segment: one SESSION record per live session, then sealed. Queued records keep going to the new
+     * segment; older ones are deleted.
+     */
+    private void compact() {
+        dropped.set(0);
+        List<ByteBuffer> snapshot = new ArrayList<>();
+        long needed = HEADER_BYTES;
+        for (String id : sessions.sessionIds()) {
+            ByteBuffer encoded;
+            try {
+                encoded = sessions.withLock(id, () -> encodeSession(sessions.peek(id)));
+            } catch (SessionNotFoundException removed) {
+                continue;
+            }
+            ByteBuffer copy = ByteBuffer.allocate(encoded.remaining()).put(encoded).flip();
+            snapshot.add(copy);
+            needed += copy.remaining() + 8;
+        }
+
+        long gen = generation + 1;
+        try {
+            Segment next = Segment.create(segmentPath(gen), Math.max(segmentBytes, needed * 2), gen);
+            for (ByteBuffer b : snapshot) append(next.buf, b);
+            next.buf.force();
+            next.seal();
+
+            segment = next;
+            generation = gen;
+            // The previous segment, and any left behind by a crash mid-compaction
+            for (long g : generations()) {
+                if (g < gen) Files.deleteIfExists(segmentPath(g));
+            }
+            compactions++;
+            lastCompaction = System.currentTimeMillis();
+        } catch (IOException e) {
+            throw new IllegalStateException("Session journal compaction failed in " + dir, e);
+        }
+    }
+
+    private void append(ByteBuffer out, ByteBuffer payload) {
+        crc.reset();
+        crc.update(payload.duplicate());
+        out.putInt(payload.remaining());
+        out.put(payload);
+        out.putInt((int) crc.getValue());
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        running = false;
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // =========================================================
+    // ENCODING
+    // =========================================================
+
+    private ByteBuffer encode(Record r) {
+        ByteBuffer out = scratch.clear();
+        try {
+            out.put(r.type);
+            SessionCodec.putString(out, r.sessionId);
+            if (r.type != REMOVE) {
+                out.putInt(r.step);
+                out.putLong(r.remaining);
+                SessionCodec.putQuestion(out, r.question);
+            }
+            if (r.type == STEP) {
+                out.put((byte) (r.synthetic ? 1 : 0));
+                SessionCodec.putOutcome(out, r.outcome);
+                out.putInt(r.constraints.size());
+                for (Constraint c : r.constraints) SessionCodec.putConstraint(out, c);
+                out.putInt(r.rejected.size());
+                for (String uri : r.rejected) SessionCodec.putString(out, uri);
+            } else if (r.type == UNDO) {
+                out.putInt(r.constraintCount);
+                out.putInt(r.rejectedCount);
+                out.putInt(r.unmarked.size());
+                for (String key : r.unmarked) SessionCodec.putString(out, key);
+            }
+            return out.flip();
+        } catch (BufferOverflowException e) {
+            scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            return encode(r);
+        }
+    }
+
+    private ByteBuffer encodeSession(GameState s) {
+        ByteBuffer out = scratch.clear();
+        try {
+            out.put(SESSION);
+            SessionCodec.writeSession(out, s);
+            return out.flip();
+        } catch (BufferOverflowException e) {
+            scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            return encodeSession(s);
+        }
+    }
+
+    // =========================================================
+    // SEGMENTS
+    // =========================================================
+
+    private Path segmentPath(long gen) {
+        return dir.resolve("journal-" + gen + ".seg");
+    }
+
+    /** Generations on disk, newest first. */
+    private List<Long> generations() throws IOException {
+        List<Long> out = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(f -> {
+                Matcher m = SEGMENT.matcher(f.getFileName().toString());
+                if (m.matches()) out.add(Long.parseLong(m.group(1)));
+            });
+        }
+        out.sort((a, b) -> Long.compare(b, a));
+        return out;
+    }
+
+    private static boolean isSealed(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) return false;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            ch.read(header, 0);
+            return header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION && header.get(SEALED_OFFSET) == 1;
+        }
+    }
+
+    /** A mapped segment positioned after its last record. */
+    private static final class Segment {
+        final Path path;
+        final MappedByteBuffer buf;
+
+        private Segment(Path path, MappedByteBuffer buf) {
+            this.path = path;
+            this.buf = buf;
+        }
+
+        static Segment create(Path path, long capacity, long generation) throws IOException {
+            // A leftover of that generation can only be an unsealed one from a crash mid-compaction
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(capacity, Integer.MAX_VALUE));
+                buf.putInt(0, MAGIC);
+                buf.putInt(4, FORMAT_VERSION);
+                buf.putLong(8, generation);
+                buf.position(HEADER_BYTES);
+                return new Segment(path, buf);
+            }
+        }
+
+        /** Marks the snapshot complete; replay ignores unsealed segments. */
+        void seal() {
+            buf.put(SEALED_OFFSET, (byte) 1);
+            buf.force(0, HEADER_BYTES);
+        }
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public Stats stats() {
+        return new Stats(enabled(), stopped, generation, segment == null ? 0 : segment.buf.position(), records, batches,
+                batches == 0 ? 0.0 : (double) records / batches, bytes, dropped.get(), compactions,
+                replayedSessions, replayMillis, queue == null ? 0 : queue.size());
+    }
+
+    /**
+     * {@code stopped}: a compaction failed and nothing is recorded any more; {@code recordsPerBatch}: records made
+     * durable by each forced write (group commit).
+     */
+    public record Stats(
+            boolean enabled,
+            boolean stopped,
+            long generation,
+            long segmentPosition,
+            long records,
+            long batches,
+            double recordsPerBatch,
+            long bytes,
+            long dropped,
+            long compactions,
+            int replayedSessions,
+            long replayMillis,
+            int queued
+    ) {}
+
+    /** One queued change; immutable, encoded by the writer thread. */
+    private record Record(
+            byte type,
+            String sessionId,
+            int step,
+            long remaining,
+            Question question,
+            List<Constraint> constraints,
+            List<String> rejected,
+            int constraintCount,
+            int rejectedCount,
+            List<String> unmarked,
+            boolean synthetic,
+            GameState.Outcome outcome // STEP only
+    ) {}
+
+    private static final class Cursor {
+        int constraints;
+        int rejected;
+        int step = -1;
+
+        Cursor() {}
+
+        Cursor(int constraints, int rejected, int step) {
+            update(constraints, rejected, step);
+        }
+
+        void update(int constraints, int rejected, int step) {
+            this.constraints = constraints;
+            this.rejected = rejected;
+            this.step = step;
+        }
+    }
+}
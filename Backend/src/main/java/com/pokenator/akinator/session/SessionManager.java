@@ -1,14 +1,109 @@
 package com.pokenator.akinator.session;
 
 import com.pokenator.akinator.model.GameState;
+import com.pokenator.index.SpeciesIndex;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
-public class SessionManager {
+/**
+ * Live sessions, in two tiers. Recently used sessions are plain objects; a background sweep encodes sessions
+ * idle for longer than {@code spillAfter} ({@link SessionCodec}) into an off-heap {@link SessionArena} and
+ * drops the objects. The next {@link #get} decodes a spilled session transparently.
+ *
+ * <p>A spilled session keeps its constraints, asked questions, pending question and step; its undo history,
+ * endgame rows and scores are dropped and rebuilt on demand.
+ */
+public class SessionManager implements AutoCloseable {
 
-    private final Map<String, GameState> sessions = new ConcurrentHashMap<>();
+    // Power of two so the stripe is a mask of the id hash
+    private static final int LOCK_STRIPES = 256;
+
+    private final Map<String, GameState> sessions = new ConcurrentHashMap<>(); // hot tier
+    private final Map<String, Cold> cold = new ConcurrentHashMap<>();          // spilled tier
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final SessionJournal journal;
+
+    private final SpeciesIndex index;
+    private final long spillAfterNanos;
+    private final SessionArena arena;
+    private final ScheduledExecutorService sweeper;
+    private ByteBuffer scratch = ByteBuffer.allocate(4096); // sweeper thread only
+
+    private final AtomicLong spills = new AtomicLong();
+    private final AtomicLong spillNanos = new AtomicLong();
+    private final AtomicLong rehydrations = new AtomicLong();
+    private final AtomicLong rehydrateNanos = new AtomicLong();
+    private final AtomicLong heapSaved = new AtomicLong();
+
+    public SessionManager() {
+        this(SessionJournal.disabled());
+    }
+
+    public SessionManager(SessionJournal journal) {
+        this(journal, null, 0, 0, 0);
+    }
+
+    /**
+     * {@code spillAfterMillis}: idle time before a session moves off-heap (0 keeps every session on-heap);
+     * {@code arenaChunkBytes}/{@code arenaMaxChunks} bound the off-heap arena. {@code index} (nullable) restores
+     * index-backed asked marks when a session is decoded.
+     */
+    public SessionManager(SessionJournal journal, SpeciesIndex index, long spillAfterMillis,
+                          int arenaChunkBytes, int arenaMaxChunks) {
+        this.journal = journal;
+        this.index = index;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        this.spillAfterNanos = TimeUnit.MILLISECONDS.toNanos(spillAfterMillis);
+        if (spillAfterMillis > 0) {
+            this.arena = new SessionArena(arenaChunkBytes, arenaMaxChunks);
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "session-spill");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1000, spillAfterMillis / 4);
+            sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.arena = null;
+            this.sweeper = null;
+        }
+    }
+
+    /** Where session changes are recorded for restart; a no-op unless the journal is enabled. */
+    public SessionJournal journal() {
+        return journal;
+    }
+
+    /** Publishes sessions replayed from the journal (startup only). */
+    public void restore(Collection<GameState> states) {
+        for (GameState state : states) {
+            sessions.put(state.getSessionId(), state);
+        }
+    }
+
+    /** Ids of every live session, hot or spilled. */
+    public List<String> sessionIds() {
+        List<String> ids = new ArrayList<>(sessions.size() + cold.size());
+        ids.addAll(sessions.keySet());
+        ids.addAll(cold.keySet());
+        return ids;
+    }
 
     public GameState create() {
         String id = UUID.randomUUID().toString();
@@ -17,13 +112,190 @@ public class SessionManager {
         return state;
     }
 
+    /** The session, decoded back on-heap first if it was spilled. */
     public GameState get(String sessionId) {
         GameState state = sessions.get(sessionId);
-        if (state == null) throw new IllegalArgumentException("Invalid session: " + sessionId);
+        if (state == null) state = rehydrate(sessionId);
+        state.touch();
         return state;
     }
 
+    /** The session without moving it between tiers: a spilled one is decoded into a detached copy. */
+    public GameState peek(String sessionId) {
+        GameState state = sessions.get(sessionId);
+        if (state != null) return state;
+        Cold c = cold.get(sessionId);
+        if (c == null) throw new SessionNotFoundException(sessionId);
+        return SessionCodec.readSession(arena.load(c.handle()), index);
+    }
+
+    /**
+     * Runs {@code action} while holding the session's lock stripe, so mutations of one session never interleave.
+     * Sessions on other stripes proceed in parallel.
+     */
+    public <T> T withLock(String sessionId, Supplier<T> action) {
+        ReentrantLock lock = locks[spread(sessionId.hashCode()) & (LOCK_STRIPES - 1)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
     public void remove(String sessionId) {
-        sessions.remove(sessionId);
+        boolean removed = withLock(sessionId, () -> {
+            Cold c = cold.remove(sessionId);
+            if (c != null) release(c);
+            return sessions.remove(sessionId) != null || c != null;
+        });
+        if (removed) journal.removed(sessionId);
     }
+
+    @Override
+    public void close() {
+        if (sweeper != null) sweeper.shutdownNow();
+    }
+
+    // =========================================================
+    // TIERING
+    // =========================================================
+
+    private GameState rehydrate(String sessionId) {
+        return withLock(sessionId, () -> {
+            GameState state = sessions.get(sessionId);
+            if (state != null) return state;
+
+            Cold c = cold.get(sessionId);
+            if (c == null) throw new SessionNotFoundException(sessionId);
+
+            long t0 = System.nanoTime();
+            state = SessionCodec.readSession(arena.load(c.handle()), index);
+            sessions.put(sessionId, state);
+            cold.remove(sessionId);
+            release(c);
+            rehydrateNanos.addAndGet(System.nanoTime() - t0);
+            rehydrations.incrementAndGet();
+            return state;
+        });
+    }
+
+    private void release(Cold c) {
+        arena.free(c.handle());
+        heapSaved.addAndGet(-c.heapBytes());
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (GameState state : sessions.values()) {
+            if (now - state.lastAccessNanos() >= spillAfterNanos && !spill(state.getSessionId())) {
+                return; // arena full
+            }
+        }
+    }
+
+    /** Moves one idle session off-heap; false when the arena has no room. */
+    private boolean spill(String sessionId) {
+        return withLock(sessionId, () -> {
+            GameState state = sessions.get(sessionId);
+            if (state == null || System.nanoTime() - state.lastAccessNanos() < spillAfterNanos) return true;
+
+            long t0 = System.nanoTime();
+            long handle = arena.store(encode(state));
+            if (handle < 0) return false;
+
+            long heapBytes = approxHeapBytes(state) - Cold.BYTES;
+            cold.put(sessionId, new Cold(handle, heapBytes));
+            sessions.remove(sessionId);
+            heapSaved.addAndGet(heapBytes);
+            spillNanos.addAndGet(System.nanoTime() - t0);
+            spills.incrementAndGet();
+            return true;
+        });
+    }
+
+    private ByteBuffer encode(GameState state) {
+        while (true) {
+            try {
+                SessionCodec.writeSession(scratch.clear(), state);
+                return scratch.flip();
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(scratch.capacity() * 2);
+            }
+        }
+    }
+
+    /** Rough retained size of a session object graph (strings of shared questions excluded). */
+    static long approxHeapBytes(GameState s) {
+        long n = 400; // the object, its lists, set, bit set and deque
+        n += 48L * s.getConstraints().size();
+        for (String key : s.askedKeys()) n += 88 + key.length(); // entry + String + Latin-1 bytes
+        n += 40L * s.getRejectedGuesses().size();
+        n += (long) GameState.SNAPSHOT_BYTES * s.undoDepth();
+        float[] scores = s.getScores();
+        if (scores != null) n += 16 + 4L * scores.length;
+        return n;
+    }
+
+    /** Hot/cold counts, spill and rehydrate latency, arena usage and the estimated heap kept off-heap. */
+    public TierStats tierStats() {
+        long s = spills.get();
+        long r = rehydrations.get();
+        return new TierStats(
+                sessions.size(),
+                cold.size(),
+                s,
+                r,
+                s == 0 ? 0.0 : spillNanos.get() / 1000.0 / s,
+                r == 0 ? 0.0 : rehydrateNanos.get() / 1000.0 / r,
+                arena == null ? 0 : arena.capacityBytes(),
+                arena == null ? 0 : arena.liveBytes(),
+                heapSaved.get(),
+                TimeUnit.NANOSECONDS.toSeconds(spillAfterNanos)
+        );
+    }
+
+    public record TierStats(
+            int hot,
+            int cold,
+            long spills,
+            long rehydrations,
+            double avgSpillMicros,
+            double avgRehydrateMicros,
+            long arenaCapacityBytes,
+            long arenaLiveBytes,
+            long heapSavedBytes,
+            long spillAfterSeconds
+    ) {}
+
+    /** A spilled session: its arena handle and the heap its object graph took. */
+    private record Cold(long handle, long heapBytes) {
+        static final int BYTES = 48; // this record + its map entry
+    }
+
+    // =========================================================
+    // UNDO
+    // =========================================================
+
+    /** Undo snapshots currently retained across the on-heap sessions (spilled ones keep none). */
+    public UndoStats undoStats() {
+        long snapshots = 0;
+        for (GameState state : sessions.values()) {
+            snapshots += state.undoDepth();
+        }
+        return new UndoStats(
+                sessions.size(),
+                snapshots,
+                snapshots * GameState.SNAPSHOT_BYTES,
+                GameState.SNAPSHOT_BYTES,
+                GameState.MAX_UNDO
+        );
+    }
+
+    /** Sizes are estimates from the snapshot layout ({@link GameState#SNAPSHOT_BYTES}), not measurements. */
+    public record UndoStats(int sessions, long snapshots, long approxBytes, int approxBytesPerSnapshot, int maxDepth) {}
 }
@@ -0,0 +1,9 @@
+package com.pokenator.akinator.session;
+
+/** No live session (hot or spilled) has this id: it never existed, expired or was removed. */
+public class SessionNotFoundException extends IllegalArgumentException {
+
+    public SessionNotFoundException(String sessionId) {
+        super("Invalid session: " + sessionId);
+    }
+}
@@ -0,0 +1,276 @@
+package com.pokenator.analytics;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.index.SpeciesIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gameplay counters: confirmed guesses per species and answer frequencies per (question, answer).
+ *
+ * <p>Recording is a map lookup and a {@link LongAdder} increment (contended increments spread over cells instead
+ * of retrying a CAS), so it adds nothing measurable to an answer. A background task snapshots the counters to a
+ * TSV file, restored at startup, and recomputes the per-value "unknown" rates the {@code QuestionSelector} reads.
+ *
+ * <p>Uses: guesses are ordered by how often each species was confirmed ({@link #mostPopular}), and questions
+ * players often cannot answer are penalized ({@link #unknownRate}).
+ */
+public class GameAnalytics implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GameAnalytics.class);
+
+    /** Pseudo-answers with no "unknown" added to every question, so a few answers move the rate little. */
+    static final int PRIOR_ANSWERS = 20;
+
+    private final Map<String, LongAdder> confirmed = new ConcurrentHashMap<>();
+    private final Map<QuestionKey, LongAdder[]> answers = new ConcurrentHashMap<>();
+
+    private final SpeciesIndex index; // nullable: rates by value id need it
+    private final Path file;          // nullable: no persistence
+    private final ScheduledExecutorService snapshotter;
+    private volatile float[] unknownByValueId = new float[0];
+
+    private GameAnalytics(SpeciesIndex index, Path file, long snapshotMillis) {
+        this.index = index;
+        this.file = file;
+        if (snapshotMillis > 0) {
+            this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "analytics-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            snapshotter.scheduleWithFixedDelay(this::snapshot, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotter = null;
+        }
+    }
+
+    /** Counters restored from {@code file} if present, snapshotted there every {@code snapshotMillis}. */
+    public static GameAnalytics open(SpeciesIndex index, Path file, long snapshotMillis) {
+        GameAnalytics analytics = new GameAnalytics(index, file, snapshotMillis);
+        analytics.load();
+        analytics.refreshRates();
+        return analytics;
+    }
+
+    /** In-memory counters only. */
+    public static GameAnalytics inMemory() {
+        return new GameAnalytics(null, null, 0);
+    }
+
+    // =========================================================
+    // RECORDING
+    // =========================================================
+
+    public void answered(String predicateUri, String objectUri, Answer answer) {
+        QuestionKey key = new QuestionKey(predicateUri, objectUri);
+        LongAdder[] counts = answers.get(key);
+        if (counts == null) counts = answers.computeIfAbsent(key, k -> newCounts());
+        counts[answer.ordinal()].increment();
+    }
+
+    public void confirmed(String speciesUri) {
+        LongAdder n = confirmed.get(speciesUri);
+        if (n == null) n = confirmed.computeIfAbsent(speciesUri, k -> new LongAdder());
+        n.increment();
+    }
+
+    private static LongAdder[] newCounts() {
+        LongAdder[] counts = new LongAdder[Answer.values().length];
+        for (int i = 0; i < counts.length; i++) counts[i] = new LongAdder();
+        return counts;
+    }
+
+    // =========================================================
+    // QUERIES
+    // =========================================================
+
+    public long confirmations(String speciesUri) {
+        LongAdder n = confirmed.get(speciesUri);
+        return n == null ? 0 : n.sum();
+    }
+
+    /** Up to {@code limit} species, most confirmed first; ties keep their input order. */
+    public List<String> mostPopular(List<String> speciesUris, int limit) {
+        List<String> sorted = new ArrayList<>(speciesUris);
+        if (!confirmed.isEmpty()) {
+            sorted.sort(Comparator.comparingLong(this::confirmations).reversed());
+        }
+        return sorted.size() > limit ? List.copyOf(sorted.subList(0, limit)) : sorted;
+    }
+
+    /**
+     * Up to {@code limit} species of the candidate bitset {@code set} of {@code index}, most confirmed first; ties
+     * and never confirmed species in ordinal order. Looks at the confirmed species and the first {@code limit}
+     * members only, however large the set.
+     */
+    public List<String> mostPopular(SpeciesIndex index, long[] set, int limit) {
+        List<Ranked> ranked = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> e : confirmed.entrySet()) {
+            long n = e.getValue().sum();
+            int s = n > 0 ? index.speciesOrdinal(e.getKey()) : -1;
+            if (s >= 0 && (set[s >>> 6] & (1L << s)) != 0) ranked.add(new Ranked(s, n));
+        }
+        ranked.sort(Comparator.comparingLong(Ranked::confirmations).reversed().thenComparingInt(Ranked::ordinal));
+
+        List<String> out = new ArrayList<>(limit);
+        for (int i = 0; i < ranked.size() && out.size() < limit; i++) {
+            out.add(index.speciesUri(ranked.get(i).ordinal()));
+        }
+        for (int s = SpeciesIndex.nextSpecies(set, 0); s >= 0 && out.size() < limit;
+             s = SpeciesIndex.nextSpecies(set, s + 1)) {
+            String uri = index.speciesUri(s);
+            if (!out.contains(uri)) out.add(uri);
+        }
+        return out;
+    }
+
+    private record Ranked(int ordinal, long confirmations) {}
+
+    /** Share of "unknown" answers to the question, as of the last refresh (0 without data). */
+    public float unknownRate(int valueId) {
+        float[] rates = unknownByValueId;
+        return valueId < rates.length ? rates[valueId] : 0f;
+    }
+
+    /** Same as {@link #unknownRate(int)}, computed from the live counters. */
+    public float unknownRate(String predicateUri, String objectUri) {
+        LongAdder[] counts = answers.get(new QuestionKey(predicateUri, objectUri));
+        return counts == null ? 0f : rate(counts);
+    }
+
+    private static float rate(LongAdder[] counts) {
+        long total = 0;
+        for (LongAdder c : counts) total += c.sum();
+        return (float) counts[Answer.UNKNOWN.ordinal()].sum() / (total + PRIOR_ANSWERS);
+    }
+
+    // =========================================================
+    // SNAPSHOT
+    // =========================================================
+
+    /** Recomputes the unknown rates by value id and writes the counters to disk (if persistent). */
+    public void snapshot() {
+        try {
+            refreshRates();
+            if (file != null) write();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Analytics snapshot to {} failed: {}", file, e.toString());
+        }
+    }
+
+    private void refreshRates() {
+        if (index == null) return;
+        float[] rates = new float[index.valueCount()];
+        for (Map.Entry<QuestionKey, LongAdder[]> e : answers.entrySet()) {
+            int v = index.valueId(e.getKey().predicateUri(), e.getKey().objectUri());
+            if (v >= 0) rates[v] = rate(e.getValue());
+        }
+        unknownByValueId = rates;
+    }
+
+    /** One line per counter: {@code S uri confirmed} or {@code Q predicate object yes no unknown}. */
+    private void write() throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, LongAdder> e : confirmed.entrySet()) {
+                w.write("S\t" + e.getKey() + "\t" + e.getValue().sum() + "\n");
+            }
+            for (Map.Entry<QuestionKey, LongAdder[]> e : answers.entrySet()) {
+                w.write("Q\t" + e.getKey().predicateUri() + "\t" + e.getKey().objectUri());
+                for (LongAdder c : e.getValue()) w.write("\t" + c.sum());
+                w.write("\n");
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) return;
+        int lines = 0;
+        try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                String[] f = line.split("\t");
+                if (f[0].equals("S") && f.length == 3) {
+                    confirmed.computeIfAbsent(f[1], k -> new LongAdder()).add(Long.parseLong(f[2]));
+                } else if (f[0].equals("Q") && f.length == 3 + Answer.values().length) {
+                    LongAdder[] counts = answers.computeIfAbsent(new QuestionKey(f[1], f[2]), k -> newCounts());
+                    for (int i = 0; i < counts.length; i++) counts[i].add(Long.parseLong(f[3 + i]));
+                }
+                lines++;
+            }
+            log.info("Analytics restored from {}: {} counters", file, lines);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable analytics snapshot {}: {}", file, e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (snapshotter == null) return;
+        // Pending runs are cancelled; a running one must finish first, both write the same temporary file
+        snapshotter.shutdown();
+        try {
+            if (!snapshotter.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Analytics snapshot still running at shutdown; final snapshot skipped");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        snapshot();
+    }
+
+    // =========================================================
+    // SUMMARY
+    // =========================================================
+
+    /** Most confirmed species and the questions most often answered "unknown". */
+    public Summary summary(int limit) {
+        List<SpeciesCount> species = new ArrayList<>();
+        for (Map.Entry<String, LongAdder> e : confirmed.entrySet()) {
+            species.add(new SpeciesCount(e.getKey(), e.getValue().sum()));
+        }
+        species.sort(Comparator.comparingLong(SpeciesCount::confirmed).reversed());
+
+        List<QuestionCount> questions = new ArrayList<>();
+        for (Map.Entry<QuestionKey, LongAdder[]> e : answers.entrySet()) {
+            LongAdder[] c = e.getValue();
+            questions.add(new QuestionCount(e.getKey().predicateUri(), e.getKey().objectUri(),
+                    c[Answer.YES.ordinal()].sum(), c[Answer.NO.ordinal()].sum(), c[Answer.UNKNOWN.ordinal()].sum(),
+                    rate(c)));
+        }
+        questions.sort(Comparator.comparingDouble(QuestionCount::unknownRate).reversed());
+
+        return new Summary(
+                species.subList(0, Math.min(limit, species.size())),
+                questions.subList(0, Math.min(limit, questions.size()))
+        );
+    }
+
+    public record Summary(List<SpeciesCount> topSpecies, List<QuestionCount> mostUnknown) {}
+    public record SpeciesCount(String speciesUri, long confirmed) {}
+    public record QuestionCount(String predicateUri, String objectUri, long yes, long no, long unknown, float unknownRate) {}
+
+    private record QuestionKey(String predicateUri, String objectUri) {}
+}
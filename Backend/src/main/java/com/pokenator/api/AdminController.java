@@ -0,0 +1,102 @@
+package com.pokenator.api;
+
+import com.pokenator.akinator.session.SessionJournal;
+import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.analytics.GameAnalytics;
+import com.pokenator.repository.StepContext;
+import com.pokenator.sparql.CoalescingSparqlClient;
+import com.pokenator.sparql.Deadline;
+import com.pokenator.sparql.RemoteSparqlClient;
+import com.pokenator.stats.StatisticsCatalog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** Read-only operational counters. */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final CoalescingSparqlClient sparqlClient;
+    private final SessionManager sessionManager;
+    private final StatisticsCatalog statisticsCatalog;
+    private final GameAnalytics gameAnalytics;
+    private final CandidatePageCache candidatePages;
+
+    public AdminController(
+            CoalescingSparqlClient sparqlClient,
+            SessionManager sessionManager,
+            StatisticsCatalog statisticsCatalog,
+            GameAnalytics gameAnalytics,
+            CandidatePageCache candidatePages
+    ) {
+        this.sparqlClient = sparqlClient;
+        this.sessionManager = sessionManager;
+        this.statisticsCatalog = statisticsCatalog;
+        this.gameAnalytics = gameAnalytics;
+        this.candidatePages = candidatePages;
+    }
+
+    /** Repository calls executed vs. answered from the per-step memo. */
+    @GetMapping("/steps")
+    public StepContext.Stats steps() {
+        return StepContext.stats();
+    }
+
+    /** Identical concurrent queries that waited for an in-flight execution instead of running again. */
+    @GetMapping("/coalescing")
+    public CoalescingSparqlClient.Stats coalescing() {
+        return sparqlClient.stats();
+    }
+
+    /** Remote endpoint mode: requests sent, batched queries, result cache hits and connections in use (else 404). */
+    @GetMapping("/remote")
+    public ResponseEntity<RemoteSparqlClient.Stats> remote() {
+        if (sparqlClient.delegate() instanceof RemoteSparqlClient remote) return ResponseEntity.ok(remote.stats());
+        return ResponseEntity.notFound().build();
+    }
+
+    /** Candidate pages served from the shared cache vs. rendered, and conditional requests answered with 304. */
+    @GetMapping("/candidate-cache")
+    public CandidatePageCache.Stats candidateCache() {
+        return candidatePages.stats();
+    }
+
+    /** Steps run under a request budget, queries cancelled for it, and steps degraded or failed as a result. */
+    @GetMapping("/deadlines")
+    public Deadline.Stats deadlines() {
+        return Deadline.stats();
+    }
+
+    /** Undo snapshots retained across sessions and their approximate heap footprint. */
+    @GetMapping("/undo")
+    public SessionManager.UndoStats undo() {
+        return sessionManager.undoStats();
+    }
+
+    /** On-heap vs. spilled sessions, spill/rehydrate latency and heap kept off-heap. */
+    @GetMapping("/sessions")
+    public SessionManager.TierStats sessions() {
+        return sessionManager.tierStats();
+    }
+
+    /** Session journal: records, group-commit batches, compactions and the last replay. */
+    @GetMapping("/journal")
+    public SessionJournal.Stats journal() {
+        return sessionManager.journal().stats();
+    }
+
+    /** Startup profile of the species graph: predicates, coverage, value selectivities, chosen families. */
+    @GetMapping("/statistics")
+    public StatisticsCatalog.Summary statistics() {
+        return statisticsCatalog.summary();
+    }
+
+    /** Most confirmed species and the questions players most often cannot answer. */
+    @GetMapping("/analytics")
+    public GameAnalytics.Summary analytics(@RequestParam(defaultValue = "20") int limit) {
+        return gameAnalytics.summary(Math.clamp(limit, 1, 1000));
+    }
+}
@@ -0,0 +1,122 @@
+package com.pokenator.api;
+
+import com.pokenator.akinator.model.Constraint;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Candidate pages serialized to JSON once and served as bytes to every session in the same state: the key is
+ * the canonical constraint set (order and duplicates do not matter) plus the page cursor and size. Bounded by
+ * the total size of the pages, least recently used first out. The graph does not change while the process
+ * runs, so pages never go stale; {@link #etag} carries the dataset version for the clients' caches.
+ */
+public class CandidatePageCache {
+
+    private final long datasetVersion;
+    private final long maxBytes;
+    private final Map<Key, byte[]> pages = new LinkedHashMap<>(16, 0.75f, true); // LRU, guarded by itself
+    private long bytes; // guarded by pages
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    /** {@code datasetVersion}: changes whenever the data may have (source checksum, configured version). */
+    public CandidatePageCache(long datasetVersion, long maxBytes) {
+        this.datasetVersion = datasetVersion;
+        this.maxBytes = maxBytes;
+    }
+
+    /** One line per distinct constraint, sorted. */
+    public static String canonicalKey(List<Constraint> constraints) {
+        List<String> lines = new ArrayList<>(constraints.size());
+        for (Constraint c : constraints) {
+            String line = c.kind() + " " + c.answer() + " " + c.predicateUri() + " " + c.objectUri();
+            if (!lines.contains(line)) lines.add(line);
+        }
+        lines.sort(null);
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Strong entity tag for a response of a session at {@code step} whose content is determined by
+     * {@code content}. The step alone is not enough: after an undo the same step can be reached with other
+     * answers.
+     */
+    public String etag(int step, String content) {
+        return "\"" + Long.toHexString(datasetVersion) + "-" + step + "-" + Long.toHexString(fnv1a(content)) + "\"";
+    }
+
+    /** The serialized page, rendering and storing it when absent (concurrent misses may both render). */
+    public byte[] page(String constraintKey, String cursor, int limit, Supplier<byte[]> render) {
+        Key key = new Key(constraintKey, cursor, limit);
+        synchronized (pages) {
+            byte[] cached = pages.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+
+        byte[] page = render.get();
+        if (page.length > maxBytes) return page;
+
+        synchronized (pages) {
+            byte[] previous = pages.put(key, page);
+            bytes += page.length - (previous == null ? 0 : previous.length);
+
+            var it = pages.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().getValue().length;
+                it.remove();
+                evictions.increment();
+            }
+        }
+        return page;
+    }
+
+    public void recordNotModified() {
+        notModified.increment();
+    }
+
+    private static long fnv1a(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public Stats stats() {
+        synchronized (pages) {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), notModified.sum(), pages.size(), bytes,
+                    maxBytes);
+        }
+    }
+
+    /** {@code notModified}: conditional requests answered with 304, which never reach the cache. */
+    public record Stats(
+            long hits,
+            long misses,
+            long evictions,
+            long notModified,
+            int entries,
+            long bytes,
+            long maxBytes
+    ) {}
+
+    private record Key(String constraints, String cursor, int limit) {}
+}
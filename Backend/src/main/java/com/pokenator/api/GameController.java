@@ -1,47 +1,262 @@
 package com.pokenator.api;
 
+import com.pokenator.akinator.model.Constraint;
 import com.pokenator.akinator.model.GameState;
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionKind;
 import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
+import com.pokenator.akinator.service.ScoringEngine;
+import com.pokenator.akinator.service.StaleAnswerException;
+import com.pokenator.akinator.service.WarmUp;
+import com.pokenator.akinator.session.SessionNotFoundException;
 import com.pokenator.api.dto.AnswerRequest;
 import com.pokenator.api.dto.ApiQuestion;
 import com.pokenator.api.dto.CandidateDto;
 import com.pokenator.api.dto.CandidateListResponse;
 import com.pokenator.api.dto.GameStartResponse;
 import com.pokenator.api.dto.GameStepResponse;
+import com.pokenator.api.dto.SpeciesMatchDto;
+import com.pokenator.api.dto.SpeciesSearchResponse;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.index.SpeciesNameIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.Deadline;
+import com.pokenator.sparql.DeadlineExceededException;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.apache.jena.query.Dataset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api")
 public class GameController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    // Stored by the browser but revalidated on every use: a 304 costs no repository access
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final GameService gameService;
     private final SpeciesRepository speciesRepository;
     private final Dataset dataset;
+    private final ObjectMapper objectMapper;
+    private final QuestionCatalog questionCatalog;
+    private final SpeciesNameIndex speciesNames;
+    private final WarmUp warmUp;
+    private final CandidatePageCache candidatePages;
+    private final ScoringEngine scoring;
+    private final long budgetMillis;
 
-    public GameController(GameService gameService, SpeciesRepository speciesRepository, Dataset dataset) {
+    /** {@code budgetMillis}: time budget of each start/answer request for its queries (0 = none). */
+    public GameController(GameService gameService,
+                          SpeciesRepository speciesRepository,
+                          Dataset dataset,
+                          ObjectMapper objectMapper,
+                          QuestionCatalog questionCatalog,
+                          SpeciesNameIndex speciesNames,
+                          WarmUp warmUp,
+                          CandidatePageCache candidatePages,
+                          ScoringEngine scoring,
+                          @Value("${pokenator.request.budget-ms:3000}") long budgetMillis) {
         this.gameService = gameService;
         this.speciesRepository = speciesRepository;
         this.dataset = dataset;
+        this.objectMapper = objectMapper;
+        this.questionCatalog = questionCatalog;
+        this.speciesNames = speciesNames;
+        this.warmUp = warmUp;
+        this.candidatePages = candidatePages;
+        this.scoring = scoring;
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Species whose name (any language, any word of it) starts with {@code q}. With {@code sessionId}, only
+     * the session's current candidates are returned.
+     */
+    @GetMapping("/species/search")
+    public SpeciesSearchResponse searchSpecies(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String sessionId
+    ) {
+        Predicate<String> allowed = null;
+        if (sessionId != null && !sessionId.isBlank()) {
+            allowed = candidateFilter(stateOf(sessionId));
+        }
+
+        List<SpeciesMatchDto> matches = new ArrayList<>();
+        for (SpeciesNameIndex.Match m : speciesNames.search(q, Math.clamp(limit, 1, MAX_SEARCH_RESULTS), allowed)) {
+            matches.add(new SpeciesMatchDto(m.uri(), m.label(), m.matched()));
+        }
+        return new SpeciesSearchResponse(q, matches);
     }
 
+    /** The session's state; 404 when the session is unknown or expired. */
+    private GameState stateOf(String sessionId) {
+        try {
+            return gameService.getState(sessionId);
+        } catch (SessionNotFoundException ex) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid sessionId", ex);
+        }
+    }
+
+    /** Membership test for the session's candidates: a bitset probe with the index, else one candidate query. */
+    private Predicate<String> candidateFilter(GameState state) {
+        SpeciesIndex index = speciesRepository.index();
+        if (index != null) {
+            long[] plausible = gameService.plausibleCandidates(state.getSessionId());
+            long[] set = plausible != null ? plausible : speciesRepository.candidateSet(state.getConstraints());
+            return uri -> {
+                int ordinal = index.speciesOrdinal(uri);
+                return ordinal >= 0 && (set[ordinal >>> 6] & (1L << ordinal)) != 0;
+            };
+        }
+
+        Set<String> candidates = new HashSet<>(
+                speciesRepository.listCandidates(dataset, state.getConstraints(), Integer.MAX_VALUE));
+        return candidates::contains;
+    }
+
+    /**
+     * One page of candidates ordered by URI, as a {@link CandidateListResponse}. Pass the returned
+     * {@code nextCursor} back as {@code cursor} to fetch the following page.
+     *
+     * <p>Tagged with an ETag of the session state: with a matching {@code If-None-Match} (nothing answered since)
+     * the answer is 304 without querying. Pages are shared through {@link CandidatePageCache}, so sessions in
+     * the same state get the same bytes.
+     *
+     * <p>With the scoring engine the list is its plausible species, not the species matching every answer: a
+     * wrong answer does not remove the right species there.
+     */
     @GetMapping("/game/{sessionId}/candidates")
-    public CandidateListResponse listCandidates(@PathVariable String sessionId) {
-        GameState state = gameService.getState(sessionId);
-        List<String> uris = speciesRepository.listCandidates(dataset, state.getConstraints(), 1000);
+    public ResponseEntity<byte[]> listCandidates(
+            @PathVariable String sessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit,
+            WebRequest request
+    ) {
+        GameState state = stateOf(sessionId);
+        int pageSize = clampPageSize(limit);
+
+        // One copy, so the tag and the page describe the same constraints even if an answer lands meanwhile
+        List<Constraint> constraints = List.copyOf(state.getConstraints());
+        String key = candidateKey(state, constraints);
+        String etag = candidatePages.etag(state.getStep(), key);
+        if (request.checkNotModified(etag)) {
+            candidatePages.recordNotModified();
+            return null;
+        }
+
+        byte[] page = candidatePages.page(key, cursor, pageSize,
+                () -> renderCandidates(sessionId, constraints, cursor, pageSize));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(REVALIDATE)
+                .body(page);
+    }
+
+    /** What the candidate list depends on: the constraints, plus the rejected guesses with the scoring engine. */
+    private String candidateKey(GameState state, List<Constraint> constraints) {
+        String key = CandidatePageCache.canonicalKey(constraints);
+        if (!scoring.enabled()) return key;
+
+        List<String> rejected = new ArrayList<>(state.getRejectedGuesses());
+        rejected.sort(null);
+        return key + "\nrejected " + String.join(" ", rejected);
+    }
+
+    private byte[] renderCandidates(String sessionId, List<Constraint> constraints, String cursor, int pageSize) {
+        // Fetch one extra row just to know whether another page exists
         List<CandidateDto> list = new ArrayList<>();
-        for (String uri : uris) {
-            String label = speciesRepository.getEnglishLabel(dataset, uri);
-            list.add(new CandidateDto(uri, label));
+        forEachCandidate(sessionId, constraints, cursor, pageSize + 1,
+                c -> list.add(new CandidateDto(c.uri(), c.label())));
+
+        String nextCursor = null;
+        if (list.size() > pageSize) {
+            list.removeLast();
+            nextCursor = list.getLast().uri();
+        }
+        try {
+            return objectMapper.writeValueAsBytes(new CandidateListResponse(list, nextCursor));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return new CandidateListResponse(list);
+    }
+
+    /**
+     * Same page as {@link #listCandidates}, written as NDJSON (one {@link CandidateDto} per line) while
+     * the query is still producing rows. The URI of the last line is the cursor for the next page.
+     */
+    @GetMapping("/game/{sessionId}/candidates/stream")
+    public ResponseEntity<StreamingResponseBody> streamCandidates(
+            @PathVariable String sessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + MAX_PAGE_SIZE) int limit
+    ) {
+        GameState state = stateOf(sessionId);
+        int pageSize = clampPageSize(limit);
+        var constraints = List.copyOf(state.getConstraints());
+
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out, 8192);
+            try {
+                forEachCandidate(sessionId, constraints, cursor, pageSize, c -> {
+                    try {
+                        buffered.write(objectMapper.writeValueAsBytes(new CandidateDto(c.uri(), c.label())));
+                        buffered.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            buffered.flush();
+        };
+
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /** The session's candidates: by constraints, or the plausible species with the scoring engine. */
+    private void forEachCandidate(String sessionId, List<Constraint> constraints, String cursor, int limit,
+                                  Consumer<SpeciesRepository.LabeledSpecies> consumer) {
+        long[] plausible = gameService.plausibleCandidates(sessionId);
+        if (plausible != null) {
+            speciesRepository.forEachSpeciesWithLabel(dataset, plausible, cursor, limit, consumer);
+        } else {
+            speciesRepository.forEachCandidateWithLabel(dataset, constraints, cursor, limit, consumer);
+        }
+    }
+
+    private int clampPageSize(int limit) {
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Parameter 'limit' must be positive");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 
 
@@ -50,21 +265,34 @@ public class GameController {
         return "ok";
     }
 
+    /** 503 until the startup warm-up has played its games; the body reports its progress and latencies. */
+    @GetMapping("/ready")
+    public ResponseEntity<WarmUp.Report> ready() {
+        HttpStatus status = warmUp.ready() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status).body(warmUp.report());
+    }
+
     @PostMapping("/game/start")
-    public GameStartResponse start() {
-        var start = gameService.start();
-        var q = start.question();
+    public GameStartResponse start(@RequestParam(required = false) String lang) {
+        GameService.StartGameResult start;
+        try {
+            start = gameService.start(Deadline.after(budgetMillis));
+        } catch (DeadlineExceededException ex) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Step took too long; try again", ex);
+        }
 
         return new GameStartResponse(
                 start.sessionId(),
-                new ApiQuestion(q.text(), q.kind().name(), q.predicateUri(), q.objectUri())
+                toApiQuestion(start.question(), lang),
+                start.step()
         );
     }
 
     @PostMapping("/game/{sessionId}/answer")
     public GameStepResponse answer(
             @PathVariable String sessionId,
-            @RequestBody AnswerRequest req
+            @RequestBody AnswerRequest req,
+            @RequestParam(required = false) String lang
     ) {
         if (req == null || req.answer() == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Field 'answer' is required: YES|NO|UNKNOWN");
@@ -72,7 +300,13 @@ public class GameController {
 
         GameService.NextStepResult step;
         try {
-            step = gameService.answer(sessionId, req.answer());
+            step = gameService.answer(sessionId, req.answer(), req.step(), Deadline.after(budgetMillis));
+        } catch (DeadlineExceededException ex) {
+            // The session is unchanged: the same answer can be sent again
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Step took too long; try again", ex);
+        } catch (StaleAnswerException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Stale answer; current step is " + ex.getCurrentStep(), ex);
         } catch (RuntimeException ex) {
             // Ex.: sessionId não encontrado no SessionManager
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid sessionId", ex);
@@ -87,7 +321,8 @@ public class GameController {
                     null,
                     null,
                     speciesUri,
-                    label
+                    label,
+                    null
             );
         }
 
@@ -97,17 +332,19 @@ public class GameController {
                     null,
                     null,
                     null,
+                    null,
                     null
             );
         }
 
-        if (step instanceof GameService.NextStepResult.NextQuestion(var question, long remainingCandidates)) {
+        if (step instanceof GameService.NextStepResult.NextQuestion(var question, long remainingCandidates, int nextStep)) {
             return new GameStepResponse(
                     "QUESTION",
                     remainingCandidates,
-                    new ApiQuestion(question.text(), question.kind().name(), question.predicateUri(), question.objectUri()),
+                    toApiQuestion(question, lang),
                     null,
-                    null
+                    null,
+                    nextStep
             );
         }
 
@@ -117,7 +354,83 @@ public class GameController {
                 null,
                 null,
                 null,
+                null,
                 null
         );
     }
+
+    /**
+     * The session's pending question, as the last answer (or start) returned it, or how the game ended (GUESS or
+     * NO_CANDIDATES): lets a client that lost the response, or reloaded, resume the game. Conditional like the
+     * candidate list; the repository is only read for a final guess's label.
+     */
+    @GetMapping("/game/{sessionId}")
+    public ResponseEntity<GameStepResponse> current(
+            @PathVariable String sessionId,
+            @RequestParam(required = false) String lang,
+            WebRequest request
+    ) {
+        GameState state = stateOf(sessionId);
+
+        // An ended game keeps its last question and step: the outcome is part of the content
+        GameState.Outcome outcome = state.getOutcome();
+        Question q = state.getLastQuestion();
+        int step = state.getStep();
+        long remaining = state.getRemainingCandidates();
+        String content = outcome != null ? "END " + outcome.speciesUri()
+                : q == null ? "" : q.kind() + " " + q.predicateUri() + " " + q.objectUri() + " " + remaining;
+        String etag = candidatePages.etag(step, content);
+        if (request.checkNotModified(etag)) return null;
+
+        GameStepResponse body;
+        if (outcome != null && !outcome.noCandidates()) {
+            String uri = outcome.speciesUri();
+            String label = speciesRepository.getEnglishLabel(dataset, uri);
+            body = new GameStepResponse("GUESS", null, null, uri, label, null);
+        } else if (outcome != null || q == null) {
+            body = new GameStepResponse("NO_CANDIDATES", null, null, null, null, null);
+        } else {
+            body = new GameStepResponse("QUESTION", remaining < 0 ? null : remaining, toApiQuestion(q, lang),
+                    null, null, step);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(body);
+    }
+
+    /**
+     * Reverts the last {@code steps} answers and returns the question that was pending then. {@code step}, when
+     * given, must be the session's current step, as for answers.
+     */
+    @PostMapping("/game/{sessionId}/undo")
+    public GameStepResponse undo(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "1") int steps,
+            @RequestParam(required = false) Integer step,
+            @RequestParam(required = false) String lang
+    ) {
+        GameService.NextStepResult.NextQuestion restored;
+        try {
+            restored = gameService.undo(sessionId, steps, step);
+        } catch (StaleAnswerException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Stale undo; current step is " + ex.getCurrentStep(), ex);
+        } catch (IllegalStateException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Nothing to undo", ex);
+        } catch (RuntimeException ex) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Invalid sessionId", ex);
+        }
+
+        return new GameStepResponse(
+                "QUESTION",
+                restored.remainingCandidates() < 0 ? null : restored.remainingCandidates(),
+                toApiQuestion(restored.question(), lang),
+                null,
+                null,
+                restored.step()
+        );
+    }
+
+    /** Uses the catalog text in {@code lang} for HAS_VALUE and NUMERIC_ABOVE questions; guesses keep their text. */
+    private ApiQuestion toApiQuestion(Question q, String lang) {
+        return new ApiQuestion(questionCatalog.localize(q, lang), q.kind().name(), q.predicateUri(), q.objectUri());
+    }
 }
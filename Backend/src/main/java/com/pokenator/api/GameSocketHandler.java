@@ -0,0 +1,265 @@
+package com.pokenator.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.GameState;
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
+import com.pokenator.akinator.service.StaleAnswerException;
+import com.pokenator.akinator.session.SessionNotFoundException;
+import com.pokenator.api.dto.ApiQuestion;
+import com.pokenator.api.dto.GameFrame;
+import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.Deadline;
+import com.pokenator.sparql.DeadlineExceededException;
+import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The game over one WebSocket connection: the same operations as the REST endpoints of {@link GameController},
+ * without a request line, headers and JSON envelope per answer. The game session is bound to the connection
+ * when it is started or resumed, so answers carry only the answer and the step.
+ *
+ * <p>Client frames: {@code {"t":"start","lang":"pt","spec":true}}, {@code {"t":"resume","id":"...","spec":true}},
+ * {@code {"t":"a","a":"Y","s":3}} (Y/N/U or the full answer name; {@code s} optional, as {@code step} in REST) and
+ * {@code {"t":"undo","n":1,"s":3}}. Server frames are {@link GameFrame}s.
+ *
+ * <p>With {@code spec}, after each question the server computes in the background the questions that would
+ * follow YES and NO ({@link GameService#speculate}) and pushes them in a {@code spec} frame; the client can show
+ * the next question as soon as the player answers, and the server reuses the precomputed question when the
+ * answer arrives. Speculation runs on a few platform threads (each keeps its selector scratch buffers); when all
+ * are busy it is skipped, and the answer simply computes its next question itself.
+ */
+public class GameSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(GameSocketHandler.class);
+
+    private static final String SESSION_ID = "pokenator.sessionId";
+    private static final String LANG = "pokenator.lang";
+    private static final String SPECULATE = "pokenator.speculate";
+    private static final String OUT = "pokenator.out";
+
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_BYTES = 64 * 1024;
+
+    private final GameService gameService;
+    private final SpeciesRepository speciesRepository;
+    private final Dataset dataset;
+    private final ObjectMapper objectMapper;
+    private final QuestionCatalog questionCatalog;
+    private final long budgetMillis;
+    private final ThreadPoolExecutor speculator;
+
+    /** {@code speculationThreads}: speculations computed at once; more are dropped, not queued. */
+    public GameSocketHandler(GameService gameService,
+                             SpeciesRepository speciesRepository,
+                             Dataset dataset,
+                             ObjectMapper objectMapper,
+                             QuestionCatalog questionCatalog,
+                             long budgetMillis,
+                             int speculationThreads) {
+        this.gameService = gameService;
+        this.speciesRepository = speciesRepository;
+        this.dataset = dataset;
+        this.objectMapper = objectMapper;
+        this.questionCatalog = questionCatalog;
+        this.budgetMillis = budgetMillis;
+
+        AtomicInteger threads = new AtomicInteger();
+        int n = Math.max(1, speculationThreads);
+        this.speculator = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "ws-speculation-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession ws) {
+        // Replies and speculation frames are sent from different threads
+        ws.getAttributes().put(OUT, new ConcurrentWebSocketSessionDecorator(ws, SEND_TIME_LIMIT_MS, SEND_BUFFER_BYTES));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession ws, TextMessage message) {
+        JsonNode f;
+        try {
+            f = objectMapper.readTree(message.getPayload());
+        } catch (IOException e) {
+            send(ws, GameFrame.error(400, "Malformed frame"));
+            return;
+        }
+
+        String type = f.path("t").asText("");
+        try {
+            switch (type) {
+                case "start" -> start(ws, f);
+                case "resume" -> resume(ws, f);
+                case "a" -> answer(ws, f);
+                case "undo" -> undo(ws, f);
+                default -> send(ws, GameFrame.error(400, "Unknown frame type: " + type));
+            }
+        } catch (DeadlineExceededException ex) {
+            send(ws, GameFrame.error(503, "Step took too long; try again"));
+        } catch (StaleAnswerException ex) {
+            send(ws, GameFrame.error(409, "Stale answer; current step is " + ex.getCurrentStep()));
+        } catch (SessionNotFoundException ex) {
+            send(ws, GameFrame.error(404, "Invalid sessionId"));
+        } catch (RuntimeException ex) {
+            log.warn("Frame '{}' failed: {}", type, ex.toString());
+            send(ws, GameFrame.error(500, "Internal error"));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession ws, CloseStatus status) {
+        // The game session outlives the connection: it can be resumed, here or over REST
+        ws.getAttributes().remove(OUT);
+    }
+
+    // =========================================================
+    // OPERATIONS
+    // =========================================================
+
+    private void start(WebSocketSession ws, JsonNode f) {
+        bindOptions(ws, f);
+        GameService.StartGameResult start = gameService.start(Deadline.after(budgetMillis));
+        ws.getAttributes().put(SESSION_ID, start.sessionId());
+        sendQuestion(ws, start.sessionId(), start.question(), start.step(), null);
+    }
+
+    private void resume(WebSocketSession ws, JsonNode f) {
+        String sessionId = f.path("id").asText("");
+        GameState state = gameService.getState(sessionId);
+        bindOptions(ws, f);
+        ws.getAttributes().put(SESSION_ID, sessionId);
+
+        Question q = state.getLastQuestion();
+        if (q == null) {
+            send(ws, GameFrame.none());
+            return;
+        }
+        long remaining = state.getRemainingCandidates();
+        sendQuestion(ws, sessionId, q, state.getStep(), remaining < 0 ? null : remaining);
+    }
+
+    private void answer(WebSocketSession ws, JsonNode f) {
+        String sessionId = boundSession(ws);
+        Answer answer = parseAnswer(f.path("a").asText(""));
+        if (sessionId == null || answer == null) {
+            send(ws, GameFrame.error(400, sessionId == null ? "No game on this connection" : "Field 'a' must be Y|N|U"));
+            return;
+        }
+
+        GameService.NextStepResult step =
+                gameService.answer(sessionId, answer, expectedStep(f), Deadline.after(budgetMillis));
+
+        if (step instanceof GameService.NextStepResult.Guess(String speciesUri)) {
+            send(ws, GameFrame.guess(speciesUri, speciesRepository.getEnglishLabel(dataset, speciesUri)));
+        } else if (step instanceof GameService.NextStepResult.NextQuestion(var question, long remaining, int next)) {
+            sendQuestion(ws, sessionId, question, next, remaining);
+        } else {
+            send(ws, GameFrame.none());
+        }
+    }
+
+    private void undo(WebSocketSession ws, JsonNode f) {
+        String sessionId = boundSession(ws);
+        if (sessionId == null) {
+            send(ws, GameFrame.error(400, "No game on this connection"));
+            return;
+        }
+
+        GameService.NextStepResult.NextQuestion restored;
+        try {
+            restored = gameService.undo(sessionId, f.path("n").asInt(1), expectedStep(f));
+        } catch (IllegalStateException ex) {
+            send(ws, GameFrame.error(409, "Nothing to undo"));
+            return;
+        }
+        long remaining = restored.remainingCandidates();
+        sendQuestion(ws, sessionId, restored.question(), restored.step(), remaining < 0 ? null : remaining);
+    }
+
+    private void bindOptions(WebSocketSession ws, JsonNode f) {
+        JsonNode lang = f.get("lang");
+        if (lang != null && lang.isTextual()) ws.getAttributes().put(LANG, lang.asText());
+        ws.getAttributes().put(SPECULATE, f.path("spec").asBoolean(false));
+    }
+
+    private static String boundSession(WebSocketSession ws) {
+        return (String) ws.getAttributes().get(SESSION_ID);
+    }
+
+    private static Integer expectedStep(JsonNode f) {
+        JsonNode s = f.get("s");
+        return s != null && s.canConvertToInt() ? s.asInt() : null;
+    }
+
+    private static Answer parseAnswer(String a) {
+        return switch (a) {
+            case "Y", "YES" -> Answer.YES;
+            case "N", "NO" -> Answer.NO;
+            case "U", "UNKNOWN" -> Answer.UNKNOWN;
+            default -> null;
+        };
+    }
+
+    // =========================================================
+    // FRAMES
+    // =========================================================
+
+    private void sendQuestion(WebSocketSession ws, String sessionId, Question q, int step, Long remaining) {
+        String lang = (String) ws.getAttributes().get(LANG);
+        send(ws, GameFrame.question(sessionId, step, remaining, toApiQuestion(q, lang)));
+
+        if (Boolean.TRUE.equals(ws.getAttributes().get(SPECULATE)) && q.kind() != QuestionKind.GUESS) {
+            // Discarded when every speculation thread is busy
+            speculator.execute(() -> speculate(ws, sessionId, step, lang));
+        }
+    }
+
+    /** Pushes the next question for YES and NO, unless the player answered first. */
+    private void speculate(WebSocketSession ws, String sessionId, int step, String lang) {
+        try {
+            GameState.Speculation spec = gameService.speculate(sessionId, Deadline.after(budgetMillis));
+            if (spec == null || spec.step() != step || (spec.yes() == null && spec.no() == null)) return;
+            send(ws, GameFrame.speculation(step, speculated(spec.yes(), step, lang), speculated(spec.no(), step, lang)));
+        } catch (RuntimeException e) {
+            log.debug("Speculation for session {} failed: {}", sessionId, e.toString());
+        }
+    }
+
+    private GameFrame speculated(Question q, int step, String lang) {
+        return q == null ? null : GameFrame.question(null, step + 1, null, toApiQuestion(q, lang));
+    }
+
+    private ApiQuestion toApiQuestion(Question q, String lang) {
+        return new ApiQuestion(questionCatalog.localize(q, lang), q.kind().name(), q.predicateUri(), q.objectUri());
+    }
+
+    private void send(WebSocketSession ws, GameFrame frame) {
+        WebSocketSession out = (WebSocketSession) ws.getAttributes().getOrDefault(OUT, ws);
+        if (!out.isOpen()) return;
+        try {
+            out.sendMessage(new TextMessage(objectMapper.writeValueAsBytes(frame)));
+        } catch (IOException e) {
+            log.debug("Dropping frame to closed connection {}: {}", ws.getId(), e.toString());
+        }
+    }
+}
@@ -2,4 +2,5 @@ package com.pokenator.api.dto;
 
 import com.pokenator.akinator.model.Answer;
 
-public record AnswerRequest(Answer answer) {}
+/** {@code step} (optional) is the step returned with the question being answered; stale steps get 409. */
+public record AnswerRequest(Answer answer, Integer step) {}
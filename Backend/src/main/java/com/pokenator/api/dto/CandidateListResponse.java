@@ -1,5 +1,8 @@
 // CandidateListResponse.java
 package com.pokenator.api.dto;
 import java.util.List;
-/** Envolve a lista de candidatos retornada pelo endpoint de candidatos. */
-public record CandidateListResponse(List<CandidateDto> candidates) {}
+/**
+ * Envolve uma página de candidatos retornada pelo endpoint de candidatos.
+ * {@code nextCursor} é o URI a enviar como {@code cursor} para a próxima página (null = última página).
+ */
+public record CandidateListResponse(List<CandidateDto> candidates, String nextCursor) {}
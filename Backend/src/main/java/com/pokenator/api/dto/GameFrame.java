@@ -0,0 +1,52 @@
+package com.pokenator.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Quadro enviado pelo servidor no canal WebSocket do jogo. Campos curtos e nulos omitidos, para que uma
+ * pergunta caiba em poucas dezenas de bytes.
+ *
+ * <p>{@code t}: "q" (pergunta), "g" (palpite), "none" (sem candidatos), "spec" (perguntas pré-calculadas),
+ * "err" (erro). Pergunta: {@code id} sessão, {@code s} passo, {@code r} candidatos restantes, {@code k} tipo,
+ * {@code x} texto, {@code p}/{@code o} predicado/objeto. Palpite: {@code u} URI, {@code l} rótulo.
+ * Erro: {@code c} código HTTP equivalente, {@code x} mensagem. Especulação: {@code s} passo a que se refere,
+ * {@code y}/{@code n} próxima pergunta após SIM/NÃO.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record GameFrame(
+        String t,
+        String id,
+        Integer s,
+        Long r,
+        String k,
+        String x,
+        String p,
+        String o,
+        String u,
+        String l,
+        Integer c,
+        GameFrame y,
+        GameFrame n
+) {
+
+    public static GameFrame question(String sessionId, Integer step, Long remaining, ApiQuestion q) {
+        return new GameFrame("q", sessionId, step, remaining, q.kind(), q.text(), q.predicateUri(), q.objectUri(),
+                null, null, null, null, null);
+    }
+
+    public static GameFrame guess(String uri, String label) {
+        return new GameFrame("g", null, null, null, null, null, null, null, uri, label, null, null, null);
+    }
+
+    public static GameFrame none() {
+        return new GameFrame("none", null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    public static GameFrame speculation(int step, GameFrame yes, GameFrame no) {
+        return new GameFrame("spec", null, step, null, null, null, null, null, null, null, null, yes, no);
+    }
+
+    public static GameFrame error(int code, String message) {
+        return new GameFrame("err", null, null, null, null, message, null, null, null, null, code, null, null);
+    }
+}
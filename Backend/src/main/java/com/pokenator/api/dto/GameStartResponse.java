@@ -1,3 +1,3 @@
 package com.pokenator.api.dto;
 
-public record GameStartResponse(String sessionId, ApiQuestion question) {}
+public record GameStartResponse(String sessionId, ApiQuestion question, int step) {}
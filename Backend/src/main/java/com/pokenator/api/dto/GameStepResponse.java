@@ -5,5 +5,6 @@ public record GameStepResponse(
         Long remainingCandidates,    // nullable
         ApiQuestion question,        // nullable
         String guessUri,             // nullable
-        String guessLabel            // nullable
+        String guessLabel,           // nullable
+        Integer step                 // nullable; send back with the next answer
 ) {}
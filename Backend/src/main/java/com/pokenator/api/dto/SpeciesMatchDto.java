@@ -0,0 +1,7 @@
+// SpeciesMatchDto.java
+package com.pokenator.api.dto;
+/**
+ * Uma espécie encontrada pela busca por nome. {@code label} é o rótulo em inglês;
+ * {@code matched} é o rótulo (em qualquer idioma) que casou com a consulta.
+ */
+public record SpeciesMatchDto(String uri, String label, String matched) {}
@@ -0,0 +1,7 @@
+// SpeciesSearchResponse.java
+package com.pokenator.api.dto;
+import java.util.List;
+/**
+ * Resultado do autocomplete de espécies, melhores correspondências primeiro.
+ */
+public record SpeciesSearchResponse(String query, List<SpeciesMatchDto> matches) {}
@@ -1,47 +1,251 @@
 package com.pokenator.config;
 
+import com.pokenator.akinator.service.EndgameSolver;
 import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
 import com.pokenator.akinator.service.QuestionSelector;
+import com.pokenator.akinator.service.ScoringEngine;
+import com.pokenator.akinator.service.WarmUp;
+import com.pokenator.akinator.session.SessionJournal;
 import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.analytics.GameAnalytics;
+import com.pokenator.api.CandidatePageCache;
+import com.pokenator.index.CooccurrenceMatrix;
+import com.pokenator.index.NumericColumns;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.index.SpeciesIndexBuilder;
+import com.pokenator.index.SpeciesNameIndex;
 import com.pokenator.rdf.InMemoryDatasetProvider;
-import com.pokenator.rdf.RdfLoader;
+import com.pokenator.rdf.SnapshotDatasetProvider;
 import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.CoalescingSparqlClient;
 import com.pokenator.sparql.JenaSparqlClient;
+import com.pokenator.sparql.RemoteSparqlClient;
 import com.pokenator.sparql.SparqlClient;
+import com.pokenator.stats.KgProfiler;
+import com.pokenator.stats.StatisticsCatalog;
 import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
 @Configuration
 public class AppBeans {
 
+    private static final Logger log = LoggerFactory.getLogger(AppBeans.class);
+
+    /** {@code pokenator.snapshot.path} unset: {@link PokemonKgConfig#SNAPSHOT_PATH}. */
+    @Bean
+    public SnapshotDatasetProvider datasetProvider(
+            @Value("${pokenator.snapshot.path:}") String snapshotPath
+    ) {
+        return new SnapshotDatasetProvider(
+                PokemonKgConfig.ONTOLOGY_PATH,
+                PokemonKgConfig.DATASET_PATH,
+                Path.of(orDefault(snapshotPath, PokemonKgConfig.SNAPSHOT_PATH)));
+    }
+
+    private static String orDefault(String configured, String fallback) {
+        return configured.isBlank() ? fallback : configured;
+    }
+
+    /** With a remote endpoint the graph is not loaded: queries go to the endpoint and the dataset stays empty. */
+    @Bean
+    public Dataset dataset(
+            SnapshotDatasetProvider datasetProvider,
+            @Value("${pokenator.sparql.endpoint:}") String endpoint
+    ) {
+        if (!endpoint.isBlank()) return new InMemoryDatasetProvider().getDataset();
+        return datasetProvider.getDataset();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CoalescingSparqlClient sparqlClient(
+            @Value("${pokenator.sparql.endpoint:}") String endpoint,
+            @Value("${pokenator.sparql.timeout-ms:20000}") long timeoutMillis,
+            @Value("${pokenator.sparql.max-connections:32}") int maxConnections,
+            @Value("${pokenator.sparql.cache-entries:10000}") int cacheEntries,
+            @Value("${pokenator.sparql.cache-ttl-seconds:300}") long cacheTtlSeconds
+    ) {
+        if (endpoint.isBlank()) {
+            return new CoalescingSparqlClient(new JenaSparqlClient(timeoutMillis));
+        }
+        log.info("Querying remote SPARQL endpoint {} ({} connections, cache {} entries / {} s)",
+                endpoint, maxConnections, cacheEntries, cacheTtlSeconds);
+        return new CoalescingSparqlClient(new RemoteSparqlClient(
+                endpoint, timeoutMillis, maxConnections, cacheEntries, cacheTtlSeconds * 1000));
+    }
+
+    /** One scan of the species graph at startup: question families and value selectivities. */
+    @Bean
+    public StatisticsCatalog statisticsCatalog(Dataset dataset, SparqlClient sparqlClient) {
+        return new KgProfiler(sparqlClient).profile(dataset);
+    }
+
+    @Bean
+    public SpeciesRepository speciesRepository(
+            SparqlClient sparqlClient,
+            Dataset dataset,
+            SnapshotDatasetProvider datasetProvider,
+            StatisticsCatalog statisticsCatalog,
+            @Value("${pokenator.index.path:}") String indexPath,
+            @Value("${pokenator.sparql.endpoint:}") String endpoint,
+            @Value("${pokenator.sparql.dataset-version:0}") long datasetVersion,
+            @Value("${pokenator.numeric.exclude:https://pokemonkg.org/ontology#entryNumber}") List<String> numericExcluded
+    ) {
+        long checksum = indexChecksum(datasetProvider, endpoint, datasetVersion);
+        SpeciesIndex index = new SpeciesIndexBuilder(sparqlClient)
+                .openOrBuildQuietly(dataset, checksum, Path.of(orDefault(indexPath, PokemonKgConfig.INDEX_PATH)));
+        NumericColumns numeric = NumericColumns.load(
+                dataset, sparqlClient, index, statisticsCatalog.speciesCount(), numericExcluded);
+        return new SpeciesRepository(sparqlClient, index, statisticsCatalog, numeric);
+    }
+
+    /**
+     * What a stored index must match to be reused: the local RDF sources, or for a remote endpoint its URL and the
+     * configured dataset version (bump it when the store's data changes), hashed together with 64-bit FNV-1a.
+     * Also the dataset version in ETags.
+     */
+    private static long indexChecksum(SnapshotDatasetProvider datasetProvider, String endpoint, long datasetVersion) {
+        if (endpoint.isBlank()) return datasetProvider.sourceChecksum();
+
+        long h = 0xcbf29ce484222325L;
+        for (byte b : endpoint.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        for (int i = 0; i < Long.BYTES; i++) {
+            h ^= (datasetVersion >>> (8 * i)) & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** Serialized candidate pages shared by sessions in the same state, tagged with the dataset version. */
+    @Bean
+    public CandidatePageCache candidatePageCache(
+            SnapshotDatasetProvider datasetProvider,
+            @Value("${pokenator.sparql.endpoint:}") String endpoint,
+            @Value("${pokenator.sparql.dataset-version:0}") long datasetVersion,
+            @Value("${pokenator.http.candidate-cache-mb:32}") long maxMb
+    ) {
+        return new CandidatePageCache(indexChecksum(datasetProvider, endpoint, datasetVersion), maxMb << 20);
+    }
+
+    /** Autocomplete over every species label, built once at startup. */
     @Bean
-    public Dataset dataset() {
-        Dataset dataset = new InMemoryDatasetProvider().getDataset();
-        RdfLoader loader = new RdfLoader();
-        loader.loadOntology(dataset, PokemonKgConfig.ONTOLOGY_PATH);
-        loader.loadDataset(dataset, PokemonKgConfig.DATASET_PATH);
-        return dataset;
+    public SpeciesNameIndex speciesNameIndex(Dataset dataset, SparqlClient sparqlClient) {
+        return SpeciesNameIndex.build(dataset, sparqlClient);
+    }
+
+    /** Off by default; {@code pokenator.journal.enabled=true} keeps in-progress games across restarts. */
+    @Bean(destroyMethod = "close")
+    public SessionJournal sessionJournal(
+            @Value("${pokenator.journal.enabled:false}") boolean enabled,
+            @Value("${pokenator.journal.dir:${java.io.tmpdir}/pokenator/journal}") String dir,
+            @Value("${pokenator.journal.segment-mb:64}") long segmentMb,
+            @Value("${pokenator.journal.flush-ms:5}") long flushMillis,
+            @Value("${pokenator.journal.compact-seconds:300}") long compactSeconds,
+            @Value("${pokenator.journal.queue:65536}") int queueCapacity
+    ) {
+        if (!enabled) return SessionJournal.disabled();
+        return new SessionJournal(Path.of(dir), segmentMb << 20, flushMillis, compactSeconds * 1000, queueCapacity);
+    }
+
+    /** Sessions idle for {@code pokenator.sessions.spill-after-seconds} move off-heap (0 keeps all on-heap). */
+    @Bean(destroyMethod = "close")
+    public SessionManager sessionManager(
+            SessionJournal sessionJournal,
+            SpeciesRepository speciesRepository,
+            @Value("${pokenator.sessions.spill-after-seconds:120}") long spillAfterSeconds,
+            @Value("${pokenator.sessions.arena-chunk-mb:4}") int arenaChunkMb,
+            @Value("${pokenator.sessions.arena-max-mb:256}") int arenaMaxMb
+    ) {
+        SessionManager sessions = new SessionManager(sessionJournal, speciesRepository.index(),
+                spillAfterSeconds * 1000, arenaChunkMb << 20, Math.max(1, arenaMaxMb / arenaChunkMb));
+        sessions.restore(sessionJournal.replay(speciesRepository.index()));
+        sessionJournal.start(sessions);
+        return sessions;
     }
 
     @Bean
-    public SparqlClient sparqlClient() {
-        return new JenaSparqlClient(20000L);
+    public QuestionCatalog questionCatalog(
+            Dataset dataset,
+            SparqlClient sparqlClient,
+            SpeciesRepository speciesRepository,
+            StatisticsCatalog statisticsCatalog,
+            @Value("${pokenator.catalog.languages:en,pt}") List<String> languages
+    ) {
+        return QuestionCatalog.build(dataset, sparqlClient, speciesRepository.index(), statisticsCatalog.families(), languages);
     }
 
+    /** {@code pokenator.engine=scoring} replaces hard constraints with error-tolerant scores (needs the index). */
     @Bean
-    public SpeciesRepository speciesRepository(SparqlClient sparqlClient) {
-        return new SpeciesRepository(sparqlClient);
+    public ScoringEngine scoringEngine(
+            SpeciesRepository speciesRepository,
+            @Value("${pokenator.engine:constraints}") String engine,
+            @Value("${pokenator.scoring.error-probability:0.05}") double errorProbability,
+            @Value("${pokenator.scoring.guess-probability:0.9}") double guessProbability
+    ) {
+        if (!"scoring".equalsIgnoreCase(engine)) {
+            return ScoringEngine.disabled();
+        }
+        if (speciesRepository.index() == null) {
+            log.warn("pokenator.engine=scoring needs the species index, which is unavailable; using constraints");
+            return ScoringEngine.disabled();
+        }
+        return new ScoringEngine(speciesRepository.index(), errorProbability, guessProbability);
     }
 
+    /** Confirmed guesses and answer frequencies, snapshotted to {@code pokenator.analytics.path}. */
+    @Bean(destroyMethod = "close")
+    public GameAnalytics gameAnalytics(
+            SpeciesRepository speciesRepository,
+            @Value("${pokenator.analytics.path:${java.io.tmpdir}/pokenator/analytics.tsv}") String path,
+            @Value("${pokenator.analytics.snapshot-seconds:60}") long snapshotSeconds
+    ) {
+        return GameAnalytics.open(speciesRepository.index(), Path.of(path), snapshotSeconds * 1000);
+    }
+
+    /**
+     * {@code pokenator.selector=lookahead} ranks questions two steps ahead with a co-occurrence matrix built here
+     * (needs the index and the constraints engine; at most {@code pokenator.lookahead.max-mb}).
+     */
     @Bean
-    public SessionManager sessionManager() {
-        return new SessionManager();
+    public QuestionSelector questionSelector(
+            SpeciesRepository speciesRepository,
+            QuestionCatalog questionCatalog,
+            ScoringEngine scoringEngine,
+            GameAnalytics gameAnalytics,
+            @Value("${pokenator.selector:greedy}") String selector,
+            @Value("${pokenator.lookahead.max-mb:64}") long lookaheadMaxMb
+    ) {
+        CooccurrenceMatrix cooccurrence = null;
+        if ("lookahead".equalsIgnoreCase(selector)) {
+            if (speciesRepository.index() == null || scoringEngine.enabled()) {
+                log.warn("pokenator.selector=lookahead needs the species index and pokenator.engine=constraints; "
+                        + "using greedy selection");
+            } else {
+                cooccurrence = CooccurrenceMatrix.build(speciesRepository.index(), lookaheadMaxMb << 20);
+            }
+        }
+        return new QuestionSelector(speciesRepository, questionCatalog, scoringEngine, gameAnalytics, cooccurrence);
     }
 
+    /** Candidate count at which the game switches to the exact in-memory endgame (0 disables it). */
     @Bean
-    public QuestionSelector questionSelector(SpeciesRepository speciesRepository) {
-        return new QuestionSelector(speciesRepository);
+    public EndgameSolver endgameSolver(
+            SpeciesRepository speciesRepository,
+            QuestionCatalog questionCatalog,
+            @Value("${pokenator.endgame.threshold:8}") int threshold
+    ) {
+        return new EndgameSolver(speciesRepository, questionCatalog, threshold);
     }
 
     @Bean
@@ -49,8 +253,25 @@ public class AppBeans {
             Dataset dataset,
             SessionManager sessionManager,
             SpeciesRepository speciesRepository,
-            QuestionSelector questionSelector
+            QuestionSelector questionSelector,
+            ScoringEngine scoringEngine,
+            EndgameSolver endgameSolver,
+            GameAnalytics gameAnalytics
+    ) {
+        return new GameService(dataset, sessionManager, speciesRepository, questionSelector, scoringEngine,
+                endgameSolver, gameAnalytics);
+    }
+
+    /** Synthetic games played in the background after startup; {@code /api/ready} waits for them. */
+    @Bean(initMethod = "start")
+    public WarmUp warmUp(
+            Dataset dataset,
+            GameService gameService,
+            SessionManager sessionManager,
+            SpeciesRepository speciesRepository,
+            @Value("${pokenator.warmup.games:200}") int games,
+            @Value("${pokenator.warmup.seed:42}") long seed
     ) {
-        return new GameService(dataset, sessionManager, speciesRepository, questionSelector);
+        return new WarmUp(dataset, gameService, sessionManager, speciesRepository, games, seed);
     }
 }
@@ -12,4 +12,11 @@ public final class PokemonKgConfig {
 
     public static final String DATASET_PATH =
             "pokemonkg/dataset/poke-a.nq";
+
+    // Defaults of pokenator.snapshot.path / pokenator.index.path (AppBeans), also used by App and the benchmarks
+    public static final String SNAPSHOT_PATH =
+            System.getProperty("java.io.tmpdir") + "/pokenator/dataset.snapshot";
+
+    public static final String INDEX_PATH =
+            System.getProperty("java.io.tmpdir") + "/pokenator/species.index";
 }
@@ -0,0 +1,37 @@
+package com.pokenator.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
+import com.pokenator.api.GameSocketHandler;
+import com.pokenator.repository.SpeciesRepository;
+import org.apache.jena.query.Dataset;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/** Canal WebSocket do jogo em {@code /api/game/ws} (ver {@link GameSocketHandler}). */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final GameSocketHandler gameSocketHandler;
+
+    public WebSocketConfig(GameService gameService,
+                           SpeciesRepository speciesRepository,
+                           Dataset dataset,
+                           ObjectMapper objectMapper,
+                           QuestionCatalog questionCatalog,
+                           @Value("${pokenator.request.budget-ms:3000}") long budgetMillis,
+                           @Value("${pokenator.ws.speculation-threads:2}") int speculationThreads) {
+        this.gameSocketHandler = new GameSocketHandler(gameService, speciesRepository, dataset, objectMapper,
+                questionCatalog, budgetMillis, speculationThreads);
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(gameSocketHandler, "/api/game/ws");
+    }
+}
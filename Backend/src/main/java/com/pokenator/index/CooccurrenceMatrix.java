@@ -0,0 +1,111 @@
+package com.pokenator.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Number of species having both values, for every pair of values of a {@link SpeciesIndex}, computed once at
+ * startup. Lets the question selector settle, without a bitset pass, the follow-up pairs whose overlap within
+ * the candidates follows from the global counts: values no species has together, or one nested in the other.
+ *
+ * <p>Symmetric, so only the upper triangle (diagonal included: the value's cardinality) is stored, row by row,
+ * in one {@code char[]} of {@code n(n+1)/2} entries (species counts fit in 16 bits; an index with more species
+ * than that is not supported). Built from the per-species value lists, so the cost is the sum over species of
+ * the squared number of values they have, not {@code n²} bitset intersections.
+ */
+public final class CooccurrenceMatrix {
+
+    private static final Logger log = LoggerFactory.getLogger(CooccurrenceMatrix.class);
+
+    private final int valueCount;
+    private final int speciesCount;
+    private final long[] rowStart; // entry of (i, i)
+    private final char[] counts;
+
+    private CooccurrenceMatrix(int valueCount, int speciesCount, long[] rowStart, char[] counts) {
+        this.valueCount = valueCount;
+        this.speciesCount = speciesCount;
+        this.rowStart = rowStart;
+        this.counts = counts;
+    }
+
+    /**
+     * Counts every pair over the index. Returns null (and logs why) when the matrix would take more than
+     * {@code maxBytes} or the index has more species than an entry can count.
+     */
+    public static CooccurrenceMatrix build(SpeciesIndex index, long maxBytes) {
+        int n = index.valueCount();
+        long entries = (long) n * (n + 1) / 2;
+        if (index.speciesCount() > Character.MAX_VALUE) {
+            log.warn("Co-occurrence matrix not built: {} species exceed 16-bit counts", index.speciesCount());
+            return null;
+        }
+        if (entries * Character.BYTES > maxBytes || entries > Integer.MAX_VALUE - 8) {
+            log.warn("Co-occurrence matrix not built: {} values need {} MB (limit {} MB)",
+                    n, (entries * Character.BYTES) >> 20, maxBytes >> 20);
+            return null;
+        }
+
+        long t0 = System.nanoTime();
+        int[][] valuesOf = valuesBySpecies(index);
+
+        long[] rowStart = new long[n];
+        for (int i = 1; i < n; i++) {
+            rowStart[i] = rowStart[i - 1] + (n - (i - 1));
+        }
+
+        char[] counts = new char[(int) entries];
+        for (int[] values : valuesOf) {
+            // Value ids ascending, so (values[a], values[b]) with a <= b is always in the upper triangle
+            for (int a = 0; a < values.length; a++) {
+                int base = (int) (rowStart[values[a]] - values[a]);
+                for (int b = a; b < values.length; b++) {
+                    counts[base + values[b]]++;
+                }
+            }
+        }
+
+        log.info("Co-occurrence matrix: {} values, {} KB, built in {} ms",
+                n, (entries * Character.BYTES) >> 10, (System.nanoTime() - t0) / 1_000_000);
+        return new CooccurrenceMatrix(n, index.speciesCount(), rowStart, counts);
+    }
+
+    /** Ascending value ids of each species, by ordinal. */
+    private static int[][] valuesBySpecies(SpeciesIndex index) {
+        int species = index.speciesCount();
+        int[][] out = new int[species][];
+        int[] sizes = new int[species];
+        for (int s = 0; s < species; s++) out[s] = new int[8];
+
+        long[] bits = new long[index.wordsPerSet()];
+        for (int v = 0; v < index.valueCount(); v++) {
+            index.copyBits(v, bits);
+            for (int s = SpeciesIndex.nextSpecies(bits, 0); s >= 0; s = SpeciesIndex.nextSpecies(bits, s + 1)) {
+                if (sizes[s] == out[s].length) out[s] = Arrays.copyOf(out[s], sizes[s] * 2);
+                out[s][sizes[s]++] = v;
+            }
+        }
+        for (int s = 0; s < species; s++) out[s] = Arrays.copyOf(out[s], sizes[s]);
+        return out;
+    }
+
+    public int valueCount() { return valueCount; }
+
+    public int speciesCount() { return speciesCount; }
+
+    /** Species having both values (the cardinality when {@code a == b}). */
+    public int count(int a, int b) {
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        return counts[(int) (rowStart[a] + (b - a))];
+    }
+
+    public long bytes() {
+        return (long) counts.length * Character.BYTES + (long) rowStart.length * Long.BYTES;
+    }
+}
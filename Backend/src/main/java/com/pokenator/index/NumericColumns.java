@@ -0,0 +1,253 @@
+package com.pokenator.index;
+
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.sparql.Prefixes;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numeric species attributes (weight, height, base stats... whatever the dataset has) loaded once into primitive
+ * columns, so "value &gt; threshold" questions are evaluated in memory instead of with SPARQL {@code FILTER}
+ * comparisons.
+ *
+ * <p>Each attribute keeps its values sorted ascending with the parallel species URIs (a threshold selects a
+ * suffix by binary search), and, when a {@link SpeciesIndex} is present, the same values by species ordinal
+ * ({@code NaN} when missing) to filter and rank candidate bitsets.
+ *
+ * <p>Values are numeric literals on the species ({@code ?s ?p 12.5}) or one hop away through
+ * {@code schema:value} ({@code ?s ?p [ schema:value 12.5 ]}); a species with several values keeps the smallest.
+ */
+public final class NumericColumns {
+
+    private static final Logger log = LoggerFactory.getLogger(NumericColumns.class);
+
+    private static final String SCHEMA_VALUE = "http://schema.org/value";
+
+    /** Attributes present on fewer species than this fraction are not loaded. */
+    static final double MIN_COVERAGE = 0.5;
+
+    private final String[] predicates;
+    private final double[][] sortedValues;   // per attribute, ascending
+    private final String[][] sortedSpecies;  // parallel to sortedValues
+    private final double[][] byOrdinal;      // per attribute, by index ordinal; null without index
+
+    private NumericColumns(String[] predicates, double[][] sortedValues, String[][] sortedSpecies, double[][] byOrdinal) {
+        this.predicates = predicates;
+        this.sortedValues = sortedValues;
+        this.sortedSpecies = sortedSpecies;
+        this.byOrdinal = byOrdinal;
+    }
+
+    public static NumericColumns empty() {
+        return new NumericColumns(new String[0], new double[0][], new String[0][], null);
+    }
+
+    /**
+     * Scans numeric species attributes. {@code speciesCount} is the total used for the coverage threshold;
+     * {@code excluded} predicates (identifiers such as Pokédex numbers) are skipped.
+     */
+    public static NumericColumns load(
+            Dataset dataset,
+            SparqlClient sparql,
+            SpeciesIndex index,
+            long speciesCount,
+            Collection<String> excluded
+    ) {
+        String q = Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                "SELECT ?s ?p (MIN(?v) AS ?x)\n" +
+                "WHERE {\n" +
+                "  GRAPH ?g {\n" +
+                "    ?s a pokemon:Species .\n" +
+                "    { ?s ?p ?v . }\n" +
+                "    UNION\n" +
+                "    { ?s ?p ?q . ?q <" + SCHEMA_VALUE + "> ?v . }\n" +
+                "    FILTER(isNumeric(?v))\n" +
+                "  }\n" +
+                "}\n" +
+                "GROUP BY ?s ?p";
+
+        Map<String, Map<String, Double>> byPredicate = new LinkedHashMap<>();
+        sparql.selectEach(dataset, q, r -> {
+            String p = r.getResource("p").getURI();
+            if (excluded.contains(p)) return;
+            byPredicate.computeIfAbsent(p, k -> new LinkedHashMap<>())
+                    .put(r.getResource("s").getURI(), r.getLiteral("x").getDouble());
+        });
+
+        List<String> predicates = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        List<String[]> species = new ArrayList<>();
+        List<double[]> ordinals = new ArrayList<>();
+
+        for (var e : byPredicate.entrySet()) {
+            Map<String, Double> column = e.getValue();
+            if (speciesCount > 0 && column.size() < MIN_COVERAGE * speciesCount) continue;
+
+            // Sort species by value once; the arrays are the column
+            String[] uris = column.keySet().toArray(new String[0]);
+            Arrays.sort(uris, (a, b) -> Double.compare(column.get(a), column.get(b)));
+            double[] sorted = new double[uris.length];
+            for (int i = 0; i < uris.length; i++) sorted[i] = column.get(uris[i]);
+
+            predicates.add(e.getKey());
+            values.add(sorted);
+            species.add(uris);
+
+            if (index != null) {
+                double[] byOrd = new double[index.speciesCount()];
+                Arrays.fill(byOrd, Double.NaN);
+                for (int i = 0; i < uris.length; i++) {
+                    int ord = index.speciesOrdinal(uris[i]);
+                    if (ord >= 0) byOrd[ord] = sorted[i];
+                }
+                ordinals.add(byOrd);
+            }
+        }
+
+        log.info("Loaded {} numeric attributes: {}", predicates.size(), predicates);
+
+        return new NumericColumns(
+                predicates.toArray(new String[0]),
+                values.toArray(new double[0][]),
+                species.toArray(new String[0][]),
+                index == null ? null : ordinals.toArray(new double[0][])
+        );
+    }
+
+    // =========================================================
+    // LOOKUP
+    // =========================================================
+
+    public int attributeCount() { return predicates.length; }
+
+    public String predicateUri(int attribute) { return predicates[attribute]; }
+
+    /** Attribute id of the predicate, or -1. */
+    public int attribute(String predicateUri) {
+        for (int a = 0; a < predicates.length; a++) {
+            if (predicates[a].equals(predicateUri)) return a;
+        }
+        return -1;
+    }
+
+    /** Whether candidate bitsets can be filtered and ranked (an index was available at load). */
+    public boolean indexed() { return byOrdinal != null; }
+
+    /** Species whose value is strictly greater than {@code threshold}, over the whole dataset. */
+    public List<String> speciesAbove(int attribute, double threshold) {
+        double[] sorted = sortedValues[attribute];
+        int from = upperBound(sorted, threshold);
+        return Arrays.asList(sortedSpecies[attribute]).subList(from, sorted.length);
+    }
+
+    /** Smallest i with sorted[i] > threshold. */
+    private static int upperBound(double[] sorted, double threshold) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= threshold) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // =========================================================
+    // CANDIDATE SETS (index ordinals)
+    // =========================================================
+
+    /** Keeps species with value &gt; threshold (species without a value are dropped). */
+    public void and(long[] set, int attribute, double threshold) {
+        filter(set, byOrdinal[attribute], threshold, true);
+    }
+
+    /** Drops species with value &gt; threshold (species without a value are kept). */
+    public void andNot(long[] set, int attribute, double threshold) {
+        filter(set, byOrdinal[attribute], threshold, false);
+    }
+
+    private static void filter(long[] set, double[] values, double threshold, boolean keepAbove) {
+        for (int w = 0; w < set.length; w++) {
+            long word = set[w];
+            long bits = word;
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if ((values[i] > threshold) != keepAbove) word &= ~(1L << i);
+            }
+            set[w] = word;
+        }
+    }
+
+    /**
+     * Lower median of the attribute over the candidates that have it, using {@code scratch} (at least
+     * speciesCount entries) for a quickselect. Returns NaN when fewer than two candidates have a value.
+     */
+    public double median(long[] set, int attribute, double[] scratch) {
+        double[] values = byOrdinal[attribute];
+        int n = 0;
+        for (int s = SpeciesIndex.nextSpecies(set, 0); s >= 0; s = SpeciesIndex.nextSpecies(set, s + 1)) {
+            double v = values[s];
+            if (!Double.isNaN(v)) scratch[n++] = v;
+        }
+        if (n < 2) return Double.NaN;
+        return select(scratch, 0, n - 1, (n - 1) / 2);
+    }
+
+    /** Candidates with value &gt; threshold. */
+    public int countAbove(long[] set, int attribute, double threshold) {
+        double[] values = byOrdinal[attribute];
+        int n = 0;
+        for (int s = SpeciesIndex.nextSpecies(set, 0); s >= 0; s = SpeciesIndex.nextSpecies(set, s + 1)) {
+            if (values[s] > threshold) n++;
+        }
+        return n;
+    }
+
+    /** k-th smallest of a[lo..hi] (Hoare quickselect, middle pivot); reorders the range. */
+    private static double select(double[] a, int lo, int hi, int k) {
+        while (lo < hi) {
+            double pivot = a[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) {
+                    double t = a[i];
+                    a[i] = a[j];
+                    a[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return a[k];
+        }
+        return a[lo];
+    }
+
+    // =========================================================
+    // THRESHOLD ENCODING
+    // =========================================================
+
+    /** Threshold as carried in a question/constraint object: "50" rather than "50.0". */
+    public static String format(double threshold) {
+        if (threshold == Math.rint(threshold) && Math.abs(threshold) < 1e15) {
+            return Long.toString((long) threshold);
+        }
+        return Double.toString(threshold);
+    }
+
+    public static double parse(String threshold) {
+        return Double.parseDouble(threshold);
+    }
+}
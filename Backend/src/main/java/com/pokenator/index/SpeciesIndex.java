@@ -0,0 +1,285 @@
+package com.pokenator.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only species × value membership index living in a memory-mapped file (off-heap, shared through the
+ * page cache by every JVM that maps the same file).
+ *
+ * <p>Species are numbered by ordinal in URI byte order. A "value" is a (predicate, object) pair; values are
+ * sorted by predicate then object so all values of one predicate form a contiguous id range. Each value owns
+ * a bitset of {@link #wordsPerSet()} longs with one bit per species. Candidate sets are plain {@code long[]}
+ * of the same width, combined with the mapped bitsets by {@link #and}, {@link #andNot} and {@link #countAnd}.
+ *
+ * <pre>
+ * header (HEADER_SIZE bytes): magic, version, checksum, speciesCount, wordsPerSet, valueCount, section offsets
+ * int[speciesCount + 1]  species URI offsets     | species URI bytes (UTF-8)
+ * int[valueCount + 1]    value key offsets       | value key bytes (predicate UTF-8, 0x00, object UTF-8)
+ * int[valueCount]        predicate byte length of each key
+ * int[valueCount]        cardinality (species having the value)
+ * long[valueCount × wordsPerSet] membership bitsets (8-byte aligned)
+ * </pre>
+ */
+public final class SpeciesIndex {
+
+    static final int MAGIC = 0x504B4958; // "PKIX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 96;
+
+    private final int speciesCount;
+    private final int wordsPerSet;
+    private final int valueCount;
+
+    private final IntBuffer speciesOffsets;
+    private final ByteBuffer speciesBlob;
+    private final IntBuffer keyOffsets;
+    private final ByteBuffer keyBlob;
+    private final IntBuffer predicateLengths;
+    private final IntBuffer cardinalities;
+    private final LongBuffer bits;
+
+    private SpeciesIndex(MappedByteBuffer buf) {
+        this.speciesCount = buf.getInt(16);
+        this.wordsPerSet = buf.getInt(20);
+        this.valueCount = buf.getInt(24);
+
+        this.speciesOffsets = section(buf, 32, 40).asIntBuffer();
+        this.speciesBlob = section(buf, 40, 48);
+        this.keyOffsets = section(buf, 48, 56).asIntBuffer();
+        this.keyBlob = section(buf, 56, 64);
+        this.predicateLengths = section(buf, 64, 72).asIntBuffer();
+        this.cardinalities = section(buf, 72, 80).asIntBuffer();
+        this.bits = section(buf, 80, 88).asLongBuffer();
+    }
+
+    /**
+     * Maps the index file. Returns null when the file is missing, malformed or was built from sources
+     * with a different checksum.
+     */
+    public static SpeciesIndex open(Path file, long expectedChecksum) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_SIZE) return null;
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) return null;
+            if (buf.getLong(8) != expectedChecksum) return null;
+            if (buf.getLong(88) != ch.size()) return null;
+
+            return new SpeciesIndex(buf);
+        }
+    }
+
+    private static ByteBuffer section(MappedByteBuffer buf, int startField, int endField) {
+        int start = (int) buf.getLong(startField);
+        int end = (int) buf.getLong(endField);
+        return buf.slice(start, end - start);
+    }
+
+    // =========================================================
+    // SPECIES
+    // =========================================================
+
+    public int speciesCount() { return speciesCount; }
+
+    public int wordsPerSet() { return wordsPerSet; }
+
+    public String speciesUri(int ordinal) {
+        return decode(speciesBlob, speciesOffsets.get(ordinal), speciesOffsets.get(ordinal + 1));
+    }
+
+    /** Ordinal of the species with this URI, or -1. */
+    public int speciesOrdinal(String uri) {
+        byte[] key = uri.getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = speciesCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(speciesBlob, speciesOffsets.get(mid), speciesOffsets.get(mid + 1), key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /** First ordinal whose URI sorts after {@code uri} in the index's byte order (speciesCount when none). */
+    public int speciesAfter(String uri) {
+        byte[] key = uri.getBytes(StandardCharsets.UTF_8);
+        int lo = 0, hi = speciesCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(speciesBlob, speciesOffsets.get(mid), speciesOffsets.get(mid + 1), key) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // =========================================================
+    // VALUES
+    // =========================================================
+
+    public int valueCount() { return valueCount; }
+
+    /** Id of the (predicate, object) value, or -1 when no species has it. */
+    public int valueId(String predicateUri, String objectUri) {
+        byte[] key = valueKey(predicateUri, objectUri);
+        int idx = lowerBound(key);
+        if (idx < valueCount && compare(keyBlob, keyOffsets.get(idx), keyOffsets.get(idx + 1), key) == 0) {
+            return idx;
+        }
+        return -1;
+    }
+
+    /** Contiguous id range [from, to) of all values of a predicate (empty when unknown). */
+    public ValueRange valuesOf(String predicateUri) {
+        byte[] prefix = (predicateUri + '\u0000').getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(prefix);
+
+        // 0x01 sorts right after the 0x00 separator, so this bounds every key with that predicate
+        prefix[prefix.length - 1] = 1;
+        int to = lowerBound(prefix);
+        return new ValueRange(from, to);
+    }
+
+    public String predicateUri(int valueId) {
+        int start = keyOffsets.get(valueId);
+        return decode(keyBlob, start, start + predicateLengths.get(valueId));
+    }
+
+    public String valueUri(int valueId) {
+        int start = keyOffsets.get(valueId) + predicateLengths.get(valueId) + 1;
+        return decode(keyBlob, start, keyOffsets.get(valueId + 1));
+    }
+
+    /** Number of species (over the whole index) having this value. */
+    public int cardinality(int valueId) {
+        return cardinalities.get(valueId);
+    }
+
+    // =========================================================
+    // CANDIDATE SETS
+    // =========================================================
+
+    /** A fresh candidate set containing every species. */
+    public long[] allSpecies() {
+        return fillAll(new long[wordsPerSet]);
+    }
+
+    /** Resets a caller-owned candidate set to every species. */
+    public long[] fillAll(long[] set) {
+        int full = speciesCount >>> 6;
+        Arrays.fill(set, 0, full, -1L);
+        Arrays.fill(set, full, wordsPerSet, 0L);
+        int tail = speciesCount & 63;
+        if (tail != 0) set[full] = (1L << tail) - 1;
+        return set;
+    }
+
+    /** set &= members(value) */
+    public void and(long[] set, int valueId) {
+        int base = valueId * wordsPerSet;
+        for (int w = 0; w < wordsPerSet; w++) {
+            set[w] &= bits.get(base + w);
+        }
+    }
+
+    /** set &= ~members(value) */
+    public void andNot(long[] set, int valueId) {
+        int base = valueId * wordsPerSet;
+        for (int w = 0; w < wordsPerSet; w++) {
+            set[w] &= ~bits.get(base + w);
+        }
+    }
+
+    /** |set ∩ members(value)| without allocating. */
+    public int countAnd(long[] set, int valueId) {
+        int base = valueId * wordsPerSet;
+        int n = 0;
+        for (int w = 0; w < wordsPerSet; w++) {
+            n += Long.bitCount(set[w] & bits.get(base + w));
+        }
+        return n;
+    }
+
+    /** Copies the value's membership bitset into a caller-owned array of {@link #wordsPerSet()} longs. */
+    public long[] copyBits(int valueId, long[] into) {
+        bits.get(valueId * wordsPerSet, into, 0, wordsPerSet);
+        return into;
+    }
+
+    /** Whether a species has a value. */
+    public boolean has(int valueId, int speciesOrdinal) {
+        long word = bits.get(valueId * wordsPerSet + (speciesOrdinal >>> 6));
+        return (word & (1L << speciesOrdinal)) != 0;
+    }
+
+    public static int count(long[] set) {
+        int n = 0;
+        for (long w : set) n += Long.bitCount(w);
+        return n;
+    }
+
+    /** Next species ordinal in the set at or after {@code from}, or -1. */
+    public static int nextSpecies(long[] set, int from) {
+        int w = from >>> 6;
+        if (w >= set.length) return -1;
+
+        long word = set[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == set.length) return -1;
+            word = set[w];
+        }
+    }
+
+    // =========================================================
+    // INTERNAL HELPERS
+    // =========================================================
+
+    static byte[] valueKey(String predicateUri, String objectUri) {
+        return (predicateUri + '\u0000' + objectUri).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private int lowerBound(byte[] key) {
+        int lo = 0, hi = valueCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(keyBlob, keyOffsets.get(mid), keyOffsets.get(mid + 1), key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Unsigned lexicographic comparison of blob[start, end) against key. */
+    private static int compare(ByteBuffer blob, int start, int end, byte[] key) {
+        int len = end - start;
+        int n = Math.min(len, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Byte.compareUnsigned(blob.get(start + i), key[i]);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(len, key.length);
+    }
+
+    private static String decode(ByteBuffer blob, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        blob.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public record ValueRange(int from, int to) {
+        public boolean isEmpty() { return from >= to; }
+    }
+}
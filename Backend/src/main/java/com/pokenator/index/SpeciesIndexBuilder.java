@@ -0,0 +1,214 @@
+package com.pokenator.index;
+
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.sparql.Prefixes;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans the species graph once and writes a {@link SpeciesIndex} file.
+ *
+ * <p>Indexed values are every IRI object of a species triple, plus generations through the inverse
+ * {@code featuresSpecies} edge (keyed as (featuresSpecies, generation), the same way constraints encode it).
+ * Membership is the union over named graphs.
+ */
+public class SpeciesIndexBuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeciesIndexBuilder.class);
+
+    private static final String FEATURES_SPECIES = PokemonKgConfig.POKEMON_NS + "featuresSpecies";
+
+    private final SparqlClient sparql;
+
+    public SpeciesIndexBuilder(SparqlClient sparql) {
+        this.sparql = sparql;
+    }
+
+    /** Opens the index at {@code file} if it matches {@code checksum}, otherwise rebuilds it from the dataset. */
+    public SpeciesIndex openOrBuild(Dataset dataset, long checksum, Path file) throws IOException {
+        SpeciesIndex index = SpeciesIndex.open(file, checksum);
+        if (index != null) return index;
+
+        build(dataset, checksum, file);
+        return SpeciesIndex.open(file, checksum);
+    }
+
+    /** Same as {@link #openOrBuild}, but returns null (SPARQL-only mode) instead of failing the boot. */
+    public SpeciesIndex openOrBuildQuietly(Dataset dataset, long checksum, Path file) {
+        try {
+            return openOrBuild(dataset, checksum, file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Species index unavailable at {}, falling back to SPARQL: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    public void build(Dataset dataset, long checksum, Path file) throws IOException {
+
+        // 1) Species, ordered by URI bytes
+        List<byte[]> species = new ArrayList<>();
+        sparql.selectEach(dataset,
+                Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                        "SELECT DISTINCT ?s WHERE { GRAPH ?g { ?s a pokemon:Species . } }",
+                r -> species.add(r.getResource("s").getURI().getBytes(StandardCharsets.UTF_8)));
+        species.sort(Arrays::compareUnsigned);
+
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < species.size(); i++) {
+            ordinals.put(new String(species.get(i), StandardCharsets.UTF_8), i);
+        }
+
+        // 2) Direct (species -> IRI) and inverse generation edges
+        Map<String, BitSet> members = new HashMap<>();
+
+        sparql.selectEach(dataset,
+                Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                        "SELECT DISTINCT ?s ?p ?o\n" +
+                        "WHERE {\n" +
+                        "  GRAPH ?g {\n" +
+                        "    ?s a pokemon:Species .\n" +
+                        "    ?s ?p ?o .\n" +
+                        "    FILTER(isIRI(?o))\n" +
+                        "  }\n" +
+                        "}",
+                r -> mark(members, ordinals,
+                        r.getResource("p").getURI(), r.getResource("o").getURI(), r.getResource("s").getURI()));
+
+        sparql.selectEach(dataset,
+                Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                        "SELECT DISTINCT ?x ?s\n" +
+                        "WHERE {\n" +
+                        "  GRAPH ?g {\n" +
+                        "    ?s a pokemon:Species .\n" +
+                        "    ?x pokemon:featuresSpecies ?s .\n" +
+                        "    ?x a pokemon:Generation .\n" +
+                        "  }\n" +
+                        "}",
+                r -> mark(members, ordinals,
+                        FEATURES_SPECIES, r.getResource("x").getURI(), r.getResource("s").getURI()));
+
+        List<byte[]> keys = new ArrayList<>(members.size());
+        Map<byte[], BitSet> byKey = new HashMap<>();
+        for (var e : members.entrySet()) {
+            byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+            keys.add(key);
+            byKey.put(key, e.getValue());
+        }
+        keys.sort(Arrays::compareUnsigned);
+
+        write(file, checksum, species, keys, byKey);
+    }
+
+    private static void mark(Map<String, BitSet> members, Map<String, Integer> ordinals,
+                             String predicateUri, String objectUri, String speciesUri) {
+        Integer ordinal = ordinals.get(speciesUri);
+        if (ordinal == null) return;
+        members.computeIfAbsent(predicateUri + '\u0000' + objectUri, k -> new BitSet()).set(ordinal);
+    }
+
+    private static void write(Path file, long checksum, List<byte[]> species,
+                              List<byte[]> keys, Map<byte[], BitSet> byKey) throws IOException {
+
+        int speciesCount = species.size();
+        int wordsPerSet = Math.max(1, (speciesCount + 63) >>> 6);
+        int valueCount = keys.size();
+
+        long speciesBlobSize = species.stream().mapToLong(b -> b.length).sum();
+        long keyBlobSize = keys.stream().mapToLong(b -> b.length).sum();
+
+        long speciesOffsetsPos = SpeciesIndex.HEADER_SIZE;
+        long speciesBlobPos = speciesOffsetsPos + 4L * (speciesCount + 1);
+        long keyOffsetsPos = speciesBlobPos + speciesBlobSize;
+        long keyBlobPos = keyOffsetsPos + 4L * (valueCount + 1);
+        long predLenPos = keyBlobPos + keyBlobSize;
+        long cardinalityPos = predLenPos + 4L * valueCount;
+        long bitsPos = align8(cardinalityPos + 4L * valueCount);
+        long end = bitsPos + 8L * valueCount * wordsPerSet;
+
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException("Species index too large to map: " + end + " bytes");
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+
+        try (OutputStream fos = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+
+            out.writeInt(SpeciesIndex.MAGIC);
+            out.writeInt(SpeciesIndex.VERSION);
+            out.writeLong(checksum);
+            out.writeInt(speciesCount);
+            out.writeInt(wordsPerSet);
+            out.writeInt(valueCount);
+            out.writeInt(0);
+            out.writeLong(speciesOffsetsPos);
+            out.writeLong(speciesBlobPos);
+            out.writeLong(keyOffsetsPos);
+            out.writeLong(keyBlobPos);
+            out.writeLong(predLenPos);
+            out.writeLong(cardinalityPos);
+            out.writeLong(bitsPos);
+            out.writeLong(end);
+
+            writeOffsets(out, species);
+            for (byte[] s : species) out.write(s);
+
+            writeOffsets(out, keys);
+            for (byte[] k : keys) out.write(k);
+
+            for (byte[] k : keys) out.writeInt(indexOf(k, (byte) 0));
+            for (byte[] k : keys) out.writeInt(byKey.get(k).cardinality());
+
+            for (long p = cardinalityPos + 4L * valueCount; p < bitsPos; p++) out.writeByte(0);
+
+            for (byte[] k : keys) {
+                long[] words = Arrays.copyOf(byKey.get(k).toLongArray(), wordsPerSet);
+                for (long w : words) out.writeLong(w);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeOffsets(DataOutputStream out, List<byte[]> items) throws IOException {
+        int offset = 0;
+        out.writeInt(offset);
+        for (byte[] item : items) {
+            offset += item.length;
+            out.writeInt(offset);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte b) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == b) return i;
+        }
+        return bytes.length;
+    }
+
+    private static long align8(long pos) {
+        return (pos + 7) & ~7L;
+    }
+}
@@ -0,0 +1,185 @@
+package com.pokenator.index;
+
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.sparql.Prefixes;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Literal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Prefix search over every {@code rdfs:label} of every species, in all languages, built once at load time.
+ *
+ * <p>Each label is normalized (lower case, accents stripped) and indexed at its start and at the start of
+ * each later word, so "mime" finds "Mr. Mime". Keys live in one sorted {@code String[]} with a parallel
+ * {@code int[]} of species numbers; a query is a binary search for the first key with the prefix followed by
+ * a forward scan.
+ */
+public final class SpeciesNameIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SpeciesNameIndex.class);
+
+    /** Upper bound on keys of allowed species examined per query, so one-letter prefixes stay cheap. */
+    private static final int MAX_SCAN = 4096;
+
+    private final String[] species;        // species URIs
+    private final String[] displayLabels;  // English (or untagged, or first seen) label per species
+    private final String[] keys;           // sorted normalized keys
+    private final int[] keySpecies;        // species number per key
+    private final String[] keyLabels;      // original label each key came from
+    private final boolean[] keyAtStart;    // key is the whole label, not a later word
+
+    private SpeciesNameIndex(String[] species, String[] displayLabels,
+                             String[] keys, int[] keySpecies, String[] keyLabels, boolean[] keyAtStart) {
+        this.species = species;
+        this.displayLabels = displayLabels;
+        this.keys = keys;
+        this.keySpecies = keySpecies;
+        this.keyLabels = keyLabels;
+        this.keyAtStart = keyAtStart;
+    }
+
+    public static SpeciesNameIndex build(Dataset dataset, SparqlClient sparql) {
+        long t0 = System.nanoTime();
+
+        String q = Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                Prefixes.prefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#") +
+                "SELECT DISTINCT ?s ?l\n" +
+                "WHERE {\n" +
+                "  GRAPH ?g { ?s a pokemon:Species . }\n" +
+                "  GRAPH ?lg { ?s rdfs:label ?l . }\n" +
+                "}";
+
+        Map<String, Integer> numbers = new HashMap<>();
+        List<String> species = new ArrayList<>();
+        List<String> display = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>();
+
+        sparql.selectEach(dataset, q, r -> {
+            String uri = r.getResource("s").getURI();
+            Literal l = r.getLiteral("l");
+            String label = l.getString();
+
+            Integer n = numbers.get(uri);
+            if (n == null) {
+                n = species.size();
+                numbers.put(uri, n);
+                species.add(uri);
+                display.add(label);
+            }
+            String lang = l.getLanguage();
+            if (lang.isEmpty() || lang.toLowerCase(Locale.ROOT).startsWith("en")) {
+                display.set(n, label);
+            }
+
+            String key = normalize(label);
+            for (int i = 0; i < key.length(); i++) {
+                if (i == 0 || !Character.isLetterOrDigit(key.charAt(i - 1)) && Character.isLetterOrDigit(key.charAt(i))) {
+                    entries.add(new Entry(key.substring(i), n, label, i == 0));
+                }
+            }
+        });
+
+        entries.sort((a, b) -> a.key.compareTo(b.key));
+
+        int size = entries.size();
+        String[] keys = new String[size];
+        int[] keySpecies = new int[size];
+        String[] keyLabels = new String[size];
+        boolean[] keyAtStart = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Entry e = entries.get(i);
+            keys[i] = e.key;
+            keySpecies[i] = e.species;
+            keyLabels[i] = e.label;
+            keyAtStart[i] = e.atStart;
+        }
+
+        log.info("Species name index: {} species, {} keys in {} ms",
+                species.size(), size, (System.nanoTime() - t0) / 1_000_000);
+
+        return new SpeciesNameIndex(species.toArray(new String[0]), display.toArray(new String[0]),
+                keys, keySpecies, keyLabels, keyAtStart);
+    }
+
+    public int speciesCount() { return species.length; }
+
+    public int keyCount() { return keys.length; }
+
+    /**
+     * Up to {@code limit} species with a label (or a word of one) starting with {@code query}, whole-label
+     * matches first, then shorter labels. {@code allowed} restricts results by species URI (null = all).
+     */
+    public List<Match> search(String query, int limit, Predicate<String> allowed) {
+        String prefix = normalize(query == null ? "" : query.trim());
+        if (prefix.isEmpty() || limit <= 0) return List.of();
+
+        // Best-ranked key per species among the keys with the prefix; filtered species map to -1 and, like
+        // their keys, do not count towards the scan budget (a narrow session would otherwise find nothing)
+        Map<Integer, Integer> bestKey = new HashMap<>();
+        int scanned = 0;
+        for (int i = lowerBound(prefix); i < keys.length && scanned < MAX_SCAN && keys[i].startsWith(prefix); i++) {
+            int s = keySpecies[i];
+            Integer current = bestKey.get(s);
+            if (current == null && allowed != null && !allowed.test(species[s])) {
+                bestKey.put(s, -1);
+                continue;
+            }
+            if (current != null && current < 0) continue;
+            scanned++;
+            if (current == null || better(i, current)) bestKey.put(s, i);
+        }
+        bestKey.values().removeIf(i -> i < 0);
+
+        List<Integer> ranked = new ArrayList<>(bestKey.values());
+        ranked.sort((a, b) -> better(a, b) ? -1 : better(b, a) ? 1 : Integer.compare(a, b));
+
+        int found = Math.min(limit, ranked.size());
+        List<Match> out = new ArrayList<>(found);
+        for (int k = 0; k < found; k++) {
+            int i = ranked.get(k);
+            out.add(new Match(species[keySpecies[i]], displayLabels[keySpecies[i]], keyLabels[i]));
+        }
+        return out;
+    }
+
+    private boolean better(int a, int b) {
+        if (keyAtStart[a] != keyAtStart[b]) return keyAtStart[a];
+        return keyLabels[a].length() < keyLabels[b].length();
+    }
+
+    private int lowerBound(String prefix) {
+        int lo = 0, hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Lower case without diacritics: "Pokémon" and "pokemon" index the same. */
+    static String normalize(String s) {
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char ch = decomposed.charAt(i);
+            if (Character.getType(ch) != Character.NON_SPACING_MARK) sb.append(ch);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /** {@code label}: display label of the species; {@code matched}: the label the query matched. */
+    public record Match(String uri, String label, String matched) {}
+
+    private record Entry(String key, int species, String label, boolean atStart) {}
+}
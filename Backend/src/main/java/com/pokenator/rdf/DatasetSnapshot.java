@@ -0,0 +1,214 @@
+package com.pokenator.rdf;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.system.Txn;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary image of a whole {@link Dataset}: a dictionary of RDF terms followed by a table of quads
+ * encoded as term ids. Reading it back is a sequential scan of a memory-mapped file, with no RDF parsing.
+ *
+ * <pre>
+ * int magic, int version, long sourceChecksum
+ * int termCount, termCount × (byte kind, string value [, string lang|datatype])
+ * int quadCount, quadCount × (int g, int s, int p, int o)
+ * int magic                                   (end marker, detects truncated files)
+ * </pre>
+ * Strings are an int length followed by UTF-8 bytes.
+ */
+public final class DatasetSnapshot {
+
+    private static final int MAGIC = 0x504B534E; // "PKSN"
+    private static final int VERSION = 1;
+
+    private static final byte KIND_URI = 0;
+    private static final byte KIND_BLANK = 1;
+    private static final byte KIND_LITERAL_DT = 2;
+    private static final byte KIND_LITERAL_LANG = 3;
+
+    private DatasetSnapshot() {}
+
+    /** Writes the snapshot to a temporary file next to {@code target} and atomically moves it in place. */
+    public static void write(Dataset dataset, long sourceChecksum, Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+
+        try {
+            Txn.executeRead(dataset, () -> {
+                try (OutputStream fos = Files.newOutputStream(tmp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+                    writeBody(dataset.asDatasetGraph(), sourceChecksum, out);
+                } catch (IOException e) {
+                    throw new SnapshotException("Erro gravando snapshot " + target, e);
+                }
+            });
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SnapshotException e) {
+            Files.deleteIfExists(tmp);
+            throw (IOException) e.getCause();
+        }
+    }
+
+    /**
+     * Loads the snapshot into {@code dataset} if the file exists and was built from sources with
+     * {@code expectedChecksum}. Returns false (dataset untouched) when the snapshot is missing or stale.
+     */
+    public static boolean readInto(Path source, long expectedChecksum, Dataset dataset) throws IOException {
+        if (!Files.isRegularFile(source)) return false;
+
+        try (FileChannel ch = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (ch.size() < 16) return false;
+
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return false;
+            if (buf.getLong() != expectedChecksum) return false;
+
+            Node[] terms = new Node[buf.getInt()];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = readTerm(buf);
+            }
+
+            int quadCount = buf.getInt();
+            List<Quad> quads = new ArrayList<>(quadCount);
+            for (int i = 0; i < quadCount; i++) {
+                quads.add(Quad.create(terms[buf.getInt()], terms[buf.getInt()], terms[buf.getInt()], terms[buf.getInt()]));
+            }
+
+            if (buf.getInt() != MAGIC) return false;
+
+            Txn.executeWrite(dataset, () -> {
+                DatasetGraph dsg = dataset.asDatasetGraph();
+                for (Quad q : quads) {
+                    dsg.add(q);
+                }
+            });
+            return true;
+        } catch (java.nio.BufferUnderflowException | IndexOutOfBoundsException e) {
+            // Truncated or corrupt file: treat as stale
+            return false;
+        }
+    }
+
+    // =========================================================
+    // ENCODING
+    // =========================================================
+
+    private static void writeBody(DatasetGraph dsg, long sourceChecksum, DataOutputStream out) throws IOException {
+        Map<Node, Integer> ids = new HashMap<>();
+        List<Node> terms = new ArrayList<>();
+        List<int[]> quads = new ArrayList<>();
+
+        Iterator<Quad> it = dsg.find();
+        while (it.hasNext()) {
+            Quad q = it.next();
+            quads.add(new int[] {
+                    termId(q.getGraph(), ids, terms),
+                    termId(q.getSubject(), ids, terms),
+                    termId(q.getPredicate(), ids, terms),
+                    termId(q.getObject(), ids, terms)
+            });
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sourceChecksum);
+
+        out.writeInt(terms.size());
+        for (Node n : terms) {
+            writeTerm(n, out);
+        }
+
+        out.writeInt(quads.size());
+        for (int[] q : quads) {
+            out.writeInt(q[0]);
+            out.writeInt(q[1]);
+            out.writeInt(q[2]);
+            out.writeInt(q[3]);
+        }
+
+        out.writeInt(MAGIC);
+    }
+
+    private static int termId(Node n, Map<Node, Integer> ids, List<Node> terms) {
+        Integer id = ids.get(n);
+        if (id != null) return id;
+
+        int next = terms.size();
+        ids.put(n, next);
+        terms.add(n);
+        return next;
+    }
+
+    private static void writeTerm(Node n, DataOutputStream out) throws IOException {
+        if (n.isURI()) {
+            out.writeByte(KIND_URI);
+            writeString(n.getURI(), out);
+        } else if (n.isBlank()) {
+            out.writeByte(KIND_BLANK);
+            writeString(n.getBlankNodeLabel(), out);
+        } else if (n.isLiteral() && !n.getLiteralLanguage().isEmpty()) {
+            out.writeByte(KIND_LITERAL_LANG);
+            writeString(n.getLiteralLexicalForm(), out);
+            writeString(n.getLiteralLanguage(), out);
+        } else if (n.isLiteral()) {
+            out.writeByte(KIND_LITERAL_DT);
+            writeString(n.getLiteralLexicalForm(), out);
+            writeString(n.getLiteralDatatypeURI(), out);
+        } else {
+            throw new IOException("Termo não suportado no snapshot: " + n);
+        }
+    }
+
+    private static Node readTerm(ByteBuffer buf) throws IOException {
+        byte kind = buf.get();
+        return switch (kind) {
+            case KIND_URI -> NodeFactory.createURI(readString(buf));
+            case KIND_BLANK -> NodeFactory.createBlankNode(readString(buf));
+            case KIND_LITERAL_LANG -> NodeFactory.createLiteralLang(readString(buf), readString(buf));
+            case KIND_LITERAL_DT -> NodeFactory.createLiteralDT(readString(buf),
+                    TypeMapper.getInstance().getSafeTypeByName(readString(buf)));
+            default -> throw new IOException("Tipo de termo inválido no snapshot: " + kind);
+        };
+    }
+
+    private static void writeString(String s, DataOutputStream out) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class SnapshotException extends RuntimeException {
+        SnapshotException(String message, IOException cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 
 import java.io.InputStream;
+import java.util.zip.CRC32C;
 
 public class RdfLoader {
 
@@ -24,6 +25,28 @@ public class RdfLoader {
         }
     }
 
+    /**
+     * CRC32C over the raw bytes of the given resources, in order. Used to tie derived files
+     * (snapshots, indexes) to the exact source files they were built from.
+     */
+    public long checksum(String... resourcePaths) {
+        CRC32C crc = new CRC32C();
+        byte[] buf = new byte[64 * 1024];
+        for (String path : resourcePaths) {
+            try (InputStream in = getStream(path)) {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    crc.update(buf, 0, n);
+                }
+            } catch (IllegalArgumentException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Erro calculando checksum de " + path, e);
+            }
+        }
+        return crc.getValue();
+    }
+
     private InputStream getStream(String path) {
         InputStream in = Thread.currentThread()
                 .getContextClassLoader()
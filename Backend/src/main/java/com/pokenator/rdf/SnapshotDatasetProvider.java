@@ -0,0 +1,79 @@
+package com.pokenator.rdf;
+
+import org.apache.jena.query.Dataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Loads the ontology + dataset resources, preferring a binary {@link DatasetSnapshot} when one exists for the
+ * current source files. On a miss the RDF files are parsed as before and a fresh snapshot is written so the
+ * next start skips the parser entirely.
+ */
+public class SnapshotDatasetProvider implements DatasetProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotDatasetProvider.class);
+
+    private final String ontologyPath;
+    private final String datasetPath;
+    private final Path snapshotPath;
+    private final RdfLoader loader = new RdfLoader();
+
+    private Dataset dataset;
+    private long sourceChecksum;
+
+    public SnapshotDatasetProvider(String ontologyPath, String datasetPath, Path snapshotPath) {
+        this.ontologyPath = ontologyPath;
+        this.datasetPath = datasetPath;
+        this.snapshotPath = snapshotPath;
+    }
+
+    @Override
+    public synchronized Dataset getDataset() {
+        if (dataset == null) {
+            dataset = load();
+        }
+        return dataset;
+    }
+
+    /** Checksum of the source RDF files; derived artifacts use it to detect staleness. */
+    public synchronized long sourceChecksum() {
+        getDataset();
+        return sourceChecksum;
+    }
+
+    private Dataset load() {
+        long start = System.nanoTime();
+        sourceChecksum = loader.checksum(ontologyPath, datasetPath);
+
+        Dataset fromSnapshot = new InMemoryDatasetProvider().getDataset();
+        try {
+            if (DatasetSnapshot.readInto(snapshotPath, sourceChecksum, fromSnapshot)) {
+                log.info("Dataset loaded from snapshot {} in {} ms", snapshotPath, elapsedMillis(start));
+                return fromSnapshot;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable snapshot {}: {}", snapshotPath, e.toString());
+        }
+
+        Dataset parsed = new InMemoryDatasetProvider().getDataset();
+        loader.loadOntology(parsed, ontologyPath);
+        loader.loadDataset(parsed, datasetPath);
+        log.info("Dataset parsed from RDF sources in {} ms", elapsedMillis(start));
+
+        try {
+            DatasetSnapshot.write(parsed, sourceChecksum, snapshotPath);
+            log.info("Dataset snapshot written to {}", snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            // A missing snapshot only costs startup time; never fail the boot for it
+            log.warn("Could not write dataset snapshot {}: {}", snapshotPath, e.toString());
+        }
+        return parsed;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
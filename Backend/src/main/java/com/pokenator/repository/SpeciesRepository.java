@@ -3,24 +3,59 @@ package com.pokenator.repository;
 import com.pokenator.akinator.model.Answer;
 import com.pokenator.akinator.model.Constraint;
 import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.index.NumericColumns;
+import com.pokenator.index.SpeciesIndex;
 import com.pokenator.sparql.Prefixes;
 import com.pokenator.sparql.SparqlClient;
+import com.pokenator.stats.StatisticsCatalog;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.rdf.model.RDFNode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class SpeciesRepository {
 
     private static final String FEATURES_SPECIES = PokemonKgConfig.POKEMON_NS + "featuresSpecies";
+    private static final String CLASS_GENERATION = PokemonKgConfig.POKEMON_NS + "Generation";
 
     private final SparqlClient sparql;
+    private final SpeciesIndex index; // nullable: without it every query goes to SPARQL
+    private final StatisticsCatalog stats;
+    private final NumericColumns numeric;
 
     public SpeciesRepository(SparqlClient sparql) {
+        this(sparql, null);
+    }
+
+    public SpeciesRepository(SparqlClient sparql, SpeciesIndex index) {
+        this(sparql, index, StatisticsCatalog.empty());
+    }
+
+    /** {@code stats} orders constraint patterns in generated queries, most selective first. */
+    public SpeciesRepository(SparqlClient sparql, SpeciesIndex index, StatisticsCatalog stats) {
+        this(sparql, index, stats, NumericColumns.empty());
+    }
+
+    /** {@code numeric} evaluates numeric threshold constraints in memory. */
+    public SpeciesRepository(SparqlClient sparql, SpeciesIndex index, StatisticsCatalog stats, NumericColumns numeric) {
         this.sparql = sparql;
+        this.index = index;
+        this.stats = stats;
+        this.numeric = numeric;
+    }
+
+    public SpeciesIndex index() {
+        return index;
+    }
+
+    public NumericColumns numeric() {
+        return numeric;
     }
 
     // =========================================================
@@ -66,7 +101,34 @@ public class SpeciesRepository {
             List<Constraint> constraints,
             int limit
     ) {
+        return StepContext.memo("countByInversePredicate", constraints,
+                List.of(inversePredicateUri, subjectClassUri, limit),
+                () -> queryCountByInversePredicate(dataset, inversePredicateUri, subjectClassUri, constraints, limit));
+    }
+
+    private List<ValueCount> queryCountByInversePredicate(
+            Dataset dataset,
+            String inversePredicateUri,
+            String subjectClassUri,
+            List<Constraint> constraints,
+            int limit
+    ) {
+
+        // The index keys generations exactly like this query: (featuresSpecies, ?gen) with ?gen a Generation
+        if (index != null && FEATURES_SPECIES.equals(inversePredicateUri) && CLASS_GENERATION.equals(subjectClassUri)) {
+            return countByIndexedValue(inversePredicateUri, constraints, limit);
+        }
+
+        String query = countByInversePredicateQuery(inversePredicateUri, subjectClassUri, constraints, limit);
+        return valueCounts(sparql.select(dataset, query), "x");
+    }
 
+    private String countByInversePredicateQuery(
+            String inversePredicateUri,
+            String subjectClassUri,
+            List<Constraint> constraints,
+            int limit
+    ) {
         StringBuilder sb = new StringBuilder();
         sb.append(Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS));
         sb.append("SELECT ?x (COUNT(DISTINCT ?s) AS ?n)\n");
@@ -83,12 +145,13 @@ public class SpeciesRepository {
         sb.append("GROUP BY ?x\n");
         sb.append("ORDER BY DESC(?n)\n");
         sb.append("LIMIT ").append(limit);
+        return sb.toString();
+    }
 
-        List<QuerySolution> rows = sparql.select(dataset, sb.toString());
-
+    private static List<ValueCount> valueCounts(List<QuerySolution> rows, String valueVar) {
         List<ValueCount> out = new ArrayList<>();
         for (QuerySolution r : rows) {
-            String valueUri = r.getResource("x").getURI();
+            String valueUri = r.getResource(valueVar).getURI();
             long n = r.getLiteral("n").getLong();
             out.add(new ValueCount(valueUri, n));
         }
@@ -149,6 +212,15 @@ public class SpeciesRepository {
     // =========================================================
 
     public long countCandidates(Dataset dataset, List<Constraint> constraints) {
+        return StepContext.memo("countCandidates", constraints, null,
+                () -> queryCountCandidates(dataset, constraints));
+    }
+
+    private long queryCountCandidates(Dataset dataset, List<Constraint> constraints) {
+
+        if (index != null) {
+            return SpeciesIndex.count(candidateSet(constraints));
+        }
 
         StringBuilder sb = new StringBuilder();
         sb.append(Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS));
@@ -174,7 +246,25 @@ public class SpeciesRepository {
             List<Constraint> constraints,
             int limit
     ) {
+        return StepContext.memo("countByPredicateValue", constraints, List.of(predicateUri, limit),
+                () -> queryCountByPredicateValue(dataset, predicateUri, constraints, limit));
+    }
 
+    private List<ValueCount> queryCountByPredicateValue(
+            Dataset dataset,
+            String predicateUri,
+            List<Constraint> constraints,
+            int limit
+    ) {
+
+        if (index != null) {
+            return countByIndexedValue(predicateUri, constraints, limit);
+        }
+
+        return valueCounts(sparql.select(dataset, countByPredicateValueQuery(predicateUri, constraints, limit)), "o");
+    }
+
+    private String countByPredicateValueQuery(String predicateUri, List<Constraint> constraints, int limit) {
         StringBuilder sb = new StringBuilder();
         sb.append(Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS));
         sb.append("SELECT ?o (COUNT(DISTINCT ?s) AS ?n)\n");
@@ -190,19 +280,62 @@ public class SpeciesRepository {
         sb.append("GROUP BY ?o\n");
         sb.append("ORDER BY DESC(?n)\n");
         sb.append("LIMIT ").append(limit);
+        return sb.toString();
+    }
 
-        List<QuerySolution> rows = sparql.select(dataset, sb.toString());
+    /**
+     * Runs the value counts of every predicate in {@code predicateUris} (plus the generation count when
+     * {@code generations}) in one round trip, when the client batches queries and no index answers them, and
+     * leaves the results in the step memo: the {@link #countByPredicateValue} and {@link #countByInversePredicate}
+     * calls that follow in the same step are memo hits. A no-op otherwise or outside a step.
+     *
+     * <p>With the species index, which remote mode normally builds at startup, every count is answered from the
+     * index and a selection step sends nothing to the endpoint, so there is nothing to batch: this only runs
+     * when the index could not be opened or built.
+     */
+    public void prefetchValueCounts(
+            Dataset dataset,
+            List<String> predicateUris,
+            boolean generations,
+            List<Constraint> constraints,
+            int limit
+    ) {
+        if (index != null || !sparql.batches() || !StepContext.active()) return;
 
-        List<ValueCount> out = new ArrayList<>();
-        for (QuerySolution r : rows) {
-            String valueUri = r.getResource("o").getURI();
-            long n = r.getLiteral("n").getLong();
-            out.add(new ValueCount(valueUri, n));
+        List<String> queries = new ArrayList<>();
+        List<Prefetched> keys = new ArrayList<>();
+        for (String p : predicateUris) {
+            queries.add(countByPredicateValueQuery(p, constraints, limit));
+            keys.add(new Prefetched("countByPredicateValue", List.of(p, limit), "o"));
+        }
+        if (generations) {
+            queries.add(countByInversePredicateQuery(FEATURES_SPECIES, CLASS_GENERATION, constraints, limit));
+            keys.add(new Prefetched("countByInversePredicate",
+                    List.of(FEATURES_SPECIES, CLASS_GENERATION, limit), "x"));
+        }
+        if (queries.size() < 2) return;
+
+        List<List<QuerySolution>> results = sparql.selectAll(dataset, queries);
+        for (int i = 0; i < keys.size(); i++) {
+            Prefetched k = keys.get(i);
+            StepContext.prime(k.method(), constraints, k.args(), valueCounts(results.get(i), k.valueVar()));
         }
-        return out;
     }
 
+    /** Memo key of a prefetched call and the variable holding its values. */
+    private record Prefetched(String method, Object args, String valueVar) {}
+
     public Optional<String> getOneCandidate(Dataset dataset, List<Constraint> constraints) {
+        return StepContext.memo("getOneCandidate", constraints, null,
+                () -> queryOneCandidate(dataset, constraints));
+    }
+
+    private Optional<String> queryOneCandidate(Dataset dataset, List<Constraint> constraints) {
+
+        if (index != null) {
+            int first = SpeciesIndex.nextSpecies(candidateSet(constraints), 0);
+            return first < 0 ? Optional.empty() : Optional.of(index.speciesUri(first));
+        }
 
         StringBuilder sb = new StringBuilder();
         sb.append(Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS));
@@ -234,6 +367,11 @@ public class SpeciesRepository {
     // =========================================================
 
     public String getEnglishLabel(Dataset dataset, String uri) {
+        return StepContext.memo("getEnglishLabel", List.of(), uri,
+                () -> queryEnglishLabel(dataset, uri));
+    }
+
+    private String queryEnglishLabel(Dataset dataset, String uri) {
 
         String sb = Prefixes.prefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#") +
                 "SELECT ?label WHERE {\n" +
@@ -254,6 +392,20 @@ public class SpeciesRepository {
     }
 
     public List<String> listCandidates(Dataset dataset, List<Constraint> constraints, int limit) {
+        return StepContext.memo("listCandidates", constraints, limit,
+                () -> queryCandidates(dataset, constraints, limit));
+    }
+
+    private List<String> queryCandidates(Dataset dataset, List<Constraint> constraints, int limit) {
+
+        if (index != null) {
+            long[] set = candidateSet(constraints);
+            List<String> out = new ArrayList<>();
+            for (int s = SpeciesIndex.nextSpecies(set, 0); s >= 0 && out.size() < limit; s = SpeciesIndex.nextSpecies(set, s + 1)) {
+                out.add(index.speciesUri(s));
+            }
+            return out;
+        }
 
         StringBuilder sb = new StringBuilder();
         sb.append(Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS));
@@ -278,6 +430,224 @@ public class SpeciesRepository {
         return out;
     }
 
+    /**
+     * Every IRI-valued (predicate, value) pair of the given species, including the generation featuring them
+     * (as {@code featuresSpecies}, the same shape constraints use), with the value's English label when it has
+     * one. {@code rdf:type} is left out. One query for all species.
+     */
+    public void forEachAttribute(Dataset dataset, List<String> speciesUris, Consumer<Attribute> consumer) {
+        if (speciesUris.isEmpty()) return;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(Prefixes.prefix("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#"));
+        sb.append(Prefixes.prefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#"));
+        sb.append("SELECT ?s ?p ?o (SAMPLE(?l) AS ?label)\n");
+        sb.append("WHERE {\n");
+        sb.append("  VALUES ?s {");
+        for (String uri : speciesUris) {
+            sb.append(" <").append(uri).append(">");
+        }
+        sb.append(" }\n");
+        sb.append("  {\n");
+        sb.append("    GRAPH ?g { ?s ?p ?o . }\n");
+        sb.append("    FILTER(isIRI(?o) && ?p != rdf:type)\n");
+        sb.append("  }\n");
+        sb.append("  UNION\n");
+        sb.append("  {\n");
+        sb.append("    GRAPH ?g { ?o <").append(FEATURES_SPECIES).append("> ?s . ?o a <").append(CLASS_GENERATION).append("> . }\n");
+        sb.append("    BIND(<").append(FEATURES_SPECIES).append("> AS ?p)\n");
+        sb.append("  }\n");
+        sb.append("  OPTIONAL {\n");
+        sb.append("    GRAPH ?lg {\n");
+        sb.append("      ?o rdfs:label ?l .\n");
+        sb.append("      FILTER(lang(?l) = \"en\" || lang(?l) = \"\")\n");
+        sb.append("    }\n");
+        sb.append("  }\n");
+        sb.append("}\n");
+        sb.append("GROUP BY ?s ?p ?o");
+
+        sparql.selectEach(dataset, sb.toString(), r -> {
+            String valueUri = r.getResource("o").getURI();
+            String label = r.contains("label") ? r.getLiteral("label").getString() : localName(valueUri);
+            consumer.accept(new Attribute(
+                    r.getResource("s").getURI(),
+                    r.getResource("p").getURI(),
+                    valueUri,
+                    label
+            ));
+        });
+    }
+
+    /**
+     * Streams one page of candidates ordered by URI, each joined with its English label in the same query.
+     * Only species strictly after {@code afterUri} are returned (null/blank = first page).
+     */
+    public void forEachCandidateWithLabel(
+            Dataset dataset,
+            List<Constraint> constraints,
+            String afterUri,
+            int limit,
+            Consumer<LabeledSpecies> consumer
+    ) {
+
+        if (index != null) {
+            forEachIndexedCandidateWithLabel(dataset, constraints, afterUri, limit, consumer);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS));
+        sb.append(Prefixes.prefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#"));
+        sb.append("SELECT ?s (SAMPLE(?l) AS ?label)\n");
+        sb.append("WHERE {\n");
+        sb.append("  {\n");
+        sb.append("    SELECT DISTINCT ?s\n");
+        sb.append("    WHERE {\n");
+        sb.append("      GRAPH ?g {\n");
+        sb.append("    ?s a pokemon:Species .\n");
+        appendConstraints(sb, constraints);
+        sb.append("      }\n");
+        if (afterUri != null && !afterUri.isBlank()) {
+            sb.append("      FILTER(STR(?s) > \"").append(escapeLiteral(afterUri)).append("\")\n");
+        }
+        sb.append("    }\n");
+        sb.append("    ORDER BY ?s\n");
+        sb.append("    LIMIT ").append(limit).append("\n");
+        sb.append("  }\n");
+        sb.append("  OPTIONAL {\n");
+        sb.append("    GRAPH ?lg {\n");
+        sb.append("      ?s rdfs:label ?l .\n");
+        sb.append("      FILTER(lang(?l) = \"en\" || lang(?l) = \"\")\n");
+        sb.append("    }\n");
+        sb.append("  }\n");
+        sb.append("}\n");
+        sb.append("GROUP BY ?s\n");
+        sb.append("ORDER BY ?s");
+
+        sparql.selectEach(dataset, sb.toString(), r -> {
+            RDFNode node = r.get("s");
+            if (node == null || !node.isResource()) return;
+
+            String uri = node.asResource().getURI();
+            String label = r.contains("label") ? r.getLiteral("label").getString() : localName(uri);
+            consumer.accept(new LabeledSpecies(uri, label));
+        });
+    }
+
+
+    // =========================================================
+    // INDEX SUPPORT
+    // =========================================================
+
+    /** Candidate bitset for the constraints; requires {@link #index()}. */
+    public long[] candidateSet(List<Constraint> constraints) {
+        return candidateSet(constraints, index.allSpecies());
+    }
+
+    /**
+     * Same as {@link #candidateSet(List)}, writing into a caller-owned buffer of
+     * {@link SpeciesIndex#wordsPerSet()} longs (its previous content is ignored).
+     */
+    public long[] candidateSet(List<Constraint> constraints, long[] into) {
+        index.fillAll(into);
+
+        for (Constraint c : constraints) {
+            if (c.answer() == Answer.UNKNOWN) continue;
+
+            if (c.numeric()) {
+                int attribute = numeric.attribute(c.predicateUri());
+                if (attribute < 0 || !numeric.indexed()) continue;
+                double threshold = NumericColumns.parse(c.objectUri());
+                if (c.answer() == Answer.YES) numeric.and(into, attribute, threshold);
+                else numeric.andNot(into, attribute, threshold);
+                continue;
+            }
+
+            int valueId = index.valueId(c.predicateUri(), c.objectUri());
+            if (c.answer() == Answer.YES) {
+                if (valueId < 0) {
+                    // Nobody has that value
+                    Arrays.fill(into, 0L);
+                    return into;
+                }
+                index.and(into, valueId);
+            } else if (valueId >= 0) {
+                index.andNot(into, valueId);
+            }
+        }
+        return into;
+    }
+
+    private List<ValueCount> countByIndexedValue(String predicateUri, List<Constraint> constraints, int limit) {
+        long[] set = candidateSet(constraints);
+        SpeciesIndex.ValueRange range = index.valuesOf(predicateUri);
+
+        List<ValueCount> out = new ArrayList<>();
+        for (int v = range.from(); v < range.to(); v++) {
+            int n = index.countAnd(set, v);
+            if (n > 0) out.add(new ValueCount(index.valueUri(v), n));
+        }
+        out.sort(Comparator.comparingLong(ValueCount::count).reversed());
+        return out.size() > limit ? out.subList(0, limit) : out;
+    }
+
+    private void forEachIndexedCandidateWithLabel(
+            Dataset dataset,
+            List<Constraint> constraints,
+            String afterUri,
+            int limit,
+            Consumer<LabeledSpecies> consumer
+    ) {
+        forEachSpeciesWithLabel(dataset, candidateSet(constraints), afterUri, limit, consumer);
+    }
+
+    /**
+     * Like {@link #forEachCandidateWithLabel} for an explicit candidate set over index ordinals (e.g. the scoring
+     * engine's plausible species). Requires the index.
+     */
+    public void forEachSpeciesWithLabel(
+            Dataset dataset,
+            long[] set,
+            String afterUri,
+            int limit,
+            Consumer<LabeledSpecies> consumer
+    ) {
+        // Species ordinals follow URI byte order, which matches the SPARQL cursor ordering
+        int from = 0;
+        if (afterUri != null && !afterUri.isBlank()) {
+            from = index.speciesAfter(afterUri);
+        }
+
+        List<String> page = new ArrayList<>();
+        for (int s = SpeciesIndex.nextSpecies(set, from); s >= 0 && page.size() < limit; s = SpeciesIndex.nextSpecies(set, s + 1)) {
+            page.add(index.speciesUri(s));
+        }
+        if (page.isEmpty()) return;
+
+        // One label query for the whole page
+        StringBuilder sb = new StringBuilder();
+        sb.append(Prefixes.prefix("rdfs", "http://www.w3.org/2000/01/rdf-schema#"));
+        sb.append("SELECT ?s (SAMPLE(?l) AS ?label)\n");
+        sb.append("WHERE {\n");
+        sb.append("  VALUES ?s {");
+        for (String uri : page) sb.append(" <").append(uri).append('>');
+        sb.append(" }\n");
+        sb.append("  OPTIONAL {\n");
+        sb.append("    GRAPH ?lg {\n");
+        sb.append("      ?s rdfs:label ?l .\n");
+        sb.append("      FILTER(lang(?l) = \"en\" || lang(?l) = \"\")\n");
+        sb.append("    }\n");
+        sb.append("  }\n");
+        sb.append("}\n");
+        sb.append("GROUP BY ?s\n");
+        sb.append("ORDER BY ?s");
+
+        sparql.selectEach(dataset, sb.toString(), r -> {
+            String uri = r.getResource("s").getURI();
+            String label = r.contains("label") ? r.getLiteral("label").getString() : localName(uri);
+            consumer.accept(new LabeledSpecies(uri, label));
+        });
+    }
 
     // =========================================================
     // INTERNAL HELPERS
@@ -285,7 +655,12 @@ public class SpeciesRepository {
 
     private void appendConstraints(StringBuilder sb, List<Constraint> constraints) {
 
-        for (Constraint c : constraints) {
+        for (Constraint c : joinOrder(constraints)) {
+
+            if (c.numeric()) {
+                appendNumericConstraint(sb, c);
+                continue;
+            }
 
             boolean isInverseGeneration = FEATURES_SPECIES.equals(c.predicateUri());
 
@@ -319,6 +694,52 @@ public class SpeciesRepository {
     }
 
 
+    /**
+     * A threshold constraint becomes the set of species above it, taken from the sorted column: no FILTER
+     * comparison for the engine to evaluate per binding.
+     */
+    private void appendNumericConstraint(StringBuilder sb, Constraint c) {
+        if (c.answer() == Answer.UNKNOWN) return;
+
+        int attribute = numeric.attribute(c.predicateUri());
+        if (attribute < 0) return;
+        List<String> above = numeric.speciesAbove(attribute, NumericColumns.parse(c.objectUri()));
+
+        if (c.answer() == Answer.YES) {
+            sb.append("    VALUES ?s {");
+            for (String uri : above) sb.append(" <").append(uri).append(">");
+            sb.append(" }\n");
+        } else if (!above.isEmpty()) {
+            sb.append("    FILTER(?s NOT IN (");
+            for (int i = 0; i < above.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append("<").append(above.get(i)).append(">");
+            }
+            sb.append("))\n");
+        }
+    }
+
+    /**
+     * YES patterns first, most selective (fewest species) first, so the engine starts joining from the smallest
+     * binding set; NO filters after them. Unprofiled values keep their relative order after profiled ones.
+     */
+    private List<Constraint> joinOrder(List<Constraint> constraints) {
+        if (constraints.size() < 2 || stats.speciesCount() == 0) return constraints;
+
+        List<Constraint> ordered = new ArrayList<>(constraints);
+        ordered.sort(Comparator
+                .comparingInt((Constraint c) -> c.answer() == Answer.YES ? 0 : 1)
+                .thenComparingDouble(c -> {
+                    double s = stats.selectivity(c.predicateUri(), c.objectUri());
+                    return s < 0 ? 1.0 : s;
+                }));
+        return ordered;
+    }
+
+    private String escapeLiteral(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
     private String localName(String uri) {
         int hash = uri.lastIndexOf('#');
         int slash = uri.lastIndexOf('/');
@@ -335,4 +756,6 @@ public class SpeciesRepository {
 
     public record PredicateCount(String predicateUri, long count) {}
     public record ValueCount(String valueUri, long count) {}
+    public record LabeledSpecies(String uri, String label) {}
+    public record Attribute(String speciesUri, String predicateUri, String valueUri, String valueLabel) {}
 }
@@ -0,0 +1,132 @@
+package com.pokenator.repository;
+
+import com.pokenator.akinator.model.Constraint;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.TxnType;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Scope of one game step (one start/answer call). While open it holds a single read transaction on the
+ * dataset, so every query of the step runs against the same snapshot without beginning its own transaction,
+ * and it memoizes {@link SpeciesRepository} results by (method, constraint set, arguments).
+ *
+ * <p>Like Jena transactions, the context is bound to the opening thread: repository calls made on that thread
+ * pick it up through {@link #memo}; calls outside any step run unmemoized.
+ */
+public final class StepContext implements AutoCloseable {
+
+    private static final ThreadLocal<StepContext> CURRENT = new ThreadLocal<>();
+
+    private static final LongAdder STEPS = new LongAdder();
+    private static final LongAdder EXECUTED = new LongAdder();
+    private static final LongAdder SAVED = new LongAdder();
+
+    private final Dataset dataset;
+    private final boolean ownsTransaction;
+    private final StepContext previous;
+    private final Map<MemoKey, Object> memo = new HashMap<>();
+
+    private int executed;
+    private int saved;
+
+    private StepContext(Dataset dataset, boolean ownsTransaction, StepContext previous) {
+        this.dataset = dataset;
+        this.ownsTransaction = ownsTransaction;
+        this.previous = previous;
+    }
+
+    public static StepContext open(Dataset dataset) {
+        boolean ownsTransaction = dataset != null && !dataset.isInTransaction();
+        if (ownsTransaction) {
+            dataset.begin(TxnType.READ);
+        }
+
+        StepContext ctx = new StepContext(dataset, ownsTransaction, CURRENT.get());
+        CURRENT.set(ctx);
+        return ctx;
+    }
+
+    /** Returns the memoized result for this call in the current step, computing it on first use. */
+    @SuppressWarnings("unchecked")
+    static <T> T memo(String method, List<Constraint> constraints, Object args, Supplier<T> loader) {
+        StepContext ctx = CURRENT.get();
+        if (ctx == null) return loader.get();
+
+        MemoKey key = new MemoKey(method, new HashSet<>(constraints), args);
+        Object hit = ctx.memo.get(key);
+        if (hit != null) {
+            ctx.saved++;
+            return (T) hit;
+        }
+
+        T value = loader.get();
+        ctx.executed++;
+        if (value != null) ctx.memo.put(key, value);
+        return value;
+    }
+
+    /** Whether the calling thread is inside a step. */
+    static boolean active() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Stores a result fetched ahead of the call that needs it (e.g. several queries sent as one batch), so that
+     * call becomes a memo hit. Counts as one executed query.
+     */
+    static void prime(String method, List<Constraint> constraints, Object args, Object value) {
+        StepContext ctx = CURRENT.get();
+        if (ctx == null || value == null) return;
+        if (ctx.memo.putIfAbsent(new MemoKey(method, new HashSet<>(constraints), args), value) == null) {
+            ctx.executed++;
+        }
+    }
+
+    /** Queries executed so far in this step. */
+    public int executed() { return executed; }
+
+    /** Repository calls answered from the memo so far in this step. */
+    public int saved() { return saved; }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            throw new IllegalStateException("StepContext closed out of order or on another thread");
+        }
+
+        if (previous != null) CURRENT.set(previous);
+        else CURRENT.remove();
+
+        if (ownsTransaction) {
+            dataset.end();
+        }
+
+        STEPS.increment();
+        EXECUTED.add(executed);
+        SAVED.add(saved);
+    }
+
+    /** Totals over every step closed since startup. */
+    public static Stats stats() {
+        long steps = STEPS.sum();
+        long executed = EXECUTED.sum();
+        long saved = SAVED.sum();
+        return new Stats(
+                steps,
+                executed,
+                saved,
+                steps == 0 ? 0.0 : (double) saved / steps
+        );
+    }
+
+    public record Stats(long steps, long queriesExecuted, long queriesSaved, double savedPerStep) {}
+
+    private record MemoKey(String method, Set<Constraint> constraints, Object args) {}
+}
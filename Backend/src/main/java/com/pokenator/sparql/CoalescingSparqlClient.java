@@ -0,0 +1,126 @@
+package com.pokenator.sparql;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QuerySolution;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight decorator: when several threads run the byte-identical query against the same dataset at the
+ * same time, only the first (leader) executes it and the others wait for its materialized result.
+ *
+ * <p>Results are shared read-only between the waiting threads. Streaming {@link #selectEach} calls are passed
+ * through, since their rows are consumed inside the caller's transaction, and so are batches ({@link #selectAll}).
+ * A waiting thread gives up when its own {@link Deadline} runs out.
+ */
+public class CoalescingSparqlClient implements SparqlClient, AutoCloseable {
+
+    private final SparqlClient delegate;
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CoalescingSparqlClient(SparqlClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<QuerySolution> select(Dataset dataset, String sparql) {
+        return coalesce(new Key(dataset, false, sparql), () -> delegate.select(dataset, sparql));
+    }
+
+    @Override
+    public void selectEach(Dataset dataset, String sparql, Consumer<QuerySolution> consumer) {
+        delegate.selectEach(dataset, sparql, consumer);
+    }
+
+    @Override
+    public List<List<QuerySolution>> selectAll(Dataset dataset, List<String> sparqls) {
+        return delegate.selectAll(dataset, sparqls);
+    }
+
+    @Override
+    public boolean batches() {
+        return delegate.batches();
+    }
+
+    @Override
+    public boolean ask(Dataset dataset, String sparql) {
+        return coalesce(new Key(dataset, true, sparql), () -> delegate.ask(dataset, sparql));
+    }
+
+    /** The client the queries actually run on. */
+    public SparqlClient delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable c) c.close();
+    }
+
+    public Stats stats() {
+        return new Stats(executed.sum(), coalesced.sum(), inFlight.size());
+    }
+
+    private <T> T coalesce(Key key, Supplier<T> work) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+
+        if (leader != null) {
+            coalesced.increment();
+            return await(leader, work);
+        }
+
+        executed.increment();
+        try {
+            T value = work.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Waits for the leader's result, for no longer than the caller's own {@link Deadline}. A leader cancelled by
+     * its (shorter) deadline does not fail a caller that still has budget: the caller runs the query itself.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T await(CompletableFuture<Object> leader, Supplier<T> work) {
+        Deadline deadline = Deadline.current();
+        try {
+            return (T) (deadline.bounded()
+                    ? leader.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS)
+                    : leader.join());
+        } catch (TimeoutException e) {
+            throw deadline.exceeded(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw deadline.exceeded(e);
+        } catch (ExecutionException | CompletionException e) {
+            if (e.getCause() instanceof DeadlineExceededException && !deadline.expired()) return work.get();
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Queries actually executed, requests that waited on another thread's execution, and queries in flight now. */
+    public record Stats(long executed, long coalesced, int inFlight) {}
+
+    private record Key(Dataset dataset, boolean ask, String sparql) {}
+}
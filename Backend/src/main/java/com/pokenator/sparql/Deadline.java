@@ -0,0 +1,126 @@
+package com.pokenator.sparql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time budget of one request. The controller creates it, the game service binds it to the handling thread for
+ * the duration of the step ({@link #bind}), and every query the thread runs meanwhile gets the remaining budget
+ * as its timeout: it is cancelled when the budget runs out, and refused once the budget is spent.
+ *
+ * <p>Like {@code StepContext}, the binding is per thread; queries outside any bound deadline keep the client's
+ * fixed timeout.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private static final LongAdder BOUND = new LongAdder();
+    private static final LongAdder EXCEEDED = new LongAdder();
+    private static final LongAdder DEGRADED = new LongAdder();
+    private static final LongAdder FAILED = new LongAdder();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /** No budget: queries keep the client's own timeout. */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /** A budget of {@code millis} from now ({@link #none()} when not positive). */
+    public static Deadline after(long millis) {
+        return millis <= 0 ? NONE : new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /** The deadline bound to the calling thread, or {@link #none()}. */
+    public static Deadline current() {
+        Deadline d = CURRENT.get();
+        return d == null ? NONE : d;
+    }
+
+    public boolean bounded() {
+        return this != NONE;
+    }
+
+    public boolean expired() {
+        return bounded() && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /** Whole milliseconds left, rounded up (0 once expired; {@link Long#MAX_VALUE} without a budget). */
+    public long remainingMillis() {
+        if (!bounded()) return Long.MAX_VALUE;
+        long nanos = expiresAtNanos - System.nanoTime();
+        return nanos <= 0 ? 0 : (nanos + 999_999) / 1_000_000;
+    }
+
+    /** Timeout for one query: what is left of the budget, at most {@code maxMillis}. */
+    public long timeoutMillis(long maxMillis) {
+        return Math.min(maxMillis, remainingMillis());
+    }
+
+    /** Throws {@link DeadlineExceededException} when the budget is spent. */
+    public void check() {
+        if (expired()) throw exceeded(null);
+    }
+
+    /** Counts a query cancelled or refused for this deadline and returns the exception to throw. */
+    DeadlineExceededException exceeded(Throwable cause) {
+        EXCEEDED.increment();
+        return new DeadlineExceededException(cause);
+    }
+
+    /** Binds this deadline to the calling thread until the returned scope is closed. */
+    public Scope bind() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        if (bounded()) BOUND.increment();
+        return () -> {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+        };
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    /** A step answered with a partial result because the budget ran out. */
+    public static void recordDegraded() {
+        DEGRADED.increment();
+    }
+
+    /** A step that ran out of budget before it had anything to answer with. */
+    public static void recordFailed() {
+        FAILED.increment();
+    }
+
+    /** Totals since startup. */
+    public static Stats stats() {
+        long bound = BOUND.sum();
+        long degraded = DEGRADED.sum();
+        long failed = FAILED.sum();
+        return new Stats(
+                bound,
+                EXCEEDED.sum(),
+                degraded,
+                failed,
+                bound == 0 ? 0.0 : (double) (degraded + failed) / bound
+        );
+    }
+
+    /**
+     * {@code steps}: steps run under a budget; {@code queriesExceeded}: queries cancelled or refused for lack of
+     * budget; {@code degraded}/{@code failed}: steps answered with a partial result / not answered.
+     */
+    public record Stats(long steps, long queriesExceeded, long degraded, long failed, double degradedRate) {}
+}
@@ -0,0 +1,9 @@
+package com.pokenator.sparql;
+
+/** A query was cancelled, or not started, because the request's {@link Deadline} ran out. */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(Throwable cause) {
+        super("Request deadline exceeded", cause);
+    }
+}
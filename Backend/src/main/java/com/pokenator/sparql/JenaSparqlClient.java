@@ -5,7 +5,12 @@ import org.apache.jena.system.Txn;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Executes queries against a local {@link Dataset}. Each query runs with the fixed {@code timeoutMillis}, or
+ * with what is left of the thread's {@link Deadline} when that is shorter.
+ */
 public class JenaSparqlClient implements SparqlClient {
 
     private final long timeoutMillis;
@@ -23,25 +28,61 @@ public class JenaSparqlClient implements SparqlClient {
         if (dataset == null) throw new IllegalArgumentException("dataset is null");
         if (sparql == null || sparql.isBlank()) throw new IllegalArgumentException("sparql is blank");
 
-        return Txn.calculateRead(dataset, () -> {
-            Query query = QueryFactory.create(sparql);
+        Deadline deadline = Deadline.current();
+        deadline.check();
 
-            QueryExecutionBuilder builder = QueryExecution
-                    .dataset(dataset)
-                    .query(query)
-                    .timeout(timeoutMillis); // long
+        try {
+            return Txn.calculateRead(dataset, () -> {
+                Query query = QueryFactory.create(sparql);
 
-            try (QueryExecution qexec = builder.build()) {
-                ResultSet rs = qexec.execSelect();
-                List<QuerySolution> out = new ArrayList<>();
+                QueryExecutionBuilder builder = QueryExecution
+                        .dataset(dataset)
+                        .query(query)
+                        .timeout(deadline.timeoutMillis(timeoutMillis)); // long
 
-                while (rs.hasNext()) {
-                    out.add(rs.nextSolution());
+                try (QueryExecution qexec = builder.build()) {
+                    ResultSet rs = qexec.execSelect();
+                    List<QuerySolution> out = new ArrayList<>();
+
+                    while (rs.hasNext()) {
+                        out.add(rs.nextSolution());
+                    }
+
+                    return out;
                 }
+            });
+        } catch (QueryCancelledException e) {
+            throw cancelled(deadline, e);
+        }
+    }
+
+    @Override
+    public void selectEach(Dataset dataset, String sparql, Consumer<QuerySolution> consumer) {
+        if (dataset == null) throw new IllegalArgumentException("dataset is null");
+        if (sparql == null || sparql.isBlank()) throw new IllegalArgumentException("sparql is blank");
+
+        Deadline deadline = Deadline.current();
+        deadline.check();
 
-                return out;
-            }
-        });
+        try {
+            Txn.executeRead(dataset, () -> {
+                Query query = QueryFactory.create(sparql);
+
+                QueryExecutionBuilder builder = QueryExecution
+                        .dataset(dataset)
+                        .query(query)
+                        .timeout(deadline.timeoutMillis(timeoutMillis)); // long
+
+                try (QueryExecution qexec = builder.build()) {
+                    ResultSet rs = qexec.execSelect();
+                    while (rs.hasNext()) {
+                        consumer.accept(rs.nextSolution());
+                    }
+                }
+            });
+        } catch (QueryCancelledException e) {
+            throw cancelled(deadline, e);
+        }
     }
 
     @Override
@@ -49,17 +90,29 @@ public class JenaSparqlClient implements SparqlClient {
         if (dataset == null) throw new IllegalArgumentException("dataset is null");
         if (sparql == null || sparql.isBlank()) throw new IllegalArgumentException("sparql is blank");
 
-        return Txn.calculateRead(dataset, () -> {
-            Query query = QueryFactory.create(sparql);
+        Deadline deadline = Deadline.current();
+        deadline.check();
+
+        try {
+            return Txn.calculateRead(dataset, () -> {
+                Query query = QueryFactory.create(sparql);
 
-            QueryExecutionBuilder builder = QueryExecution
-                    .dataset(dataset)
-                    .query(query)
-                    .timeout(timeoutMillis); // long
+                QueryExecutionBuilder builder = QueryExecution
+                        .dataset(dataset)
+                        .query(query)
+                        .timeout(deadline.timeoutMillis(timeoutMillis)); // long
+
+                try (QueryExecution qexec = builder.build()) {
+                    return qexec.execAsk();
+                }
+            });
+        } catch (QueryCancelledException e) {
+            throw cancelled(deadline, e);
+        }
+    }
 
-            try (QueryExecution qexec = builder.build()) {
-                return qexec.execAsk();
-            }
-        });
+    /** A timeout caused by the request's deadline (rather than the fixed per-query one) is reported as such. */
+    private static RuntimeException cancelled(Deadline deadline, QueryCancelledException e) {
+        return deadline.expired() ? deadline.exceeded(e) : e;
     }
 }
@@ -0,0 +1,338 @@
+package com.pokenator.sparql;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdfconnection.RDFConnection;
+import org.apache.jena.rdfconnection.RDFConnectionRemote;
+import org.apache.jena.shared.impl.PrefixMappingImpl;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.syntax.ElementBind;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementUnion;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs queries on a remote SPARQL endpoint (a shared triple store) through {@link RDFConnection}, so game nodes
+ * hold no copy of the graph. The {@code Dataset} arguments are ignored.
+ *
+ * <ul>
+ *   <li>All connections share one HTTP/1.1 client, which keeps idle connections alive and reuses them; at most
+ *       {@code maxConnections} requests are in flight, so the pool never grows past that.</li>
+ *   <li>{@link #selectAll} sends several SELECTs as one query: a UNION of the queries as sub-selects, each row
+ *       tagged with the index of its query. LIMITs apply per query; rows keep the order the endpoint returns
+ *       them in (ARQ and Fuseki keep each sub-select's order).</li>
+ *   <li>Materialized SELECT and ASK results are cached by query text for {@code cacheTtlMillis}, since the graph
+ *       changes rarely. Streaming {@link #selectEach} calls are not cached.</li>
+ * </ul>
+ *
+ * <p>Each request gets what is left of the thread's {@link Deadline} as its timeout, as with
+ * {@link JenaSparqlClient}.
+ */
+public class RemoteSparqlClient implements SparqlClient, AutoCloseable {
+
+    private static final Var PART = Var.alloc("__part");
+
+    private final String endpoint;
+    private final long timeoutMillis;
+    private final HttpClient http;
+    private final Semaphore permits;
+    private final int maxConnections;
+
+    private final long cacheTtlNanos;
+    private final Map<Key, Cached> cache; // LRU, guarded by itself
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedQueries = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * {@code endpoint}: the query service URL (e.g. {@code http://kg:3030/pokemon/sparql});
+     * {@code cacheEntries}/{@code cacheTtlMillis}: result cache bounds (0 disables it).
+     */
+    public RemoteSparqlClient(String endpoint, long timeoutMillis, int maxConnections,
+                              int cacheEntries, long cacheTtlMillis) {
+        this.endpoint = endpoint;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnections = maxConnections;
+        this.permits = new Semaphore(maxConnections);
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(Math.min(timeoutMillis, 10_000)))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        this.cacheTtlNanos = cacheEntries > 0 ? TimeUnit.MILLISECONDS.toNanos(cacheTtlMillis) : 0;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                return size() > cacheEntries;
+            }
+        };
+    }
+
+    // =========================================================
+    // QUERIES
+    // =========================================================
+
+    @Override
+    public List<QuerySolution> select(Dataset dataset, String sparql) {
+        if (sparql == null || sparql.isBlank()) throw new IllegalArgumentException("sparql is blank");
+
+        Key key = new Key(false, sparql);
+        List<QuerySolution> cached = cached(key);
+        if (cached != null) return cached;
+
+        List<QuerySolution> rows = execute(conn -> {
+            try (QueryExecution qexec = query(conn, sparql)) {
+                return materialize(qexec.execSelect());
+            }
+        });
+        store(key, rows);
+        return rows;
+    }
+
+    @Override
+    public void selectEach(Dataset dataset, String sparql, Consumer<QuerySolution> consumer) {
+        if (sparql == null || sparql.isBlank()) throw new IllegalArgumentException("sparql is blank");
+
+        execute(conn -> {
+            try (QueryExecution qexec = query(conn, sparql)) {
+                ResultSet rs = qexec.execSelect();
+                while (rs.hasNext()) {
+                    consumer.accept(rs.nextSolution());
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean ask(Dataset dataset, String sparql) {
+        if (sparql == null || sparql.isBlank()) throw new IllegalArgumentException("sparql is blank");
+
+        Key key = new Key(true, sparql);
+        Boolean cached = cached(key);
+        if (cached != null) return cached;
+
+        boolean result = execute(conn -> {
+            try (QueryExecution qexec = query(conn, sparql)) {
+                return qexec.execAsk();
+            }
+        });
+        store(key, result);
+        return result;
+    }
+
+    /** Cached results are reused; the rest go out in one request (or one each, when they cannot be combined). */
+    @Override
+    public List<List<QuerySolution>> selectAll(Dataset dataset, List<String> sparqls) {
+        List<List<QuerySolution>> out = new ArrayList<>(sparqls.size());
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < sparqls.size(); i++) {
+            List<QuerySolution> cached = cached(new Key(false, sparqls.get(i)));
+            out.add(cached);
+            if (cached == null) missing.add(i);
+        }
+        if (missing.size() <= 1) {
+            for (int i : missing) out.set(i, select(dataset, sparqls.get(i)));
+            return out;
+        }
+
+        Query combined = combine(sparqls, missing);
+        if (combined == null) {
+            for (int i : missing) out.set(i, select(dataset, sparqls.get(i)));
+            return out;
+        }
+
+        List<List<QuerySolution>> parts = new ArrayList<>(missing.size());
+        for (int i = 0; i < missing.size(); i++) parts.add(new ArrayList<>());
+
+        String text = combined.toString();
+        execute(conn -> {
+            try (QueryExecution qexec = query(conn, text)) {
+                ResultSet rs = qexec.execSelect();
+                while (rs.hasNext()) {
+                    QuerySolution row = rs.nextSolution();
+                    parts.get(row.getLiteral(PART.getVarName()).getInt()).add(row);
+                }
+            }
+            return null;
+        });
+        batches.increment();
+        batchedQueries.add(missing.size());
+
+        for (int p = 0; p < missing.size(); p++) {
+            int i = missing.get(p);
+            List<QuerySolution> rows = List.copyOf(parts.get(p));
+            out.set(i, rows);
+            store(new Key(false, sparqls.get(i)), rows);
+        }
+        return out;
+    }
+
+    @Override
+    public boolean batches() {
+        return true;
+    }
+
+    /** {@code { SELECT ... } BIND(p AS ?__part)} per query, joined by UNION; null if any is not a SELECT. */
+    private static Query combine(List<String> sparqls, List<Integer> indexes) {
+        ElementUnion union = new ElementUnion();
+        for (int p = 0; p < indexes.size(); p++) {
+            Query part = QueryFactory.create(sparqls.get(indexes.get(p)));
+            if (!part.isSelectType() || part.isQueryResultStar()) return null;
+            part.setPrefixMapping(new PrefixMappingImpl()); // IRIs are written out in full
+
+            ElementGroup group = new ElementGroup();
+            group.addElement(new ElementSubQuery(part));
+            group.addElement(new ElementBind(PART, NodeValue.makeInteger(p)));
+            union.addElement(group);
+        }
+
+        Query combined = new Query();
+        combined.setQuerySelectType();
+        combined.setQueryResultStar(true);
+        combined.setQueryPattern(union);
+        return combined;
+    }
+
+    // =========================================================
+    // CONNECTIONS
+    // =========================================================
+
+    private QueryExecution query(RDFConnection conn, String sparql) {
+        long timeout = Deadline.current().timeoutMillis(timeoutMillis);
+        return conn.newQuery().query(sparql).timeout(timeout).build();
+    }
+
+    /**
+     * Runs {@code work} on a connection once one of the {@code maxConnections} permits is free, waiting no longer
+     * than the query timeout (or what is left of the deadline).
+     */
+    private <T> T execute(Function<RDFConnection, T> work) {
+        Deadline deadline = Deadline.current();
+        deadline.check();
+
+        long wait = deadline.timeoutMillis(timeoutMillis);
+        try {
+            if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                if (deadline.expired()) throw deadline.exceeded(null);
+                throw new IllegalStateException("No connection to " + endpoint + " free within " + wait + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a connection to " + endpoint, e);
+        }
+
+        try (RDFConnection conn = RDFConnectionRemote.service(endpoint).httpClient(http).build()) {
+            requests.increment();
+            return work.apply(conn);
+        } catch (RuntimeException e) {
+            if (deadline.expired()) throw deadline.exceeded(e);
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static List<QuerySolution> materialize(ResultSet rs) {
+        List<QuerySolution> out = new ArrayList<>();
+        while (rs.hasNext()) {
+            out.add(rs.nextSolution());
+        }
+        return List.copyOf(out);
+    }
+
+    @Override
+    public void close() {
+        http.close();
+    }
+
+    // =========================================================
+    // CACHE
+    // =========================================================
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(Key key) {
+        if (cacheTtlNanos <= 0) return null;
+        Cached c;
+        synchronized (cache) {
+            c = cache.get(key);
+        }
+        if (c == null || System.nanoTime() - c.expiresAtNanos() >= 0) {
+            cacheMisses.increment();
+            return null;
+        }
+        cacheHits.increment();
+        return (T) c.value();
+    }
+
+    private void store(Key key, Object value) {
+        if (cacheTtlNanos <= 0) return;
+        Cached c = new Cached(value, System.nanoTime() + cacheTtlNanos);
+        synchronized (cache) {
+            cache.put(key, c);
+        }
+    }
+
+    // =========================================================
+    // STATS
+    // =========================================================
+
+    public Stats stats() {
+        int cached;
+        synchronized (cache) {
+            cached = cache.size();
+        }
+        return new Stats(
+                endpoint,
+                requests.sum(),
+                batches.sum(),
+                batchedQueries.sum(),
+                cacheHits.sum(),
+                cacheMisses.sum(),
+                cached,
+                maxConnections - permits.availablePermits(),
+                maxConnections
+        );
+    }
+
+    /**
+     * {@code requests}: HTTP requests sent; {@code batches}/{@code batchedQueries}: combined requests and the
+     * queries they carried; {@code inFlight}: requests holding a connection now.
+     */
+    public record Stats(
+            String endpoint,
+            long requests,
+            long batches,
+            long batchedQueries,
+            long cacheHits,
+            long cacheMisses,
+            int cacheEntries,
+            int inFlight,
+            int maxConnections
+    ) {}
+
+    private record Key(boolean ask, String sparql) {}
+
+    private record Cached(Object value, long expiresAtNanos) {}
+}
@@ -2,7 +2,10 @@ package com.pokenator.sparql;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.QuerySolution;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface SparqlClient {
 
@@ -11,6 +14,31 @@ public interface SparqlClient {
      */
     List<QuerySolution> select(Dataset dataset, String sparql);
 
+    /**
+     * Executa SELECT entregando cada linha ao consumer à medida que é produzida, sem materializar o resultado.
+     * O consumer roda dentro da transação de leitura; não deve guardar referências às linhas.
+     */
+    default void selectEach(Dataset dataset, String sparql, Consumer<QuerySolution> consumer) {
+        select(dataset, sparql).forEach(consumer);
+    }
+
+    /**
+     * Executa vários SELECT; o resultado i corresponde à consulta i. Clientes remotos podem enviá-los numa única
+     * requisição (ver {@link #batches()}); o padrão executa um por um.
+     */
+    default List<List<QuerySolution>> selectAll(Dataset dataset, List<String> sparqls) {
+        List<List<QuerySolution>> out = new ArrayList<>(sparqls.size());
+        for (String sparql : sparqls) out.add(select(dataset, sparql));
+        return out;
+    }
+
+    /**
+     * Se {@link #selectAll} economiza idas e voltas (cliente remoto); quem chama só agrupa consultas nesse caso.
+     */
+    default boolean batches() {
+        return false;
+    }
+
     /**
      * Executa ASK.
      */
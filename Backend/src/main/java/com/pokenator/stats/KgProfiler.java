@@ -0,0 +1,206 @@
+package com.pokenator.stats;
+
+import com.pokenator.akinator.model.QuestionFamily;
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.sparql.Prefixes;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QuerySolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scans the species graph once at startup and builds the {@link StatisticsCatalog}.
+ *
+ * <p>A predicate becomes a question family when it is categorical and can split the species: enough species
+ * have it ({@link #MIN_COVERAGE}), it has between 2 and {@link #MAX_CARDINALITY} values, and at least one
+ * value is neither too rare nor near-universal ({@link #MIN_SPLIT}). Besides direct {@code ?s ?p ?o} edges,
+ * the only inverse shape the queries support is profiled: {@code ?gen featuresSpecies ?s}.
+ */
+public class KgProfiler {
+
+    private static final Logger log = LoggerFactory.getLogger(KgProfiler.class);
+
+    private static final String FEATURES_SPECIES = PokemonKgConfig.POKEMON_NS + "featuresSpecies";
+    private static final String CLASS_GENERATION = PokemonKgConfig.POKEMON_NS + "Generation";
+
+    static final double MIN_COVERAGE = 0.5;
+    static final int MAX_CARDINALITY = 64;
+    static final double MIN_SPLIT = 0.02;
+
+    private final SparqlClient sparql;
+
+    public KgProfiler(SparqlClient sparql) {
+        this.sparql = sparql;
+    }
+
+    public StatisticsCatalog profile(Dataset dataset) {
+        long t0 = System.nanoTime();
+
+        long species = countSpecies(dataset);
+        if (species == 0) {
+            log.warn("No species found; using the default question families");
+            return StatisticsCatalog.empty();
+        }
+
+        Map<String, Profile> profiles = new LinkedHashMap<>();
+        scanDirect(dataset, profiles);
+        scanGenerations(dataset, profiles);
+
+        List<StatisticsCatalog.PredicateStats> stats = new ArrayList<>();
+        for (Profile p : profiles.values()) {
+            stats.add(p.toStats(species));
+        }
+        stats.sort(Comparator.comparingLong(StatisticsCatalog.PredicateStats::coverage).reversed());
+
+        List<QuestionFamily> families = selectFamilies(stats);
+
+        log.info("Profiled {} predicates over {} species in {} ms; {} question families: {}",
+                stats.size(), species, (System.nanoTime() - t0) / 1_000_000, families.size(),
+                families.stream().map(QuestionFamily::questionNoun).toList());
+
+        return new StatisticsCatalog(species, stats, families);
+    }
+
+    /** Defaults that qualify, in their usual order, then the discovered ones by coverage. */
+    private static List<QuestionFamily> selectFamilies(List<StatisticsCatalog.PredicateStats> stats) {
+        List<QuestionFamily> out = new ArrayList<>();
+
+        for (QuestionFamily f : QuestionFamily.DEFAULTS) {
+            for (StatisticsCatalog.PredicateStats p : stats) {
+                if (p.family() && p.inverse() == f.inverse() && p.predicateUri().equals(f.predicateUri())) {
+                    out.add(f);
+                }
+            }
+        }
+        for (StatisticsCatalog.PredicateStats p : stats) {
+            QuestionFamily f = QuestionFamily.forPredicate(p.predicateUri(), p.inverse());
+            if (p.family() && !out.contains(f)) out.add(f);
+        }
+
+        return out.isEmpty() ? QuestionFamily.DEFAULTS : out;
+    }
+
+    // =========================================================
+    // SCANS
+    // =========================================================
+
+    private long countSpecies(Dataset dataset) {
+        String q = Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                "SELECT (COUNT(DISTINCT ?s) AS ?n) WHERE { GRAPH ?g { ?s a pokemon:Species . } }";
+        QuerySolution row = sparql.selectOne(dataset, q);
+        return row == null ? 0 : row.getLiteral("n").getLong();
+    }
+
+    private void scanDirect(Dataset dataset, Map<String, Profile> profiles) {
+        String q = Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                Prefixes.prefix("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#") +
+                "SELECT ?p ?o (COUNT(DISTINCT ?s) AS ?n)\n" +
+                "WHERE {\n" +
+                "  GRAPH ?g {\n" +
+                "    ?s a pokemon:Species .\n" +
+                "    ?s ?p ?o .\n" +
+                "    FILTER(isIRI(?o) && ?p != rdf:type)\n" +
+                "  }\n" +
+                "}\n" +
+                "GROUP BY ?p ?o";
+
+        sparql.selectEach(dataset, q, r -> profiles
+                .computeIfAbsent(r.getResource("p").getURI(), p -> new Profile(p, false))
+                .add(r.getResource("o").getURI(), r.getLiteral("n").getLong()));
+
+        // Coverage needs distinct species per predicate, which the value counts cannot give
+        String cq = Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                Prefixes.prefix("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#") +
+                "SELECT ?p (COUNT(DISTINCT ?s) AS ?n)\n" +
+                "WHERE {\n" +
+                "  GRAPH ?g {\n" +
+                "    ?s a pokemon:Species .\n" +
+                "    ?s ?p ?o .\n" +
+                "    FILTER(isIRI(?o) && ?p != rdf:type)\n" +
+                "  }\n" +
+                "}\n" +
+                "GROUP BY ?p";
+
+        sparql.selectEach(dataset, cq, r -> {
+            Profile p = profiles.get(r.getResource("p").getURI());
+            if (p != null) p.coverage = r.getLiteral("n").getLong();
+        });
+    }
+
+    private void scanGenerations(Dataset dataset, Map<String, Profile> profiles) {
+        String q = Prefixes.prefix("pokemon", PokemonKgConfig.POKEMON_NS) +
+                "SELECT ?x (COUNT(DISTINCT ?s) AS ?n)\n" +
+                "WHERE {\n" +
+                "  GRAPH ?g {\n" +
+                "    ?s a pokemon:Species .\n" +
+                "    ?x <" + FEATURES_SPECIES + "> ?s .\n" +
+                "    ?x a <" + CLASS_GENERATION + "> .\n" +
+                "  }\n" +
+                "}\n" +
+                "GROUP BY ?x";
+
+        Profile p = new Profile(FEATURES_SPECIES, true);
+        sparql.selectEach(dataset, q, r -> p.add(r.getResource("x").getURI(), r.getLiteral("n").getLong()));
+        if (p.values.isEmpty()) return;
+
+        // A species belongs to one generation: coverage is the sum
+        for (StatisticsCatalog.ValueStats v : p.values) p.coverage += v.species();
+        profiles.put("^" + FEATURES_SPECIES, p);
+    }
+
+    /** Accumulates one predicate's value counts during the scan. */
+    private static final class Profile {
+        final String predicateUri;
+        final boolean inverse;
+        final List<StatisticsCatalog.ValueStats> values = new ArrayList<>();
+        long coverage;
+
+        Profile(String predicateUri, boolean inverse) {
+            this.predicateUri = predicateUri;
+            this.inverse = inverse;
+        }
+
+        void add(String valueUri, long species) {
+            values.add(new StatisticsCatalog.ValueStats(valueUri, species, 0.0));
+        }
+
+        StatisticsCatalog.PredicateStats toStats(long totalSpecies) {
+            List<StatisticsCatalog.ValueStats> withSelectivity = new ArrayList<>(values.size());
+            boolean splits = false;
+            for (StatisticsCatalog.ValueStats v : values) {
+                double selectivity = (double) v.species() / totalSpecies;
+                withSelectivity.add(new StatisticsCatalog.ValueStats(v.valueUri(), v.species(), selectivity));
+                if (selectivity >= MIN_SPLIT && selectivity <= 1.0 - MIN_SPLIT) splits = true;
+            }
+            withSelectivity.sort(Comparator.comparingLong(StatisticsCatalog.ValueStats::species).reversed());
+
+            double coverageRatio = Math.min(1.0, (double) coverage / totalSpecies);
+            int cardinality = values.size();
+
+            String reason;
+            if (coverageRatio < MIN_COVERAGE) reason = "low coverage";
+            else if (cardinality < 2) reason = "single value";
+            else if (cardinality > MAX_CARDINALITY) reason = "too many values";
+            else if (!splits) reason = "no value splits the species";
+            else reason = "ok";
+
+            return new StatisticsCatalog.PredicateStats(
+                    predicateUri,
+                    inverse,
+                    coverage,
+                    coverageRatio,
+                    cardinality,
+                    "ok".equals(reason),
+                    reason,
+                    withSelectivity
+            );
+        }
+    }
+}
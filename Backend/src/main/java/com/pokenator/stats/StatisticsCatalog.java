@@ -0,0 +1,81 @@
+package com.pokenator.stats;
+
+import com.pokenator.akinator.model.QuestionFamily;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-predicate and per-value statistics of the species graph, collected once at startup by {@link KgProfiler}.
+ * Selectivity is the fraction of all species having a value (0..1).
+ *
+ * <p>{@link #families()} are the predicates worth asking about; {@link #selectivity} orders constraint
+ * patterns in queries (most selective first).
+ */
+public final class StatisticsCatalog {
+
+    private final long speciesCount;
+    private final List<PredicateStats> predicates;
+    private final List<QuestionFamily> families;
+    private final Map<String, Double> selectivities; // "predicate|value" -> selectivity
+
+    StatisticsCatalog(long speciesCount, List<PredicateStats> predicates, List<QuestionFamily> families) {
+        this.speciesCount = speciesCount;
+        this.predicates = predicates;
+        this.families = families;
+        this.selectivities = new HashMap<>();
+        for (PredicateStats p : predicates) {
+            for (ValueStats v : p.values()) {
+                selectivities.put(key(p.predicateUri(), v.valueUri()), v.selectivity());
+            }
+        }
+    }
+
+    /** Catalog that knows nothing: default families, no selectivities. */
+    public static StatisticsCatalog empty() {
+        return new StatisticsCatalog(0, List.of(), QuestionFamily.DEFAULTS);
+    }
+
+    public long speciesCount() { return speciesCount; }
+
+    /** Every profiled predicate, useful as a question family or not. */
+    public List<PredicateStats> predicates() { return predicates; }
+
+    /** Question families selected from the profile, defaults first. */
+    public List<QuestionFamily> families() { return families; }
+
+    /** Fraction of species having the value, or -1 when it was not profiled. */
+    public double selectivity(String predicateUri, String valueUri) {
+        Double s = selectivities.get(key(predicateUri, valueUri));
+        return s == null ? -1.0 : s;
+    }
+
+    private static String key(String predicateUri, String valueUri) {
+        return predicateUri + "|" + valueUri;
+    }
+
+    /**
+     * {@code coverage}: species with at least one value; {@code cardinality}: distinct values;
+     * {@code family}: whether it was kept as a question family (and why not otherwise).
+     */
+    public record PredicateStats(
+            String predicateUri,
+            boolean inverse,
+            long coverage,
+            double coverageRatio,
+            int cardinality,
+            boolean family,
+            String reason,
+            List<ValueStats> values
+    ) {}
+
+    public record ValueStats(String valueUri, long species, double selectivity) {}
+
+    /** JSON view for the admin endpoint. */
+    public record Summary(long speciesCount, List<QuestionFamily> families, List<PredicateStats> predicates) {}
+
+    public Summary summary() {
+        return new Summary(speciesCount, families, predicates);
+    }
+}
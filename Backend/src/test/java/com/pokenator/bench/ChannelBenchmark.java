@@ -0,0 +1,225 @@
+package com.pokenator.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-answer latency of the REST endpoints and of the WebSocket channel against a running server,
+ * over the same pseudo-random answer sequences, then opens idle WebSocket connections (each with a started
+ * game) to see how many one node holds.
+ *
+ * <p>Usage: {@code ChannelBenchmark [baseUrl=http://localhost:8080] [games=100] [connections=1000] [seed=42]}
+ */
+public class ChannelBenchmark {
+
+    private static final int MAX_STEPS = 40;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+        URI ws = URI.create(baseUrl.replaceFirst("^http", "ws") + "/api/game/ws");
+
+        // Warm-up pass on both channels, excluded from the measurement
+        rest(http, baseUrl, Math.max(1, games / 4), seed + 1);
+        socket(http, ws, Math.max(1, games / 4), seed + 1, false);
+
+        report("rest", rest(http, baseUrl, games, seed));
+        report("websocket", socket(http, ws, games, seed, false));
+        report("websocket+spec", socket(http, ws, games, seed, true));
+
+        idleConnections(http, ws, connections);
+    }
+
+    // =========================================================
+    // REST
+    // =========================================================
+
+    private static Latencies rest(HttpClient http, String baseUrl, int games, long seed) throws Exception {
+        Latencies latencies = new Latencies();
+        Random random = new Random(seed);
+
+        for (int g = 0; g < games; g++) {
+            JsonNode start = post(http, baseUrl + "/api/game/start", "");
+            String sessionId = start.path("sessionId").asText();
+            int step = start.path("step").asInt();
+
+            for (int s = 0; s < MAX_STEPS; s++) {
+                String body = "{\"answer\":\"" + randomAnswer(random) + "\",\"step\":" + step + "}";
+                long t0 = System.nanoTime();
+                JsonNode next = post(http, baseUrl + "/api/game/" + sessionId + "/answer", body);
+                latencies.add(System.nanoTime() - t0);
+
+                if (!"QUESTION".equals(next.path("kind").asText())) break;
+                step = next.path("step").asInt();
+            }
+        }
+        return latencies;
+    }
+
+    private static JsonNode post(HttpClient http, String url, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(url + " -> HTTP " + response.statusCode() + ": " + response.body());
+        }
+        return JSON.readTree(response.body());
+    }
+
+    // =========================================================
+    // WEBSOCKET
+    // =========================================================
+
+    private static Latencies socket(HttpClient http, URI uri, int games, long seed, boolean speculate)
+            throws Exception {
+        Latencies latencies = new Latencies();
+        Random random = new Random(seed);
+        Frames frames = new Frames();
+        WebSocket ws = http.newWebSocketBuilder().connectTimeout(TIMEOUT).buildAsync(uri, frames).join();
+
+        try {
+            for (int g = 0; g < games; g++) {
+                ws.sendText("{\"t\":\"start\",\"spec\":" + speculate + "}", true).join();
+                JsonNode q = frames.next("q");
+                int step = q.path("s").asInt();
+
+                for (int s = 0; s < MAX_STEPS; s++) {
+                    String frame = "{\"t\":\"a\",\"a\":\"" + randomAnswer(random).charAt(0) + "\",\"s\":" + step + "}";
+                    long t0 = System.nanoTime();
+                    ws.sendText(frame, true).join();
+                    JsonNode next = frames.next(null);
+                    latencies.add(System.nanoTime() - t0);
+
+                    if (!"q".equals(next.path("t").asText())) break;
+                    step = next.path("s").asInt();
+                }
+            }
+        } finally {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+        }
+        return latencies;
+    }
+
+    /** Opens {@code n} connections, each with a started game, and keeps them open until all are counted. */
+    private static void idleConnections(HttpClient http, URI uri, int n) {
+        List<WebSocket> open = new ArrayList<>(n);
+        long t0 = System.nanoTime();
+        String failure = null;
+        try {
+            for (int i = 0; i < n; i++) {
+                Frames frames = new Frames();
+                WebSocket ws = http.newWebSocketBuilder().connectTimeout(TIMEOUT).buildAsync(uri, frames).join();
+                ws.sendText("{\"t\":\"start\"}", true).join();
+                frames.next("q");
+                open.add(ws);
+            }
+        } catch (Exception e) {
+            failure = e.toString();
+        }
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        System.out.printf("connections: %d/%d open in %d ms%s%n", open.size(), n, ms,
+                failure == null ? "" : " (stopped: " + failure + ")");
+        for (WebSocket ws : open) ws.abort();
+    }
+
+    /** Collects whole text frames; {@link #next} skips unrelated (speculation) frames. */
+    private static final class Frames implements WebSocket.Listener {
+        private final BlockingQueue<JsonNode> queue = new LinkedBlockingQueue<>();
+        private final StringBuilder partial = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                try {
+                    queue.add(JSON.readTree(partial.toString()));
+                } catch (Exception e) {
+                    throw new IllegalStateException("Malformed frame: " + partial, e);
+                } finally {
+                    partial.setLength(0);
+                }
+            }
+            ws.request(1);
+            return null;
+        }
+
+        /** The next frame of type {@code type} (any type but "spec" when null). */
+        JsonNode next(String type) throws InterruptedException {
+            while (true) {
+                JsonNode f = queue.poll(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                if (f == null) throw new IllegalStateException("No frame within " + TIMEOUT);
+                String t = f.path("t").asText();
+                if ("err".equals(t)) throw new IllegalStateException("Server error: " + f);
+                if (type == null ? !"spec".equals(t) : type.equals(t)) return f;
+            }
+        }
+    }
+
+    // =========================================================
+    // REPORT
+    // =========================================================
+
+    private static String randomAnswer(Random random) {
+        int r = random.nextInt(10);
+        return r < 4 ? "YES" : r < 9 ? "NO" : "UNKNOWN";
+    }
+
+    private static void report(String channel, Latencies l) {
+        long[] sorted = l.sorted();
+        System.out.printf("%-15s answers=%d  mean=%.0f us  p50=%.0f us  p99=%.0f us%n",
+                channel, sorted.length, l.meanMicros(), percentile(sorted, 0.50), percentile(sorted, 0.99));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0.0;
+        int i = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[i] / 1000.0;
+    }
+
+    private static final class Latencies {
+        private long[] nanos = new long[1024];
+        private int count;
+
+        void add(long n) {
+            if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = n;
+        }
+
+        long[] sorted() {
+            long[] s = Arrays.copyOf(nanos, count);
+            Arrays.sort(s);
+            return s;
+        }
+
+        double meanMicros() {
+            long total = 0;
+            for (int i = 0; i < count; i++) total += nanos[i];
+            return count == 0 ? 0.0 : total / 1000.0 / count;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.pokenator.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.pokenator.PokenatorApplication;
+import com.pokenator.akinator.service.GameService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test of the game API. Boots the application on a random local port, waits for
+ * {@code /api/ready}, then drives simulated players, one virtual thread each, through {@code /api/game/start},
+ * {@code /answer} and {@code /candidates} with randomized think times, over the JDK {@link HttpClient}.
+ *
+ * <p>Players start evenly over the first quarter of the run and play game after game until it ends. Their sessions
+ * are marked synthetic so they stay out of the gameplay analytics. Client and server share the JVM, so the heap
+ * and GC figures cover both.
+ *
+ * <p>Usage: {@code LoadTest [players=2000] [seconds=60] [thinkMs=1500] [report=loadtest-report.json] [seed=42]
+ * [--spring.property=value ...]}
+ * <br>Writes a JSON report (throughput, latency percentiles and errors per endpoint, heap and GC) to
+ * {@code report} and prints it.
+ */
+public class LoadTest {
+
+    private static final int MAX_STEPS = 40;
+    private static final int CANDIDATE_PAGE = 50;
+    private static final double CANDIDATES_PER_STEP = 0.2;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Config config;
+    private final HttpClient http;
+    private final String baseUrl;
+    private final GameService game;
+
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final AtomicLong peakHeap = new AtomicLong();
+
+    private LoadTest(Config config, HttpClient http, String baseUrl, GameService game) {
+        this.config = config;
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.game = game;
+        for (String name : List.of("start", "answer", "candidates")) endpoints.put(name, new Endpoint());
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        List<String> springArgs = new ArrayList<>();
+        for (String a : args) (a.startsWith("--") ? springArgs : positional).add(a);
+
+        Config config = new Config(
+                positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 2000,
+                positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 60,
+                positional.size() > 2 ? Long.parseLong(positional.get(2)) : 1500,
+                positional.size() > 3 ? positional.get(3) : "loadtest-report.json",
+                positional.size() > 4 ? Long.parseLong(positional.get(4)) : 42L
+        );
+
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(PokenatorApplication.class)
+                .properties("server.port=0")
+                .run(springArgs.toArray(String[]::new));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            int port = ((WebServerApplicationContext) ctx).getWebServer().getPort();
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(TIMEOUT)
+                    .build();
+
+            LoadTest test = new LoadTest(config, http, "http://localhost:" + port, ctx.getBean(GameService.class));
+            test.awaitReady();
+            Report report = test.run();
+
+            String json = JSON.writeValueAsString(report);
+            Files.writeString(Path.of(config.report()), json);
+            System.out.println(json);
+        } finally {
+            SpringApplication.exit(ctx);
+        }
+    }
+
+    private void awaitReady() throws Exception {
+        HttpRequest ready = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ready")).timeout(TIMEOUT).build();
+        while (http.send(ready, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+            Thread.sleep(500);
+        }
+    }
+
+    // =========================================================
+    // RUN
+    // =========================================================
+
+    private Report run() throws InterruptedException {
+        long durationNanos = TimeUnit.SECONDS.toNanos(config.seconds());
+        long rampNanos = durationNanos / 4;
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+
+        var sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(this::sampleHeap, 0, 200, TimeUnit.MILLISECONDS);
+
+        long t0 = System.nanoTime();
+        long end = t0 + durationNanos;
+        try (ExecutorService players = Executors.newVirtualThreadPerTaskExecutor()) {
+            SplittableRandom seeds = new SplittableRandom(config.seed());
+            for (int p = 0; p < config.players(); p++) {
+                long startAt = t0 + rampNanos * p / config.players();
+                SplittableRandom random = seeds.split();
+                players.execute(() -> play(random, startAt, end));
+            }
+        } // waits for every player to finish its current step
+        long elapsedNanos = System.nanoTime() - t0;
+
+        sampler.shutdownNow();
+        sampleHeap();
+        return report(elapsedNanos, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    private void play(SplittableRandom random, long startAt, long end) {
+        try {
+            sleepNanos(startAt - System.nanoTime());
+            while (System.nanoTime() < end) {
+                playGame(random, end);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void playGame(SplittableRandom random, long end) throws InterruptedException {
+        JsonNode start = call("start", post("/api/game/start", ""));
+        if (start == null) {
+            think(random);
+            return;
+        }
+        gamesStarted.increment();
+        String sessionId = start.path("sessionId").asText();
+        game.getState(sessionId).markSynthetic();
+
+        JsonNode question = start.path("question");
+        int step = start.path("step").asInt();
+        for (int s = 0; s < MAX_STEPS && System.nanoTime() < end; s++) {
+            think(random);
+
+            if (random.nextDouble() < CANDIDATES_PER_STEP) {
+                call("candidates", get("/api/game/" + sessionId + "/candidates?limit=" + CANDIDATE_PAGE));
+            }
+
+            String answer = "GUESS".equals(question.path("kind").asText())
+                    ? (random.nextBoolean() ? "YES" : "NO")
+                    : randomAnswer(random);
+            JsonNode next = call("answer", post("/api/game/" + sessionId + "/answer",
+                    "{\"answer\":\"" + answer + "\",\"step\":" + step + "}"));
+            if (next == null || !"QUESTION".equals(next.path("kind").asText())) break;
+
+            question = next.path("question");
+            step = next.path("step").asInt();
+        }
+        gamesFinished.increment();
+    }
+
+    /** Uniform in [thinkMs/2, 3*thinkMs/2]. */
+    private void think(SplittableRandom random) throws InterruptedException {
+        long mean = TimeUnit.MILLISECONDS.toNanos(config.thinkMs());
+        sleepNanos(mean / 2 + (long) (random.nextDouble() * mean));
+    }
+
+    private static void sleepNanos(long nanos) throws InterruptedException {
+        if (nanos > 0) Thread.sleep(Duration.ofNanos(nanos));
+    }
+
+    private static String randomAnswer(SplittableRandom random) {
+        int r = random.nextInt(10);
+        return r < 4 ? "YES" : r < 9 ? "NO" : "UNKNOWN";
+    }
+
+    // =========================================================
+    // HTTP
+    // =========================================================
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(TIMEOUT).GET().build();
+    }
+
+    /** Sends the request and records it under {@code endpoint}; the parsed body, or null on any error. */
+    private JsonNode call(String endpoint, HttpRequest request) throws InterruptedException {
+        Endpoint e = endpoints.get(endpoint);
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            e.latency.record(System.nanoTime() - t0);
+            if (response.statusCode() != 200) {
+                e.error(String.valueOf(response.statusCode()));
+                return null;
+            }
+            return JSON.readTree(response.body());
+        } catch (IOException ex) {
+            e.latency.record(System.nanoTime() - t0);
+            e.error(ex.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    // =========================================================
+    // JVM
+    // =========================================================
+
+    private void sampleHeap() {
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        peakHeap.accumulateAndGet(used, Math::max);
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += Math.max(0, gc.getCollectionCount()); // -1 when not supported
+        }
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += Math.max(0, gc.getCollectionTime()); // -1 when not supported
+        }
+        return n;
+    }
+
+    // =========================================================
+    // REPORT
+    // =========================================================
+
+    private Report report(long elapsedNanos, long gcCollections, long gcMillis) {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, EndpointReport> perEndpoint = new LinkedHashMap<>();
+        long requests = 0;
+        long errors = 0;
+        for (Map.Entry<String, Endpoint> en : endpoints.entrySet()) {
+            EndpointReport r = en.getValue().report(seconds);
+            perEndpoint.put(en.getKey(), r);
+            requests += r.requests();
+            errors += r.errors();
+        }
+
+        var heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return new Report(
+                config,
+                Runtime.version().toString(),
+                Math.round(seconds * 1000),
+                gamesStarted.sum(),
+                gamesFinished.sum(),
+                requests,
+                requests / seconds,
+                requests == 0 ? 0.0 : (double) errors / requests,
+                perEndpoint,
+                new Jvm(heap.getUsed() >> 20, peakHeap.get() >> 20, heap.getCommitted() >> 20, heap.getMax() >> 20,
+                        gcCollections, gcMillis)
+        );
+    }
+
+    public record Config(int players, int seconds, long thinkMs, String report, long seed) {}
+
+    public record Report(
+            Config config,
+            String javaVersion,
+            long durationMs,
+            long gamesStarted,
+            long gamesFinished,
+            long requests,
+            double requestsPerSecond,
+            double errorRate,
+            Map<String, EndpointReport> endpoints,
+            Jvm jvm
+    ) {}
+
+    /** Latencies in milliseconds; {@code errors} by HTTP status or exception name. */
+    public record EndpointReport(
+            long requests,
+            double requestsPerSecond,
+            long errors,
+            Map<String, Long> errorsByCause,
+            double meanMs,
+            double p50Ms,
+            double p90Ms,
+            double p99Ms,
+            double p999Ms,
+            double maxMs
+    ) {}
+
+    public record Jvm(long heapUsedMb, long heapPeakMb, long heapCommittedMb, long heapMaxMb,
+                      long gcCollections, long gcMillis) {}
+
+    private static final class Endpoint {
+        final Histogram latency = new Histogram();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void error(String cause) {
+            errors.computeIfAbsent(cause, k -> new LongAdder()).increment();
+        }
+
+        EndpointReport report(double seconds) {
+            Map<String, Long> byCause = new LinkedHashMap<>();
+            long total = 0;
+            for (Map.Entry<String, LongAdder> e : errors.entrySet()) {
+                byCause.put(e.getKey(), e.getValue().sum());
+                total += e.getValue().sum();
+            }
+            long n = latency.count();
+            return new EndpointReport(n, n / seconds, total, byCause, latency.meanMillis(),
+                    latency.percentileMillis(0.50), latency.percentileMillis(0.90),
+                    latency.percentileMillis(0.99), latency.percentileMillis(0.999), latency.maxMillis());
+        }
+    }
+
+    /**
+     * Lock-free latency histogram: microsecond buckets growing by 5% each, so percentiles are within 5% and
+     * thousands of recording threads never contend on a lock.
+     */
+    private static final class Histogram {
+        private static final double GROWTH = Math.log(1.05);
+        private static final int BUCKETS = 400; // up to ~5 minutes
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = Math.max(1, nanos / 1000);
+            counts.incrementAndGet(Math.min(BUCKETS - 1, (int) (Math.log(micros) / GROWTH)));
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long count() {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+            return n;
+        }
+
+        double meanMillis() {
+            long n = count();
+            return n == 0 ? 0.0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        double maxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        /** Upper bound of the bucket holding the {@code p} quantile. */
+        double percentileMillis(double p) {
+            long n = count();
+            if (n == 0) return 0.0;
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) return Math.min(Math.exp((i + 1) * GROWTH), maxNanos.get() / 1e3) / 1000.0;
+            }
+            return maxMillis();
+        }
+    }
+}
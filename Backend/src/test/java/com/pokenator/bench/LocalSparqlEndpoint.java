@@ -0,0 +1,126 @@
+package com.pokenator.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.system.Txn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal SPARQL protocol endpoint over a local {@link Dataset}, standing in for a Fuseki server when exercising
+ * {@code RemoteSparqlClient} without one: SELECT and ASK by GET ({@code ?query=}) or POST (form or
+ * {@code application/sparql-query}), answered as SPARQL JSON results. Listens on a random loopback port.
+ */
+public final class LocalSparqlEndpoint implements AutoCloseable {
+
+    private final Dataset dataset;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder requests = new LongAdder();
+
+    private LocalSparqlEndpoint(Dataset dataset) throws IOException {
+        this.dataset = dataset;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/sparql", this::handle);
+    }
+
+    public static LocalSparqlEndpoint start(Dataset dataset) throws IOException {
+        LocalSparqlEndpoint endpoint = new LocalSparqlEndpoint(dataset);
+        endpoint.server.start();
+        return endpoint;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/sparql";
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try (exchange) {
+            String query = queryOf(exchange);
+            if (query == null) {
+                reply(exchange, 400, "text/plain", "Missing 'query'".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] body;
+            try {
+                body = execute(QueryFactory.create(query));
+            } catch (QueryParseException | UnsupportedOperationException e) {
+                reply(exchange, 400, "text/plain", e.getMessage().getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            reply(exchange, 200, "application/sparql-results+json", body);
+        } catch (RuntimeException e) {
+            reply(exchange, 500, "text/plain", e.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private byte[] execute(Query query) {
+        if (!query.isSelectType() && !query.isAskType()) {
+            throw new UnsupportedOperationException("Only SELECT and ASK are supported");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Txn.executeRead(dataset, () -> {
+            try (QueryExecution qexec = QueryExecution.dataset(dataset).query(query).build()) {
+                if (query.isAskType()) ResultSetFormatter.outputAsJSON(out, qexec.execAsk());
+                else ResultSetFormatter.outputAsJSON(out, qexec.execSelect());
+            }
+        });
+        return out.toByteArray();
+    }
+
+    private static String queryOf(HttpExchange exchange) throws IOException {
+        if ("GET".equals(exchange.getRequestMethod())) {
+            return param(exchange.getRequestURI().getRawQuery(), "query");
+        }
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type != null && type.startsWith("application/sparql-query")) return body;
+        return param(body, "query");
+    }
+
+    private static String param(String form, String name) {
+        if (form == null) return null;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void reply(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+}
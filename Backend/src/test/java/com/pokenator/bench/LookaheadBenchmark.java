@@ -0,0 +1,142 @@
+package com.pokenator.bench;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionFamily;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
+import com.pokenator.akinator.service.QuestionSelector;
+import com.pokenator.akinator.service.ScoringEngine;
+import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.analytics.GameAnalytics;
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.index.CooccurrenceMatrix;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.index.SpeciesIndexBuilder;
+import com.pokenator.rdf.SnapshotDatasetProvider;
+import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.JenaSparqlClient;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Plays one game per species (or the first {@code species} of them), answering every question truthfully from
+ * the index, with the greedy selector and with the two-step lookahead selector. Reports questions per game, how
+ * many games ended on the right species and the selection cost per step. The endgame solver is off, so the
+ * selector chooses every question down to the final guess.
+ *
+ * <p>Usage: {@code LookaheadBenchmark [species=all] [max-mb=64]}
+ */
+public class LookaheadBenchmark {
+
+    private static final int MAX_STEPS = 60;
+
+    public static void main(String[] args) {
+        SnapshotDatasetProvider provider = new SnapshotDatasetProvider(
+                PokemonKgConfig.ONTOLOGY_PATH,
+                PokemonKgConfig.DATASET_PATH,
+                Path.of(PokemonKgConfig.SNAPSHOT_PATH));
+        Dataset dataset = provider.getDataset();
+
+        SparqlClient sparql = new JenaSparqlClient(20000);
+        SpeciesIndex index = new SpeciesIndexBuilder(sparql)
+                .openOrBuildQuietly(dataset, provider.sourceChecksum(), Path.of(PokemonKgConfig.INDEX_PATH));
+        if (index == null) {
+            System.err.println("The species index is required");
+            return;
+        }
+
+        int species = args.length > 0 && !args[0].equals("all")
+                ? Math.min(Integer.parseInt(args[0]), index.speciesCount())
+                : index.speciesCount();
+        long maxBytes = (args.length > 1 ? Long.parseLong(args[1]) : 64L) << 20;
+
+        SpeciesRepository repo = new SpeciesRepository(sparql, index);
+        QuestionCatalog catalog = QuestionCatalog.build(dataset, sparql, index, QuestionFamily.DEFAULTS, List.of("en"));
+
+        long t0 = System.nanoTime();
+        CooccurrenceMatrix matrix = CooccurrenceMatrix.build(index, maxBytes);
+        if (matrix == null) {
+            System.err.println("Co-occurrence matrix over the limit; raise max-mb");
+            return;
+        }
+        System.out.printf("matrix: %d values, %,d bytes, %d ms%n",
+                matrix.valueCount(), matrix.bytes(), (System.nanoTime() - t0) / 1_000_000);
+
+        QuestionSelector greedy = new QuestionSelector(repo, catalog);
+        QuestionSelector lookahead =
+                new QuestionSelector(repo, catalog, ScoringEngine.disabled(), GameAnalytics.inMemory(), matrix);
+
+        // Warm-up pass (class loading, JIT) is excluded from the measurement
+        run(dataset, repo, index, greedy, Math.min(species, 50));
+        run(dataset, repo, index, lookahead, Math.min(species, 50));
+
+        report("greedy", run(dataset, repo, index, greedy, species));
+        report("lookahead", run(dataset, repo, index, lookahead, species));
+    }
+
+    private static Result run(Dataset dataset, SpeciesRepository repo, SpeciesIndex index,
+                              QuestionSelector selector, int species) {
+        GameService game = new GameService(dataset, new SessionManager(), repo, selector);
+        Result result = new Result();
+
+        for (int target = 0; target < species; target++) {
+            String targetUri = index.speciesUri(target);
+            GameService.StartGameResult start = game.start();
+            Question q = start.question();
+
+            int questions = 0;
+            GameService.NextStepResult next = null;
+            for (int step = 0; step < MAX_STEPS; step++) {
+                if (q.kind() != QuestionKind.GUESS) questions++;
+
+                long s0 = System.nanoTime();
+                next = game.answer(start.sessionId(), truth(index, target, targetUri, q));
+                result.nanos += System.nanoTime() - s0;
+                result.steps++;
+
+                if (!(next instanceof GameService.NextStepResult.NextQuestion n)) break;
+                q = n.question();
+            }
+
+            result.games++;
+            result.questions += questions;
+            result.maxQuestions = Math.max(result.maxQuestions, questions);
+            if (next instanceof GameService.NextStepResult.Guess(String uri) && uri.equals(targetUri)) {
+                result.found++;
+            }
+        }
+        return result;
+    }
+
+    /** The answer a player thinking of {@code target} gives. */
+    private static Answer truth(SpeciesIndex index, int target, String targetUri, Question q) {
+        if (q.kind() == QuestionKind.GUESS) {
+            return targetUri.equals(q.objectUri()) ? Answer.YES : Answer.NO;
+        }
+        if (q.kind() != QuestionKind.HAS_VALUE || q.objectUri() == null || q.objectUri().isBlank()) {
+            return Answer.UNKNOWN;
+        }
+        int v = index.valueId(q.predicateUri(), q.objectUri());
+        return v >= 0 && index.has(v, target) ? Answer.YES : Answer.NO;
+    }
+
+    private static void report(String selector, Result r) {
+        System.out.printf("%-10s games=%d  questions/game=%.2f  max=%d  found=%.1f%%  us/step=%.1f%n",
+                selector, r.games, r.questions / (double) Math.max(1, r.games), r.maxQuestions,
+                100.0 * r.found / Math.max(1, r.games), r.nanos / 1000.0 / Math.max(1, r.steps));
+    }
+
+    private static final class Result {
+        long games;
+        long questions;
+        int maxQuestions;
+        long found;
+        long steps;
+        long nanos;
+    }
+}
@@ -0,0 +1,160 @@
+package com.pokenator.bench;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.Question;
+import com.pokenator.akinator.model.QuestionFamily;
+import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
+import com.pokenator.akinator.service.QuestionSelector;
+import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.rdf.InMemoryDatasetProvider;
+import com.pokenator.rdf.SnapshotDatasetProvider;
+import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.JenaSparqlClient;
+import com.pokenator.sparql.RemoteSparqlClient;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.QuerySolution;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Plays the same pseudo-random games in SPARQL mode (no index) against the local dataset and through
+ * {@link RemoteSparqlClient}: one request per query, batched, and batched with the result cache. Reports time
+ * per step and HTTP requests per step, and whether every remote run asked the same questions and made the same
+ * guesses as the local one (the client's equivalence itself is asserted by {@code RemoteSparqlClientTest}).
+ *
+ * <p>Without an endpoint URL the local dataset is served by a {@link LocalSparqlEndpoint} on loopback, which
+ * measures the request count and protocol overhead but not network latency.
+ *
+ * <p>Usage: {@code RemoteSparqlBenchmark [endpoint=embedded] [games=50] [seed=42]}
+ */
+public class RemoteSparqlBenchmark {
+
+    private static final int MAX_CONNECTIONS = 8;
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 && !args[0].equals("embedded") ? args[0] : null;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+        SnapshotDatasetProvider provider = new SnapshotDatasetProvider(
+                PokemonKgConfig.ONTOLOGY_PATH,
+                PokemonKgConfig.DATASET_PATH,
+                Path.of(PokemonKgConfig.SNAPSHOT_PATH));
+        Dataset local = provider.getDataset();
+        Dataset empty = new InMemoryDatasetProvider().getDataset();
+
+        LocalSparqlEndpoint embedded = url == null ? LocalSparqlEndpoint.start(local) : null;
+        String endpoint = url != null ? url : embedded.url();
+        System.out.println("endpoint: " + endpoint);
+
+        try {
+            Run reference = run("local", local, new JenaSparqlClient(20000), null, games, seed);
+            report(reference, reference);
+
+            try (RemoteSparqlClient remote = new RemoteSparqlClient(endpoint, 20000, MAX_CONNECTIONS, 0, 0)) {
+                report(reference, run("remote", empty, unbatched(remote), remote, games, seed));
+            }
+            try (RemoteSparqlClient remote = new RemoteSparqlClient(endpoint, 20000, MAX_CONNECTIONS, 0, 0)) {
+                report(reference, run("batched", empty, remote, remote, games, seed));
+            }
+            try (RemoteSparqlClient remote =
+                         new RemoteSparqlClient(endpoint, 20000, MAX_CONNECTIONS, 10_000, 300_000)) {
+                report(reference, run("cached", empty, remote, remote, games, seed));
+            }
+        } finally {
+            if (embedded != null) embedded.close();
+        }
+    }
+
+    private static Run run(String name, Dataset dataset, SparqlClient sparql, RemoteSparqlClient remote,
+                           int games, long seed) {
+        SpeciesRepository repo = new SpeciesRepository(sparql);
+        QuestionCatalog catalog = QuestionCatalog.build(dataset, sparql, null, QuestionFamily.DEFAULTS, List.of("en"));
+        GameService game = new GameService(dataset, new SessionManager(), repo, new QuestionSelector(repo, catalog));
+
+        long requestsBefore = remote == null ? 0 : remote.stats().requests();
+        Run run = new Run(name);
+        Random random = new Random(seed);
+        Answer[] answers = Answer.values();
+
+        for (int g = 0; g < games; g++) {
+            GameService.StartGameResult start = game.start();
+            run.trace.add(key(start.question()));
+
+            for (int step = 0; step < 40; step++) {
+                Answer answer = answers[random.nextInt(answers.length)];
+
+                long t0 = System.nanoTime();
+                GameService.NextStepResult next = game.answer(start.sessionId(), answer);
+                run.nanos += System.nanoTime() - t0;
+                run.steps++;
+
+                if (next instanceof GameService.NextStepResult.NextQuestion(Question q, long remaining, int s)) {
+                    run.trace.add(key(q));
+                } else {
+                    run.trace.add(next instanceof GameService.NextStepResult.Guess(String uri) ? uri : "none");
+                    break;
+                }
+            }
+        }
+
+        if (remote != null) run.stats = remote.stats();
+        run.requests = remote == null ? 0 : run.stats.requests() - requestsBefore;
+        return run;
+    }
+
+    /** Hides {@link SparqlClient#selectAll}/{@link SparqlClient#batches}, so every query is its own request. */
+    private static SparqlClient unbatched(SparqlClient delegate) {
+        return new SparqlClient() {
+            @Override
+            public List<QuerySolution> select(Dataset dataset, String sparql) {
+                return delegate.select(dataset, sparql);
+            }
+
+            @Override
+            public void selectEach(Dataset dataset, String sparql, Consumer<QuerySolution> consumer) {
+                delegate.selectEach(dataset, sparql, consumer);
+            }
+
+            @Override
+            public boolean ask(Dataset dataset, String sparql) {
+                return delegate.ask(dataset, sparql);
+            }
+        };
+    }
+
+    private static String key(Question q) {
+        return q.kind() + " " + q.predicateUri() + " " + q.objectUri();
+    }
+
+    private static void report(Run reference, Run r) {
+        String same = r == reference ? "-" : String.valueOf(r.trace.equals(reference.trace));
+        System.out.printf("%-8s steps=%d  ms/step=%.2f  requests/step=%.2f  same-as-local=%s%n",
+                r.name, r.steps, r.nanos / 1e6 / Math.max(1, r.steps),
+                r.requests / (double) Math.max(1, r.steps), same);
+        if (r.stats != null && (r.stats.batches() > 0 || r.stats.cacheHits() > 0)) {
+            System.out.printf("         batches=%d (queries=%d)  cache hits=%d misses=%d%n",
+                    r.stats.batches(), r.stats.batchedQueries(), r.stats.cacheHits(), r.stats.cacheMisses());
+        }
+    }
+
+    private static final class Run {
+        final String name;
+        final List<String> trace = new ArrayList<>();
+        long steps;
+        long nanos;
+        long requests;
+        RemoteSparqlClient.Stats stats;
+
+        Run(String name) {
+            this.name = name;
+        }
+    }
+}
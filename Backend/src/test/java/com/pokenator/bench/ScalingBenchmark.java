@@ -0,0 +1,159 @@
+package com.pokenator.bench;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
+import com.pokenator.akinator.service.QuestionSelector;
+import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.index.SpeciesIndexBuilder;
+import com.pokenator.rdf.InMemoryDatasetProvider;
+import com.pokenator.rdf.RdfLoader;
+import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.JenaSparqlClient;
+import com.pokenator.sparql.SparqlClient;
+import com.pokenator.stats.KgProfiler;
+import com.pokenator.stats.StatisticsCatalog;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic catalogs of increasing size ({@link SyntheticKgGenerator}) and, for each, reports load
+ * time, heap held by the dataset, per-step answer latency (SPARQL-only and index-backed engines) and heap per
+ * live session.
+ *
+ * <p>Usage: {@code ScalingBenchmark [sizes=10000,100000] [games=100] [sessions=1000] [skew=1.1] [seed=42]}
+ * <br>Prints one tab-separated row per size and engine.
+ */
+public class ScalingBenchmark {
+
+    private static final int MAX_STEPS = 40;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length > 0
+                ? Arrays.stream(args[0].split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray()
+                : new int[]{10_000, 100_000};
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        double skew = args.length > 3 ? Double.parseDouble(args[3]) : 1.1;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42L;
+
+        Path dir = Files.createTempDirectory("pokenator-scaling");
+        System.out.println("species\tengine\tloadMs\tindexMs\tdatasetMB\tsteps\tp50us\tp99us\tmeanUs\tsessionBytes");
+
+        for (int size : sizes) {
+            Path file = dir.resolve("synthetic-" + size + ".nq");
+            new SyntheticKgGenerator(size, skew, seed).write(file);
+
+            long heapBefore = usedHeap();
+            long t0 = System.nanoTime();
+            Dataset dataset = new InMemoryDatasetProvider().getDataset();
+            new RdfLoader().loadOntology(dataset, PokemonKgConfig.ONTOLOGY_PATH);
+            RDFDataMgr.read(dataset, file.toString(), Lang.NQUADS);
+            long loadMs = (System.nanoTime() - t0) / 1_000_000;
+            long datasetBytes = usedHeap() - heapBefore;
+
+            SparqlClient sparql = new JenaSparqlClient(120_000);
+            StatisticsCatalog stats = new KgProfiler(sparql).profile(dataset);
+
+            long t1 = System.nanoTime();
+            SpeciesIndex index = new SpeciesIndexBuilder(sparql)
+                    .openOrBuildQuietly(dataset, size, dir.resolve("species-" + size + ".index"));
+            long indexMs = (System.nanoTime() - t1) / 1_000_000;
+
+            Row base = new Row(size, loadMs, indexMs, datasetBytes);
+            run(base.engine("sparql"), dataset, sparql, new SpeciesRepository(sparql, null, stats),
+                    stats, games, sessions, seed);
+            if (index != null) {
+                run(base.engine("index"), dataset, sparql, new SpeciesRepository(sparql, index, stats),
+                        stats, games, sessions, seed);
+            }
+
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void run(Row row, Dataset dataset, SparqlClient sparql, SpeciesRepository repo,
+                            StatisticsCatalog stats, int games, int sessions, long seed) {
+        QuestionCatalog catalog = QuestionCatalog.build(dataset, sparql, repo.index(), stats.families(), List.of("en"));
+        SessionManager sessionManager = new SessionManager();
+        GameService game = new GameService(dataset, sessionManager, repo, new QuestionSelector(repo, catalog));
+
+        // Warm-up pass (class loading, JIT) is excluded from the measurement
+        play(game, Math.max(1, games / 4), seed + 1, null);
+
+        long[] latencies = new long[games * MAX_STEPS];
+        int steps = play(game, games, seed, latencies);
+        Arrays.sort(latencies, 0, steps);
+
+        // Heap per live session: games started and left open, as abandoned ones are
+        long heapBefore = usedHeap();
+        String[] open = new String[sessions];
+        for (int i = 0; i < sessions; i++) open[i] = game.start().sessionId();
+        long sessionBytes = sessions == 0 ? 0 : (usedHeap() - heapBefore) / sessions;
+        for (String id : open) sessionManager.remove(id);
+
+        long total = 0;
+        for (int i = 0; i < steps; i++) total += latencies[i];
+
+        System.out.printf("%d\t%s\t%d\t%d\t%.1f\t%d\t%.1f\t%.1f\t%.1f\t%d%n",
+                row.species, row.engine, row.loadMs, row.indexMs, row.datasetBytes / 1048576.0, steps,
+                percentile(latencies, steps, 0.50) / 1000.0,
+                percentile(latencies, steps, 0.99) / 1000.0,
+                steps == 0 ? 0.0 : total / 1000.0 / steps,
+                sessionBytes);
+    }
+
+    /** Plays pseudo-random games; records each answer's latency in {@code latencies} when given. */
+    private static int play(GameService game, int games, long seed, long[] latencies) {
+        Random random = new Random(seed);
+        Answer[] answers = Answer.values();
+        int recorded = 0;
+
+        for (int g = 0; g < games; g++) {
+            String sessionId = game.start().sessionId();
+
+            for (int step = 0; step < MAX_STEPS; step++) {
+                Answer answer = answers[random.nextInt(answers.length)];
+
+                long t0 = System.nanoTime();
+                GameService.NextStepResult next = game.answer(sessionId, answer);
+                long t1 = System.nanoTime();
+
+                if (latencies != null) latencies[recorded++] = t1 - t0;
+                if (!(next instanceof GameService.NextStepResult.NextQuestion)) break;
+            }
+        }
+        return recorded;
+    }
+
+    private static long percentile(long[] sorted, int n, double p) {
+        if (n == 0) return 0;
+        return sorted[Math.min(n - 1, (int) Math.floor(p * n))];
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private record Row(int species, String engine, long loadMs, long indexMs, long datasetBytes) {
+        Row(int species, long loadMs, long indexMs, long datasetBytes) {
+            this(species, null, loadMs, indexMs, datasetBytes);
+        }
+
+        Row engine(String engine) {
+            return new Row(species, engine, loadMs, indexMs, datasetBytes);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.pokenator.bench;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.QuestionFamily;
+import com.pokenator.akinator.service.GameService;
+import com.pokenator.akinator.service.QuestionCatalog;
+import com.pokenator.akinator.service.QuestionSelector;
+import com.pokenator.akinator.session.SessionManager;
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.index.SpeciesIndex;
+import com.pokenator.index.SpeciesIndexBuilder;
+import com.pokenator.rdf.SnapshotDatasetProvider;
+import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.sparql.JenaSparqlClient;
+import com.pokenator.sparql.SparqlClient;
+import org.apache.jena.query.Dataset;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures bytes allocated by the calling thread per {@link GameService#answer} call, for the SPARQL-only
+ * engine and for the index-backed engine, over the same sequence of pseudo-random games.
+ *
+ * <p>Usage: {@code StepAllocationBenchmark [games=200] [seed=42]}
+ */
+public class StepAllocationBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+
+        SnapshotDatasetProvider provider = new SnapshotDatasetProvider(
+                PokemonKgConfig.ONTOLOGY_PATH,
+                PokemonKgConfig.DATASET_PATH,
+                Path.of(PokemonKgConfig.SNAPSHOT_PATH));
+        Dataset dataset = provider.getDataset();
+
+        SparqlClient sparql = new JenaSparqlClient(20000);
+        SpeciesIndex index = new SpeciesIndexBuilder(sparql)
+                .openOrBuildQuietly(dataset, provider.sourceChecksum(), Path.of(PokemonKgConfig.INDEX_PATH));
+
+        report("sparql", run(dataset, sparql, new SpeciesRepository(sparql), games, seed));
+        if (index != null) {
+            report("index", run(dataset, sparql, new SpeciesRepository(sparql, index), games, seed));
+        }
+    }
+
+    private static Result run(Dataset dataset, SparqlClient sparql, SpeciesRepository repo, int games, long seed) {
+        QuestionCatalog catalog = QuestionCatalog.build(dataset, sparql, repo.index(), QuestionFamily.DEFAULTS, List.of("en"));
+        GameService game = new GameService(dataset, new SessionManager(), repo, new QuestionSelector(repo, catalog));
+
+        // Warm-up pass (class loading, JIT) is excluded from the measurement
+        play(game, Math.max(1, games / 4), seed + 1, null);
+
+        Result result = new Result();
+        play(game, games, seed, result);
+        return result;
+    }
+
+    private static void play(GameService game, int games, long seed, Result result) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        Random random = new Random(seed);
+        Answer[] answers = Answer.values();
+
+        for (int g = 0; g < games; g++) {
+            String sessionId = game.start().sessionId();
+
+            for (int step = 0; step < 40; step++) {
+                Answer answer = answers[random.nextInt(answers.length)];
+
+                long bytesBefore = mx.getThreadAllocatedBytes(tid);
+                long t0 = System.nanoTime();
+                GameService.NextStepResult next = game.answer(sessionId, answer);
+                long t1 = System.nanoTime();
+                long bytesAfter = mx.getThreadAllocatedBytes(tid);
+
+                if (result != null) {
+                    result.steps++;
+                    result.bytes += bytesAfter - bytesBefore;
+                    result.nanos += t1 - t0;
+                }
+                if (!(next instanceof GameService.NextStepResult.NextQuestion)) break;
+            }
+        }
+    }
+
+    private static void report(String engine, Result r) {
+        System.out.printf("%-8s steps=%d  bytes/step=%,d  us/step=%.1f%n",
+                engine, r.steps, r.bytes / Math.max(1, r.steps), r.nanos / 1000.0 / Math.max(1, r.steps));
+    }
+
+    private static final class Result {
+        long steps;
+        long bytes;
+        long nanos;
+    }
+}
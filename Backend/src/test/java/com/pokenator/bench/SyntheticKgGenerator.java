@@ -0,0 +1,203 @@
+package com.pokenator.bench;
+
+import com.pokenator.config.PokemonKgConfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes a synthetic species graph as N-Quads in the {@link PokemonKgConfig#POKEMON_NS} vocabulary, for
+ * scaling tests well beyond the real Pokédex.
+ *
+ * <p>Every species gets one or two types, a colour, a shape, a habitat (most species) and a generation
+ * ({@code ?gen featuresSpecies ?s}), with English and Portuguese labels. Values are drawn from a Zipf
+ * distribution with exponent {@code skew} (0 = uniform), so a few types or colours dominate as in the real
+ * data. The generation count grows with the catalog, up to 64 (the profiler's cardinality limit).
+ *
+ * <p>Usage: {@code SyntheticKgGenerator <out.nq> [species=10000] [skew=1.1] [seed=42]}
+ */
+public class SyntheticKgGenerator {
+
+    private static final String NS = PokemonKgConfig.POKEMON_NS;
+    private static final String BASE = "https://pokemonkg.org/synthetic/";
+    private static final String GRAPH = "<" + BASE + "graph>";
+
+    private static final String RDF_TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+    private static final String RDFS_LABEL = "<http://www.w3.org/2000/01/rdf-schema#label>";
+    private static final String COLOUR_CLASS = "<http://dbpedia.org/ontology/Colour>";
+
+    private static final int TYPES = 18;
+    private static final int COLOURS = 10;
+    private static final int SHAPES = 14;
+    private static final int HABITATS = 9;
+    private static final int MAX_GENERATIONS = 64;
+
+    /** Species without a habitat, as in the real data where it is only known for older generations. */
+    private static final double NO_HABITAT = 0.2;
+    private static final double DUAL_TYPE = 0.45;
+
+    private static final String[] SYLLABLES = {
+            "pi", "ka", "chu", "bul", "ba", "sa", "char", "man", "der", "squi", "tor", "tle", "me", "ow", "eev",
+            "ee", "go", "lem", "dra", "ni", "te", "zu", "bat", "ve", "no", "sau", "gar", "ra", "ta", "mew", "lu",
+            "gi", "ho", "oh", "ky", "ogre", "groud", "don", "ray", "quaza", "mi", "lo", "tic", "lax", "snor"
+    };
+
+    private final int species;
+    private final double skew;
+    private final long seed;
+
+    public SyntheticKgGenerator(int species, double skew, long seed) {
+        this.species = species;
+        this.skew = skew;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SyntheticKgGenerator <out.nq> [species=10000] [skew=1.1] [seed=42]");
+            System.exit(2);
+        }
+        Path out = Path.of(args[0]);
+        int species = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        double skew = args.length > 2 ? Double.parseDouble(args[2]) : 1.1;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+
+        long t0 = System.nanoTime();
+        long quads = new SyntheticKgGenerator(species, skew, seed).write(out);
+        System.out.printf("%s: %,d species, %,d quads in %d ms%n",
+                out, species, quads, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    public int generations() {
+        return Math.max(1, Math.min(MAX_GENERATIONS, (species + 149) / 150));
+    }
+
+    /** Writes the graph to {@code out}; returns the number of quads. */
+    public long write(Path out) throws IOException {
+        Path parent = out.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+
+        try (Writer w = new BufferedWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8), 1 << 16)) {
+            return write(w);
+        }
+    }
+
+    public long write(Writer w) throws IOException {
+        Random random = new Random(seed);
+        int generations = generations();
+
+        Zipf types = new Zipf(TYPES, skew);
+        Zipf colours = new Zipf(COLOURS, skew);
+        Zipf shapes = new Zipf(SHAPES, skew);
+        Zipf habitats = new Zipf(HABITATS, skew);
+
+        long quads = 0;
+        quads += values(w, "type", "Type", iri(NS + "Type"), TYPES);
+        quads += values(w, "colour", "Colour", COLOUR_CLASS, COLOURS);
+        quads += values(w, "shape", "Shape", iri(NS + "Shape"), SHAPES);
+        quads += values(w, "habitat", "Habitat", iri(NS + "Habitat"), HABITATS);
+        quads += values(w, "generation", "Generation", iri(NS + "Generation"), generations);
+
+        for (int s = 0; s < species; s++) {
+            String subject = iri(BASE + "species/" + s);
+            String name = name(s);
+
+            quads += quad(w, subject, RDF_TYPE, iri(NS + "Species"));
+            quads += quad(w, subject, RDFS_LABEL, literal(name, "en"));
+            quads += quad(w, subject, RDFS_LABEL, literal(name + " (sintético)", "pt"));
+
+            int type = types.next(random);
+            quads += quad(w, subject, iri(NS + "hasType"), value("type", type));
+            if (random.nextDouble() < DUAL_TYPE) {
+                int second = types.next(random);
+                if (second != type) quads += quad(w, subject, iri(NS + "hasType"), value("type", second));
+            }
+
+            quads += quad(w, subject, iri(NS + "hasColour"), value("colour", colours.next(random)));
+            quads += quad(w, subject, iri(NS + "hasShape"), value("shape", shapes.next(random)));
+            if (random.nextDouble() >= NO_HABITAT) {
+                quads += quad(w, subject, iri(NS + "foundIn"), value("habitat", habitats.next(random)));
+            }
+
+            // Generations fill in order, like the real Pokédex
+            int generation = (int) ((long) s * generations / species);
+            quads += quad(w, value("generation", generation), iri(NS + "featuresSpecies"), subject);
+        }
+        return quads;
+    }
+
+    private static long values(Writer w, String kind, String label, String type, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            quad(w, value(kind, i), RDF_TYPE, type);
+            quad(w, value(kind, i), RDFS_LABEL, literal(label + " " + (i + 1), "en"));
+        }
+        return 2L * count;
+    }
+
+    /** Pronounceable and unique: syllables from the number in base 45, then the number itself. */
+    static String name(int n) {
+        StringBuilder sb = new StringBuilder();
+        int x = n;
+        do {
+            sb.append(SYLLABLES[x % SYLLABLES.length]);
+            x /= SYLLABLES.length;
+        } while (x > 0);
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.append(' ').append(n).toString();
+    }
+
+    private static String value(String kind, int i) {
+        return iri(BASE + kind + "/" + i);
+    }
+
+    private static String iri(String uri) {
+        return "<" + uri + ">";
+    }
+
+    private static String literal(String text, String lang) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"@" + lang;
+    }
+
+    private static int quad(Writer w, String s, String p, String o) throws IOException {
+        w.write(s);
+        w.write(' ');
+        w.write(p);
+        w.write(' ');
+        w.write(o);
+        w.write(' ');
+        w.write(GRAPH);
+        w.write(" .\n");
+        return 1;
+    }
+
+    /** Ranks 0..n-1 with probability proportional to 1 / (rank + 1)^skew. */
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double skew) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1.0 / Math.pow(i + 1, skew);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) cumulative[i] /= sum;
+        }
+
+        int next(Random random) {
+            double u = random.nextDouble();
+            int lo = 0, hi = cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] < u) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
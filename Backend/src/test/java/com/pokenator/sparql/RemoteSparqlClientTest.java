@@ -0,0 +1,167 @@
+package com.pokenator.sparql;
+
+import com.pokenator.akinator.model.Answer;
+import com.pokenator.akinator.model.Constraint;
+import com.pokenator.akinator.model.QuestionKind;
+import com.pokenator.bench.LocalSparqlEndpoint;
+import com.pokenator.config.PokemonKgConfig;
+import com.pokenator.repository.SpeciesRepository;
+import com.pokenator.repository.StepContext;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.system.Txn;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RemoteSparqlClient} against a {@link LocalSparqlEndpoint} over a small species graph must return what
+ * {@link JenaSparqlClient} returns on the same dataset: plain queries, batched ones and the repository's
+ * prefetched value counts (SPARQL mode, no index).
+ */
+class RemoteSparqlClientTest {
+
+    private static final String NS = PokemonKgConfig.POKEMON_NS;
+    private static final String HAS_TYPE = NS + "hasType";
+    private static final String HAS_COLOUR = NS + "hasColour";
+
+    private static final String[][] SPECIES = {
+            {"bulbasaur", "Grass", "Green"},
+            {"oddish", "Grass", "Blue"},
+            {"charmander", "Fire", "Red"},
+            {"vulpix", "Fire", "Brown"},
+            {"squirtle", "Water", "Blue"},
+            {"psyduck", "Water", "Yellow"},
+            {"pikachu", "Electric", "Yellow"},
+    };
+
+    private static Dataset dataset;
+    private static LocalSparqlEndpoint endpoint;
+
+    private final JenaSparqlClient local = new JenaSparqlClient();
+
+    @BeforeAll
+    static void startEndpoint() throws IOException {
+        Model m = ModelFactory.createDefaultModel();
+        Resource speciesClass = m.createResource(NS + "Species");
+        Property hasType = m.createProperty(HAS_TYPE);
+        Property hasColour = m.createProperty(HAS_COLOUR);
+        for (String[] s : SPECIES) {
+            m.createResource(NS + s[0])
+                    .addProperty(RDF.type, speciesClass)
+                    .addProperty(RDFS.label, s[0])
+                    .addProperty(hasType, m.createResource(NS + "type/" + s[1]))
+                    .addProperty(hasColour, m.createResource(NS + "colour/" + s[2]));
+        }
+
+        dataset = DatasetFactory.createTxnMem();
+        Txn.executeWrite(dataset, () -> dataset.addNamedModel("urn:test:species", m));
+        endpoint = LocalSparqlEndpoint.start(dataset);
+    }
+
+    @AfterAll
+    static void stopEndpoint() {
+        endpoint.close();
+    }
+
+    @Test
+    void selectMatchesLocal() {
+        String q = "SELECT ?s ?o WHERE { GRAPH ?g { ?s <" + HAS_TYPE + "> ?o } } ORDER BY ?s";
+        try (RemoteSparqlClient remote = newClient()) {
+            assertEquals(rows(local.select(dataset, q), "s", "o"), rows(remote.select(dataset, q), "s", "o"));
+        }
+    }
+
+    @Test
+    void askMatchesLocal() {
+        String yes = "ASK { GRAPH ?g { <" + NS + "pikachu> <" + HAS_TYPE + "> <" + NS + "type/Electric> } }";
+        String no = "ASK { GRAPH ?g { <" + NS + "pikachu> <" + HAS_TYPE + "> <" + NS + "type/Fire> } }";
+        try (RemoteSparqlClient remote = newClient()) {
+            assertTrue(remote.ask(dataset, yes));
+            assertFalse(remote.ask(dataset, no));
+            assertEquals(local.ask(dataset, yes), remote.ask(dataset, yes));
+        }
+    }
+
+    @Test
+    void selectAllSendsOneRequestWithPerQueryLimits() {
+        List<String> queries = List.of(
+                countQuery(HAS_TYPE, 2),
+                countQuery(HAS_COLOUR, 3),
+                "SELECT ?s WHERE { GRAPH ?g { ?s <" + HAS_COLOUR + "> <" + NS + "colour/Blue> } } ORDER BY ?s");
+
+        try (RemoteSparqlClient remote = newClient()) {
+            long before = endpoint.requests();
+            List<List<QuerySolution>> batched = remote.selectAll(dataset, queries);
+            assertEquals(1, endpoint.requests() - before);
+
+            assertEquals(queries.size(), batched.size());
+            assertEquals(rows(local.select(dataset, queries.get(0)), "o", "n"), rows(batched.get(0), "o", "n"));
+            assertEquals(rows(local.select(dataset, queries.get(1)), "o", "n"), rows(batched.get(1), "o", "n"));
+            assertEquals(rows(local.select(dataset, queries.get(2)), "s"), rows(batched.get(2), "s"));
+        }
+    }
+
+    @Test
+    void prefetchedValueCountsMatchLocal() {
+        List<Constraint> constraints = List.of(
+                new Constraint(HAS_COLOUR, NS + "colour/Red", Answer.NO, QuestionKind.HAS_VALUE));
+        List<String> predicates = List.of(HAS_TYPE, HAS_COLOUR);
+
+        // Outside a step: no memo shared with the remote run below
+        SpeciesRepository localRepo = new SpeciesRepository(local);
+        List<List<SpeciesRepository.ValueCount>> expected = new ArrayList<>();
+        for (String p : predicates) expected.add(localRepo.countByPredicateValue(dataset, p, constraints, 40));
+
+        try (RemoteSparqlClient remote = newClient(); StepContext step = StepContext.open(dataset)) {
+            SpeciesRepository remoteRepo = new SpeciesRepository(remote);
+            long before = endpoint.requests();
+            remoteRepo.prefetchValueCounts(dataset, predicates, false, constraints, 40);
+            for (int i = 0; i < predicates.size(); i++) {
+                List<SpeciesRepository.ValueCount> actual =
+                        remoteRepo.countByPredicateValue(dataset, predicates.get(i), constraints, 40);
+                // Order among equal counts is up to the engine
+                assertEquals(new HashSet<>(expected.get(i)), new HashSet<>(actual));
+            }
+            assertEquals(1, endpoint.requests() - before);
+        }
+    }
+
+    private static RemoteSparqlClient newClient() {
+        return new RemoteSparqlClient(endpoint.url(), 10_000, 4, 0, 0);
+    }
+
+    private static String countQuery(String predicateUri, int limit) {
+        return "SELECT ?o (COUNT(DISTINCT ?s) AS ?n) WHERE { GRAPH ?g { ?s <" + predicateUri + "> ?o } }\n"
+                + "GROUP BY ?o ORDER BY DESC(?n) ?o LIMIT " + limit;
+    }
+
+    /** Rows as "var=value" strings, in result order. */
+    private static List<String> rows(List<QuerySolution> solutions, String... vars) {
+        List<String> out = new ArrayList<>(solutions.size());
+        for (QuerySolution row : solutions) {
+            StringBuilder sb = new StringBuilder();
+            for (String v : vars) {
+                sb.append(v).append('=').append(row.contains(v) ? row.get(v).toString() : "").append(' ');
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+}
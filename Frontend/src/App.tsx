@@ -96,6 +96,7 @@ export default function App() {
   const [confetti, setConfetti] = useState<ConfettiPiece[]>([]);
 
   const lastGuessKeyRef = useRef<string | null>(null);
+  const stepRef = useRef<number | null>(null);
 
   const sprite = useMemo(() => {
     return (
@@ -150,6 +151,7 @@ export default function App() {
     try {
       const start: StartResponse = await startGame();
       setSessionId(start.sessionId);
+      stepRef.current = start.step ?? null;
       setQuestionText(start.question.text);
       setRemaining(null);
       const candRes = await getCandidates(start.sessionId);
@@ -258,7 +260,8 @@ export default function App() {
     setErr("");
 
     try {
-      const step = await answerGame(sessionId, answer);
+      const step = await answerGame(sessionId, answer, stepRef.current);
+      stepRef.current = step.kind === "QUESTION" ? step.step ?? null : null;
       await handleStep(step);
     } catch (e: any) {
       setErr(e?.message ?? "Failed to submit answer");
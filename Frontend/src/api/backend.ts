@@ -10,6 +10,7 @@ export type ApiQuestion = {
 export type StartResponse = {
   sessionId: string;
   question: ApiQuestion;
+  step: number;
 };
 
 export type Candidate = { 
@@ -17,7 +18,8 @@ export type Candidate = {
 };
 
 export type CandidateResponse = { 
-  candidates: Candidate[] 
+  candidates: Candidate[];
+  nextCursor?: string | null;
 };
 
 export type StepResponse =
@@ -27,6 +29,7 @@ export type StepResponse =
       question: ApiQuestion;
       guessUri: null;
       guessLabel: null;
+      step: number;
     }
   | {
       kind: "GUESS";
@@ -65,14 +68,26 @@ export function startGame(): Promise<StartResponse> {
   });
 }
 
-export function answerGame(sessionId: string, answer: Answer): Promise<StepResponse> {
+// `step` is the value returned with the question being answered; the backend rejects stale answers (409)
+export function answerGame(sessionId: string, answer: Answer, step?: number | null): Promise<StepResponse> {
   return http<StepResponse>(`/api/game/${encodeURIComponent(sessionId)}/answer`, {
     method: "POST",
     headers: {
       "Content-Type": "application/json",
       Accept: "application/json",
     },
-    body: JSON.stringify({ answer }),
+    body: JSON.stringify({ answer, step: step ?? null }),
+  });
+}
+
+// Reverts the last `steps` answers; the response carries the question that was pending then
+export function undoGame(sessionId: string, steps = 1, step?: number | null): Promise<StepResponse> {
+  const params = new URLSearchParams({ steps: String(steps) });
+  if (step != null) params.set("step", String(step));
+
+  return http<StepResponse>(`/api/game/${encodeURIComponent(sessionId)}/undo?${params}`, {
+    method: "POST",
+    headers: { Accept: "application/json" },
   });
 }
 
@@ -83,3 +98,25 @@ export function getCandidates(sessionId: string): Promise<CandidateResponse> {
     headers: { Accept: "application/json" },
   });
 }
+
+export type SpeciesMatch = {
+  uri: string;
+  label: string;
+  matched: string;
+};
+
+export type SpeciesSearchResponse = {
+  query: string;
+  matches: SpeciesMatch[];
+};
+
+// Autocomplete por nome (qualquer idioma); com sessionId, só entre os candidatos da partida
+export function searchSpecies(query: string, limit = 10, sessionId?: string | null): Promise<SpeciesSearchResponse> {
+  const params = new URLSearchParams({ q: query, limit: String(limit) });
+  if (sessionId) params.set("sessionId", sessionId);
+
+  return http<SpeciesSearchResponse>(`/api/species/search?${params}`, {
+    method: "GET",
+    headers: { Accept: "application/json" },
+  });
+}